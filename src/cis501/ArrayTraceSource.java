@@ -0,0 +1,128 @@
+package cis501;
+
+/**
+ * Reads insns out of an array, e.g., a trace held by InMemoryTrace. Reading, skipping and
+ * rewinding are all O(1), and the array itself is never modified, so any number of sources can
+ * share one array.
+ */
+public class ArrayTraceSource extends TraceSource implements InsnCursor {
+
+    private final Insn[] insns;
+    private final int start;
+    private int end;
+    /** The index of the next insn to read */
+    private int pos;
+    private Insn cur = null;
+
+    public ArrayTraceSource(Insn[] a) {
+        this(a, 0, a.length);
+    }
+
+    /** Read the insns a[start, end) */
+    public ArrayTraceSource(Insn[] a, int start, int end) {
+        assert 0 <= start && start <= end && end <= a.length;
+        this.insns = a;
+        this.start = start;
+        this.end = end;
+        this.pos = start;
+    }
+
+    @Override
+    public Insn read() {
+        if (pos >= end) return null;
+        return insns[pos++];
+    }
+
+    @Override
+    public void skip(long n) {
+        pos = (int) Math.min(end, pos + n);
+    }
+
+    /** Stop reading after the next n insns. */
+    public void setLimit(long n) {
+        end = (int) Math.min(end, pos + n);
+    }
+
+    /** Go back to the first insn, so the same insns can be replayed. */
+    public void rewind() {
+        pos = start;
+        cur = null;
+    }
+
+    @Override
+    public boolean advance() {
+        cur = read();
+        return null != cur;
+    }
+
+    @Override
+    public long pc() {
+        return cur.pc;
+    }
+
+    @Override
+    public short insnSizeBytes() {
+        return cur.insnSizeBytes;
+    }
+
+    @Override
+    public short dstReg() {
+        return cur.dstReg;
+    }
+
+    @Override
+    public short srcReg1() {
+        return cur.srcReg1;
+    }
+
+    @Override
+    public short srcReg2() {
+        return cur.srcReg2;
+    }
+
+    @Override
+    public BranchType branchType() {
+        return cur.branchType;
+    }
+
+    @Override
+    public Direction branchDirection() {
+        return cur.branchDirection;
+    }
+
+    @Override
+    public long branchTarget() {
+        return cur.branchTarget;
+    }
+
+    @Override
+    public CondCodes condCode() {
+        return cur.condCode;
+    }
+
+    @Override
+    public MemoryOp mem() {
+        return cur.mem;
+    }
+
+    @Override
+    public long memAddress() {
+        return cur.memAddress;
+    }
+
+    @Override
+    public short memAccessBytes() {
+        return cur.memAccessBytes;
+    }
+
+    @Override
+    public String asm() {
+        return cur.asm;
+    }
+
+    @Override
+    public Insn toInsn() {
+        return cur;
+    }
+
+}
@@ -0,0 +1,93 @@
+package cis501;
+
+import java.util.Arrays;
+
+/**
+ * A basic block vector (BBV) signature: how many insns were executed in each basic block during an
+ * interval of a trace. Intervals with similar BBVs execute the same code in similar proportions,
+ * i.e., they belong to the same program phase.
+ *
+ * <p>Rather than keeping one entry per distinct basic block, blocks are hashed by their start PC
+ * into a fixed number of dimensions, so a signature takes the same memory no matter how much code
+ * the program touches.
+ */
+public class BasicBlockVector {
+
+    public static final int DEFAULT_DIMENSIONS = 1024;
+
+    private final long[] counts;
+    private final int shift;
+    private long total = 0;
+
+    public BasicBlockVector() {
+        this(DEFAULT_DIMENSIONS);
+    }
+
+    /** @param dimensions the number of hash buckets, which must be a power of 2 */
+    public BasicBlockVector(int dimensions) {
+        if (dimensions < 2 || Integer.bitCount(dimensions) != 1) {
+            throw new IllegalArgumentException("Dimensions must be a power of 2 (and >1), got " + dimensions);
+        }
+        counts = new long[dimensions];
+        shift = 64 - Integer.numberOfTrailingZeros(dimensions);
+    }
+
+    /** @return the dimension that the basic block starting at the given PC is counted in */
+    public int dimensionOf(long blockStartPC) {
+        // Fibonacci hashing: the high bits of the product depend on all bits of the PC
+        return (int) ((blockStartPC * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    /** Record that insns insns were executed in the basic block starting at the given PC. */
+    public void add(long blockStartPC, long insns) {
+        counts[dimensionOf(blockStartPC)] += insns;
+        total += insns;
+    }
+
+    public int dimensions() {
+        return counts.length;
+    }
+
+    /** @return the number of insns counted in the given dimension */
+    public long count(int dimension) {
+        return counts[dimension];
+    }
+
+    /** @return the total number of insns counted */
+    public long total() {
+        return total;
+    }
+
+    /** @return the fraction of insns counted in each dimension, summing to 1 (or all 0 if empty) */
+    public double[] normalized() {
+        double[] v = new double[counts.length];
+        if (0 == total) return v;
+        for (int d = 0; d < counts.length; d++) {
+            v[d] = (double) counts[d] / total;
+        }
+        return v;
+    }
+
+    /**
+     * @return the Manhattan distance between the normalized vectors, in the range [0,2]. 0 means the
+     * intervals executed the same code in the same proportions, 2 means they shared no code.
+     */
+    public double distance(BasicBlockVector b) {
+        if (b.counts.length != counts.length) {
+            throw new IllegalArgumentException("Cannot compare BBVs with " + b.counts.length
+                    + " and " + counts.length + " dimensions");
+        }
+        double[] x = normalized(), y = b.normalized();
+        double dist = 0;
+        for (int d = 0; d < x.length; d++) {
+            dist += Math.abs(x[d] - y[d]);
+        }
+        return dist;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(counts);
+    }
+
+}
@@ -0,0 +1,56 @@
+package cis501;
+
+/**
+ * Runs direction predictors and BTBs over batches of branches, through their batch entry points
+ * when they have them, or one branch at a time through predict() and train() otherwise.
+ */
+public final class BatchPrediction {
+
+    private BatchPrediction() {
+    }
+
+    /** @return the number of longs needed to hold a bitset of n bits */
+    public static int words(int n) {
+        return (n + 63) >>> 6;
+    }
+
+    public static boolean get(long[] bits, int i) {
+        return 0 != (bits[i >>> 6] & (1L << i));
+    }
+
+    public static void set(long[] bits, int i, boolean value) {
+        if (value) {
+            bits[i >>> 6] |= 1L << i;
+        } else {
+            bits[i >>> 6] &= ~(1L << i);
+        }
+    }
+
+    /** See IBatchDirectionPredictor.predictAndTrain() */
+    public static void predictAndTrain(IDirectionPredictor dp, long[] pcs, long[] outcomes, long[] predictions, int n) {
+        if (dp instanceof IBatchDirectionPredictor) {
+            ((IBatchDirectionPredictor) dp).predictAndTrain(pcs, outcomes, predictions, n);
+            return;
+        }
+        for (int i = 0; i < n; i++) {
+            set(predictions, i, Direction.Taken == dp.predict(pcs[i]));
+            dp.train(pcs[i], get(outcomes, i) ? Direction.Taken : Direction.NotTaken);
+        }
+    }
+
+    /** See IBatchBranchTargetBuffer.predictAndTrain() */
+    public static void predictAndTrain(IBranchTargetBuffer btb, long[] pcs, long[] targets, long[] outcomes,
+                                       long[] predictions, int n) {
+        if (btb instanceof IBatchBranchTargetBuffer) {
+            ((IBatchBranchTargetBuffer) btb).predictAndTrain(pcs, targets, outcomes, predictions, n);
+            return;
+        }
+        for (int i = 0; i < n; i++) {
+            predictions[i] = btb.predict(pcs[i]);
+            if (get(outcomes, i)) {
+                btb.train(pcs[i], targets[i]);
+            }
+        }
+    }
+
+}
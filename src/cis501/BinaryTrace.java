@@ -0,0 +1,166 @@
+package cis501;
+
+/**
+ * Constants and field-packing helpers for the binary trace format written by BinaryTraceWriter and
+ * read by BinaryTraceSource.
+ *
+ * <p>A binary trace is a header, a sequence of blocks, an asm dictionary and a trailer:
+ *
+ * <pre>
+ *   header:  int MAGIC, int VERSION, int blockInsns
+ *   block:   int basePC, then one column per field, each holding n entries:
+ *            int pcDelta[n], int flags[n], int branchTarget[n], int memAddress[n],
+ *            int asmId[n], short memAccessBytes[n]
+ *   dict:    int count, then count asm strings in DataOutput.writeUTF format
+ *   trailer: long insnCount, long dictOffset, int MAGIC
+ * </pre>
+ *
+ * Every block except the last holds exactly blockInsns insns, so the position of any insn can be
+ * computed directly from its index. PCs are delta-encoded against the previous insn in the same
+ * block (the first insn's delta is relative to basePC). All addresses are 32-bit ARM addresses,
+ * stored as unsigned ints. All values are big-endian.
+ *
+ * <p>A chunked binary trace has the same header, blocks and dictionary, but starts and ends with
+ * CHUNKED_MAGIC and each block is independently deflate-compressed. Since compressed blocks vary
+ * in size, an index of block offsets follows the dictionary:
+ *
+ * <pre>
+ *   index:   long blockOffset[number of blocks]
+ *   trailer: long insnCount, long dictOffset, long indexOffset, int CHUNKED_MAGIC
+ * </pre>
+ *
+ * Reading from any insn onwards only requires inflating the block holding that insn.
+ */
+public final class BinaryTrace {
+
+    /** "C5BT", the first and last 4 bytes of every binary trace file */
+    public static final int MAGIC = 0x43354254;
+
+    /** "C5CT", the first and last 4 bytes of every chunked binary trace file */
+    public static final int CHUNKED_MAGIC = 0x43354354;
+
+    public static final int VERSION = 1;
+
+    /** The default number of insns per block */
+    public static final int DEFAULT_BLOCK_INSNS = 4096;
+
+    /** The default number of insns per block of a chunked trace, i.e., per compressed chunk */
+    public static final int DEFAULT_CHUNK_INSNS = 1 << 16;
+
+    public static final int HEADER_BYTES = 12;
+    public static final int TRAILER_BYTES = 20;
+    public static final int CHUNKED_TRAILER_BYTES = 28;
+    public static final int BLOCK_HEADER_BYTES = 4;
+
+    /** Bytes used by a single insn, summed across all columns of a block */
+    public static final int INSN_BYTES = 22;
+
+    public static final long ADDRESS_MASK = 0xFFFFFFFFL;
+
+    // layout of the flags word
+    private static final int DST_SHIFT = 0;
+    private static final int SRC1_SHIFT = 5;
+    private static final int SRC2_SHIFT = 10;
+    private static final int REG_MASK = 0x1F;
+    private static final int BTYPE_SHIFT = 15;
+    private static final int BTYPE_MASK = 0x7;
+    private static final int DIR_SHIFT = 18;
+    private static final int MEM_SHIFT = 20;
+    private static final int CC_SHIFT = 22;
+    private static final int ENUM2_MASK = 0x3;
+    private static final int ISIZE_SHIFT = 24;
+    private static final int ISIZE_MASK = 0xFF;
+
+    private static final BranchType[] BRANCH_TYPES = BranchType.values();
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final MemoryOp[] MEMORY_OPS = MemoryOp.values();
+    private static final CondCodes[] COND_CODES = CondCodes.values();
+
+    private BinaryTrace() {
+    }
+
+    /** @return the size in bytes of a block holding the given number of insns */
+    public static long blockBytes(int insns) {
+        return BLOCK_HEADER_BYTES + (long) insns * INSN_BYTES;
+    }
+
+    /**
+     * Pack the registers, enum fields and insn size of the given insn into a single int. Enum
+     * fields are stored as ordinal+1, so that 0 represents null.
+     */
+    public static int packFlags(Insn i) {
+        return packFlags(i.dstReg, i.srcReg1, i.srcReg2, i.insnSizeBytes,
+                i.branchType, i.branchDirection, i.mem, i.condCode);
+    }
+
+    public static int packFlags(int dstReg, int srcReg1, int srcReg2, int insnSizeBytes,
+                                BranchType bt, Direction dir, MemoryOp mop, CondCodes cc) {
+        if (insnSizeBytes < 0 || insnSizeBytes > ISIZE_MASK) {
+            throw new IllegalArgumentException("Insn size does not fit in binary trace: " + insnSizeBytes);
+        }
+        return packReg(dstReg) << DST_SHIFT
+                | packReg(srcReg1) << SRC1_SHIFT
+                | packReg(srcReg2) << SRC2_SHIFT
+                | (null == bt ? 0 : bt.ordinal() + 1) << BTYPE_SHIFT
+                | (null == dir ? 0 : dir.ordinal() + 1) << DIR_SHIFT
+                | (null == mop ? 0 : mop.ordinal() + 1) << MEM_SHIFT
+                | (null == cc ? 0 : cc.ordinal() + 1) << CC_SHIFT
+                | insnSizeBytes << ISIZE_SHIFT;
+    }
+
+    private static int packReg(int r) {
+        if (r < -1 || r >= REG_MASK) {
+            throw new IllegalArgumentException("Register does not fit in binary trace: " + r);
+        }
+        return r + 1;
+    }
+
+    /** @return the given address as an unsigned 32-bit value, checking that it fits */
+    static int packAddress(long addr) {
+        if (addr != (addr & ADDRESS_MASK)) {
+            throw new IllegalArgumentException("Address does not fit in 32 bits: " + Long.toHexString(addr));
+        }
+        return (int) addr;
+    }
+
+    static long unpackAddress(int addr) {
+        return addr & ADDRESS_MASK;
+    }
+
+    public static short dstReg(int flags) {
+        return (short) (((flags >>> DST_SHIFT) & REG_MASK) - 1);
+    }
+
+    public static short srcReg1(int flags) {
+        return (short) (((flags >>> SRC1_SHIFT) & REG_MASK) - 1);
+    }
+
+    public static short srcReg2(int flags) {
+        return (short) (((flags >>> SRC2_SHIFT) & REG_MASK) - 1);
+    }
+
+    public static short insnSizeBytes(int flags) {
+        return (short) ((flags >>> ISIZE_SHIFT) & ISIZE_MASK);
+    }
+
+    public static BranchType branchType(int flags) {
+        final int bt = (flags >>> BTYPE_SHIFT) & BTYPE_MASK;
+        return 0 == bt ? null : BRANCH_TYPES[bt - 1];
+    }
+
+    public static Direction branchDirection(int flags) {
+        final int d = (flags >>> DIR_SHIFT) & ENUM2_MASK;
+        return 0 == d ? null : DIRECTIONS[d - 1];
+    }
+
+    public static MemoryOp mem(int flags) {
+        final int m = (flags >>> MEM_SHIFT) & ENUM2_MASK;
+        return 0 == m ? null : MEMORY_OPS[m - 1];
+    }
+
+    public static CondCodes condCode(int flags) {
+        final int cc = (flags >>> CC_SHIFT) & ENUM2_MASK;
+        return 0 == cc ? null : COND_CODES[cc - 1];
+    }
+
+}
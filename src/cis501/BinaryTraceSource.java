@@ -0,0 +1,54 @@
+package cis501;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads insns from a binary trace file (see BinaryTrace) through memory-mapped segments of the
+ * file.
+ */
+public class BinaryTraceSource extends BlockTraceSource {
+
+    /** Map the file this many bytes (rounded down to whole blocks) at a time */
+    private static final long SEGMENT_BYTES = 1L << 28;
+
+    private final FileChannel channel;
+    private final long fullBlockBytes;
+    private final int blocksPerSegment;
+
+    private MappedByteBuffer segment = null;
+    private long segmentIndex = -1;
+
+    /** @param filename The path to the binary trace file */
+    public BinaryTraceSource(String filename) throws IOException {
+        super(filename, BinaryTrace.MAGIC, BinaryTrace.TRAILER_BYTES);
+        channel = file.getChannel();
+        fullBlockBytes = BinaryTrace.blockBytes(blockInsns);
+        blocksPerSegment = (int) Math.max(1, SEGMENT_BYTES / fullBlockBytes);
+    }
+
+    @Override
+    protected void loadBlock(long b) {
+        final long seg = b / blocksPerSegment;
+        if (seg != segmentIndex) {
+            final long start = BinaryTrace.HEADER_BYTES + (seg * blocksPerSegment * fullBlockBytes);
+            final long segEnd = Math.min(start + (blocksPerSegment * fullBlockBytes), dictOffset);
+            try {
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, start, segEnd - start);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not map binary trace segment", e);
+            }
+            segmentIndex = seg;
+        }
+        block = segment;
+        blockBase = (int) ((b - (seg * blocksPerSegment)) * fullBlockBytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        segment = null;
+        super.close();
+    }
+
+}
@@ -0,0 +1,209 @@
+package cis501;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Writes insns to a file in the binary trace format, or the chunked binary trace format. See
+ * BinaryTrace for the file layouts.
+ */
+public class BinaryTraceWriter extends TraceWriter {
+
+    private final DataOutputStream out;
+    private final int blockInsns;
+    /** Null unless writing a chunked trace */
+    private final Deflater deflater;
+
+    // columns of the block currently being filled
+    private final int[] pcDelta;
+    private final int[] flags;
+    private final int[] branchTarget;
+    private final int[] memAddress;
+    private final int[] asmId;
+    private final short[] memAccessBytes;
+    private int blockFill = 0;
+    private int basePC;
+    private int prevPC;
+
+    /** Staging area for encoding a block before it is compressed */
+    private final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+    private final DataOutputStream blockOut = new DataOutputStream(blockBytes);
+    private final byte[] deflateBuf = new byte[1 << 16];
+    private long[] blockOffsets = new long[16];
+    private int blockCount = 0;
+
+    private final Map<String, Integer> asmIds = new HashMap<>();
+    private final List<String> asmDict = new ArrayList<>();
+
+    private long insnCount = 0;
+    private long bytesWritten = 0;
+
+    public BinaryTraceWriter(String filename) throws IOException {
+        this(filename, BinaryTrace.DEFAULT_BLOCK_INSNS, false);
+    }
+
+    /**
+     * @param filename   the path of the binary trace file to create
+     * @param blockInsns the number of insns per block
+     */
+    public BinaryTraceWriter(String filename, int blockInsns) throws IOException {
+        this(filename, blockInsns, false);
+    }
+
+    /**
+     * @param filename   the path of the binary trace file to create
+     * @param blockInsns the number of insns per block
+     * @param chunked    if true, write a chunked trace with independently compressed blocks
+     */
+    public BinaryTraceWriter(String filename, int blockInsns, boolean chunked) throws IOException {
+        assert blockInsns > 0;
+        this.blockInsns = blockInsns;
+        this.deflater = chunked ? new Deflater() : null;
+        pcDelta = new int[blockInsns];
+        flags = new int[blockInsns];
+        branchTarget = new int[blockInsns];
+        memAddress = new int[blockInsns];
+        asmId = new int[blockInsns];
+        memAccessBytes = new short[blockInsns];
+
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16));
+        out.writeInt(magic());
+        out.writeInt(BinaryTrace.VERSION);
+        out.writeInt(blockInsns);
+        bytesWritten += BinaryTrace.HEADER_BYTES;
+    }
+
+    private int magic() {
+        return null == deflater ? BinaryTrace.MAGIC : BinaryTrace.CHUNKED_MAGIC;
+    }
+
+    @Override
+    protected void append(Insn i) throws IOException {
+        final int pc = BinaryTrace.packAddress(i.pc);
+        if (0 == blockFill) {
+            basePC = pc;
+            prevPC = pc;
+        }
+        if (i.memAccessBytes < 0) {
+            throw new IllegalArgumentException("Invalid mem access size: " + i);
+        }
+        pcDelta[blockFill] = pc - prevPC;
+        prevPC = pc;
+        flags[blockFill] = BinaryTrace.packFlags(i);
+        branchTarget[blockFill] = BinaryTrace.packAddress(i.branchTarget);
+        memAddress[blockFill] = BinaryTrace.packAddress(i.memAddress);
+        asmId[blockFill] = internAsm(i.asm);
+        memAccessBytes[blockFill] = i.memAccessBytes;
+        blockFill++;
+        insnCount++;
+
+        if (blockInsns == blockFill) {
+            flushBlock();
+        }
+    }
+
+    private int internAsm(String asm) {
+        Integer id = asmIds.get(asm);
+        if (null == id) {
+            id = asmDict.size();
+            asmIds.put(asm, id);
+            asmDict.add(asm);
+        }
+        return id;
+    }
+
+    private void flushBlock() throws IOException {
+        if (0 == blockFill) return;
+        blockBytes.reset();
+        blockOut.writeInt(basePC);
+        writeColumn(pcDelta);
+        writeColumn(flags);
+        writeColumn(branchTarget);
+        writeColumn(memAddress);
+        writeColumn(asmId);
+        for (int j = 0; j < blockFill; j++) {
+            blockOut.writeShort(memAccessBytes[j]);
+        }
+        blockFill = 0;
+
+        if (blockOffsets.length == blockCount) {
+            blockOffsets = Arrays.copyOf(blockOffsets, blockCount * 2);
+        }
+        blockOffsets[blockCount++] = bytesWritten;
+
+        if (null == deflater) {
+            blockBytes.writeTo(out);
+            bytesWritten += blockBytes.size();
+            return;
+        }
+        deflater.reset();
+        deflater.setInput(blockBytes.toByteArray());
+        deflater.finish();
+        while (!deflater.finished()) {
+            final int n = deflater.deflate(deflateBuf);
+            out.write(deflateBuf, 0, n);
+            bytesWritten += n;
+        }
+    }
+
+    private void writeColumn(int[] column) throws IOException {
+        for (int j = 0; j < blockFill; j++) {
+            blockOut.writeInt(column[j]);
+        }
+    }
+
+    @Override
+    public long getInsns() {
+        return insnCount;
+    }
+
+    /** @return the number of distinct asm strings written so far */
+    public int getDictionarySize() {
+        return asmDict.size();
+    }
+
+    /**
+     * Write out the final block, the asm dictionary, the block index (for chunked traces) and the
+     * trailer, and close the file.
+     */
+    @Override
+    public void close() throws IOException {
+        flushBlock();
+        final long dictOffset = bytesWritten;
+        ByteArrayOutputStream dictBytes = new ByteArrayOutputStream();
+        DataOutputStream dict = new DataOutputStream(dictBytes);
+        dict.writeInt(asmDict.size());
+        for (String s : asmDict) {
+            dict.writeUTF(s);
+        }
+        dictBytes.writeTo(out);
+        bytesWritten += dictBytes.size();
+
+        if (null != deflater) {
+            final long indexOffset = bytesWritten;
+            for (int b = 0; b < blockCount; b++) {
+                out.writeLong(blockOffsets[b]);
+            }
+            bytesWritten += 8L * blockCount;
+            deflater.end();
+            out.writeLong(insnCount);
+            out.writeLong(dictOffset);
+            out.writeLong(indexOffset);
+        } else {
+            out.writeLong(insnCount);
+            out.writeLong(dictOffset);
+        }
+        out.writeInt(magic());
+        out.close();
+    }
+
+}
@@ -0,0 +1,232 @@
+package cis501;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+/**
+ * Common reader for the block-structured binary trace formats described in BinaryTrace. Subclasses
+ * decide how the bytes of a block are obtained (e.g., memory-mapped or decompressed); this class
+ * decodes insns out of the current block. Since blocks hold a fixed number of insns, skip() seeks
+ * directly to the requested insn. Insns can be read either as Insn objects via read(), or without
+ * any allocation as an InsnCursor.
+ */
+public abstract class BlockTraceSource extends TraceSource implements InsnCursor {
+
+    protected final RandomAccessFile file;
+    protected final int blockInsns;
+    protected final long insnCount;
+    protected final long dictOffset;
+    private final String[] asmDict;
+
+    /** The buffer holding the current block */
+    protected ByteBuffer block = null;
+    /** Byte offset of the current block within the block buffer */
+    protected int blockBase;
+    /** The number of insns in the current block */
+    private int blockLen;
+    private long loadedBlock = -1;
+    /** The PC of the current insn, or of the insn preceding the next one after a seek */
+    private int curPC;
+
+    /** The index of the next insn to read */
+    private long position = 0;
+    /** The index one past the last insn to read */
+    private long end;
+
+    // undecoded fields of the current insn
+    private int flags;
+    private int target;
+    private int maddr;
+    private int asmId;
+    private short msize;
+
+    /**
+     * Open the given file and read its header, trailer and asm dictionary.
+     *
+     * @param magic        the magic number the file must start and end with
+     * @param trailerBytes the size of the trailer, which starts with the insn count and dictionary
+     *                     offset
+     */
+    protected BlockTraceSource(String filename, int magic, int trailerBytes) throws IOException {
+        file = new RandomAccessFile(filename, "r");
+        try {
+            final long size = file.length();
+            if (size < BinaryTrace.HEADER_BYTES + trailerBytes || magic != file.readInt()) {
+                throw new IOException("Not a binary trace file: " + filename);
+            }
+            final int version = file.readInt();
+            if (BinaryTrace.VERSION != version) {
+                throw new IOException("Unsupported binary trace version " + version + ": " + filename);
+            }
+            blockInsns = file.readInt();
+
+            file.seek(size - 4);
+            if (magic != file.readInt()) {
+                throw new IOException("Truncated binary trace file: " + filename);
+            }
+            file.seek(size - trailerBytes);
+            insnCount = file.readLong();
+            dictOffset = file.readLong();
+            end = insnCount;
+
+            file.seek(dictOffset);
+            DataInputStream dict = new DataInputStream(new BufferedInputStream(Channels.newInputStream(file.getChannel())));
+            asmDict = new String[dict.readInt()];
+            for (int j = 0; j < asmDict.length; j++) {
+                asmDict[j] = dict.readUTF();
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /** Point block and blockBase at the encoded bytes of block b. */
+    protected abstract void loadBlock(long b);
+
+    /** @return the total number of insns in the trace */
+    public long getInsnCount() {
+        return insnCount;
+    }
+
+    /** Stop reading after the next n insns. */
+    public void setLimit(long n) {
+        end = Math.min(insnCount, position + n);
+    }
+
+    @Override
+    public void skip(long n) {
+        position = Math.min(end, position + n);
+        loadedBlock = -1;
+    }
+
+    @Override
+    public Insn read() throws IOException {
+        return advance() ? toInsn() : null;
+    }
+
+    @Override
+    public boolean advance() {
+        if (position >= end) return false;
+        final long b = position / blockInsns;
+        final int j = (int) (position - (b * blockInsns));
+        if (b != loadedBlock) {
+            seekBlock(b, j);
+        }
+        position++;
+
+        final int n = blockLen;
+        final int col = blockBase + BinaryTrace.BLOCK_HEADER_BYTES;
+        curPC += block.getInt(col + (j << 2));
+        flags = block.getInt(col + ((n + j) << 2));
+        target = block.getInt(col + ((2 * n + j) << 2));
+        maddr = block.getInt(col + ((3 * n + j) << 2));
+        asmId = block.getInt(col + ((4 * n + j) << 2));
+        msize = block.getShort(col + (5 * n << 2) + (j << 1));
+        return true;
+    }
+
+    /** Make block b current, positioned so that the next insn decoded is insn j of the block. */
+    private void seekBlock(long b, int j) {
+        loadBlock(b);
+        blockLen = blockLength(b);
+        curPC = block.getInt(blockBase);
+        // recover the PC preceding insn j by summing the deltas before it
+        final int col = blockBase + BinaryTrace.BLOCK_HEADER_BYTES;
+        for (int k = 0; k < j; k++) {
+            curPC += block.getInt(col + (k << 2));
+        }
+        loadedBlock = b;
+    }
+
+    /** @return the number of insns in block b */
+    protected int blockLength(long b) {
+        return (int) Math.min(blockInsns, insnCount - (b * blockInsns));
+    }
+
+    @Override
+    public long pc() {
+        return BinaryTrace.unpackAddress(curPC);
+    }
+
+    @Override
+    public short insnSizeBytes() {
+        return BinaryTrace.insnSizeBytes(flags);
+    }
+
+    @Override
+    public short dstReg() {
+        return BinaryTrace.dstReg(flags);
+    }
+
+    @Override
+    public short srcReg1() {
+        return BinaryTrace.srcReg1(flags);
+    }
+
+    @Override
+    public short srcReg2() {
+        return BinaryTrace.srcReg2(flags);
+    }
+
+    @Override
+    public BranchType branchType() {
+        return BinaryTrace.branchType(flags);
+    }
+
+    @Override
+    public Direction branchDirection() {
+        return BinaryTrace.branchDirection(flags);
+    }
+
+    @Override
+    public long branchTarget() {
+        return BinaryTrace.unpackAddress(target);
+    }
+
+    @Override
+    public CondCodes condCode() {
+        return BinaryTrace.condCode(flags);
+    }
+
+    @Override
+    public MemoryOp mem() {
+        return BinaryTrace.mem(flags);
+    }
+
+    @Override
+    public long memAddress() {
+        return BinaryTrace.unpackAddress(maddr);
+    }
+
+    @Override
+    public short memAccessBytes() {
+        return msize;
+    }
+
+    @Override
+    public String asm() {
+        return asmDict[asmId];
+    }
+
+    @Override
+    public Insn toInsn() {
+        return new Insn(pc(), insnSizeBytes(),
+                branchType(), branchDirection(), branchTarget(),
+                mem(), memAddress(), msize,
+                condCode(),
+                dstReg(), srcReg1(), srcReg2(),
+                asm());
+    }
+
+    @Override
+    public void close() throws IOException {
+        block = null;
+        file.close();
+    }
+
+}
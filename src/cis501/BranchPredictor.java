@@ -3,6 +3,9 @@ package cis501;
 /** A branch predictor, instantiated with a direction predictor and a branch target buffer. */
 public class BranchPredictor {
 
+    /** Branches per batch in mispredictions() */
+    private static final int BATCH_BRANCHES = 1 << 12;
+
     public final IDirectionPredictor dp;
     public final IBranchTargetBuffer btb;
 
@@ -56,6 +59,43 @@ public class BranchPredictor {
         dp.train(predictorIndex, actualDir);
     }
 
+    /**
+     * Predict and train every branch of the given trace in order, just as calling predict() and
+     * then train() on each branch would, but through the batch entry points of the direction
+     * predictor and BTB where they have them.
+     *
+     * @return the number of branches whose next PC was mispredicted
+     */
+    public long mispredictions(BranchTrace bt) {
+        final int batch = Math.min(BATCH_BRANCHES, Math.max(1, bt.size()));
+        final long[] indices = new long[batch];
+        final long[] targets = new long[batch];
+        final long[] outcomes = new long[BatchPrediction.words(batch)];
+        final long[] dirPredictions = new long[outcomes.length];
+        final long[] btbPredictions = new long[batch];
+        long mispredictions = 0;
+
+        for (int start = 0; start < bt.size(); start += batch) {
+            final int n = Math.min(batch, bt.size() - start);
+            bt.copyBatch(start, n, indices, targets, outcomes);
+            for (int i = 0; i < n; i++) {
+                assert 0 == (indices[i] & 0x1) : "lsb of PC should always be 0 for ARM";
+                indices[i] >>= 1; // predictor index, as in predict() and train()
+            }
+            BatchPrediction.predictAndTrain(btb, indices, targets, outcomes, btbPredictions, n);
+            BatchPrediction.predictAndTrain(dp, indices, outcomes, dirPredictions, n);
+            for (int i = 0; i < n; i++) {
+                final long fallthroughPC = bt.fallthroughPC(start + i);
+                final boolean taken = BatchPrediction.get(outcomes, i);
+                final boolean predictTaken = 0 != btbPredictions[i] && BatchPrediction.get(dirPredictions, i);
+                final long predicted = predictTaken ? btbPredictions[i] : fallthroughPC;
+                final long actual = taken ? targets[i] : fallthroughPC;
+                mispredictions += predicted != actual ? 1 : 0;
+            }
+        }
+        return mispredictions;
+    }
+
     @Override
     public String toString() {
         return dp.toString() + " " + btb.toString();
@@ -0,0 +1,193 @@
+package cis501;
+
+import java.util.Arrays;
+
+/**
+ * The branches of a trace, projected out of the full trace and stored as primitive columns: the
+ * pc and taken target of each branch, and one byte packing its type, direction and size. At 17
+ * bytes per branch, replaying just the branches of a trace through a branch predictor reads a
+ * small fraction of the data that stepping through every insn does. See TraceProjection for
+ * building and caching projections.
+ *
+ * <p>Non-branch insns can be left out of branch predictor studies because predicting them never
+ * changes predictor state, and their BTB lookups miss, so that they are predicted to fall through.
+ */
+public class BranchTrace {
+
+    /** Bytes used by a single branch, summed across all columns */
+    public static final int BRANCH_BYTES = 8 + 8 + 1;
+
+    private static final int TYPE_MASK = 0x3;
+    private static final int DIR_SHIFT = 2;
+    private static final int DIR_MASK = 0x3;
+    /** The direction field is Taken.ordinal()+1 == 2 exactly when this bit is set */
+    private static final int TAKEN_SHIFT = DIR_SHIFT + 1;
+    private static final int ISIZE_SHIFT = 4;
+    private static final int ISIZE_MASK = 0xF;
+
+    private static final BranchType[] BRANCH_TYPES = BranchType.values();
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    long[] pc;
+    long[] target;
+    byte[] info;
+    int size = 0;
+
+    public BranchTrace() {
+        this(1 << 10);
+    }
+
+    public BranchTrace(int initialCapacity) {
+        final int n = Math.max(1, initialCapacity);
+        pc = new long[n];
+        target = new long[n];
+        info = new byte[n];
+    }
+
+    /** Append the given branch to the trace */
+    public void add(Insn i) {
+        add(i.pc, i.insnSizeBytes, i.branchType, i.branchDirection, i.branchTarget);
+    }
+
+    /** Append a branch to the trace */
+    public void add(long pc, int insnSizeBytes, BranchType type, Direction dir, long target) {
+        if (null == type) {
+            throw new IllegalArgumentException(String.format("Insn at %x is not a branch", pc));
+        }
+        if (insnSizeBytes < 0 || insnSizeBytes > ISIZE_MASK) {
+            throw new IllegalArgumentException("Insn size does not fit in branch trace: " + insnSizeBytes);
+        }
+        if (size == this.pc.length) {
+            final int capacity = (int) Math.min(Integer.MAX_VALUE, 2L * size);
+            this.pc = Arrays.copyOf(this.pc, capacity);
+            this.target = Arrays.copyOf(this.target, capacity);
+            this.info = Arrays.copyOf(this.info, capacity);
+        }
+        this.pc[size] = pc;
+        this.target[size] = target;
+        this.info[size] = (byte) (type.ordinal()
+                | (null == dir ? 0 : dir.ordinal() + 1) << DIR_SHIFT
+                | insnSizeBytes << ISIZE_SHIFT);
+        size++;
+    }
+
+    /** Remove every branch from the trace, keeping its capacity for reuse */
+    public void clear() {
+        size = 0;
+    }
+
+    /** @return the number of branches in the trace */
+    public int size() {
+        return size;
+    }
+
+    public long pc(int index) {
+        return pc[index];
+    }
+
+    public long fallthroughPC(int index) {
+        return pc[index] + insnSizeBytes(index);
+    }
+
+    public long target(int index) {
+        return target[index];
+    }
+
+    public short insnSizeBytes(int index) {
+        return (short) ((info[index] >>> ISIZE_SHIFT) & ISIZE_MASK);
+    }
+
+    public BranchType type(int index) {
+        return BRANCH_TYPES[info[index] & TYPE_MASK];
+    }
+
+    public Direction direction(int index) {
+        final int d = (info[index] >>> DIR_SHIFT) & DIR_MASK;
+        return 0 == d ? null : DIRECTIONS[d - 1];
+    }
+
+    /** @return the PC following the branch: its target if taken, its fallthrough PC otherwise */
+    public long nextPC(int index) {
+        return Direction.Taken == direction(index) ? target[index] : fallthroughPC(index);
+    }
+
+    /**
+     * Copy the branches [start, start+n) into the batch arrays used by IBatchDirectionPredictor and
+     * IBatchBranchTargetBuffer: their pcs, their taken targets, and their outcomes as a bitset in
+     * which a set bit means Taken.
+     */
+    public void copyBatch(int start, int n, long[] pcs, long[] targets, long[] outcomes) {
+        System.arraycopy(pc, start, pcs, 0, n);
+        System.arraycopy(target, start, targets, 0, n);
+        for (int w = 0; w << 6 < n; w++) {
+            final int base = start + (w << 6);
+            final int end = Math.min(64, n - (w << 6));
+            long bits = 0;
+            for (int b = 0; b < end; b++) {
+                bits |= (long) ((info[base + b] >>> TAKEN_SHIFT) & 1) << b;
+            }
+            outcomes[w] = bits;
+        }
+    }
+
+    /** @return a new cursor over the entire trace */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /** A pass over the branches of a BranchTrace, which can be rewound to replay them. */
+    public class Cursor {
+
+        private int cur = -1;
+
+        /**
+         * Move to the next branch.
+         *
+         * @return true if there is a current branch, false if the end of the trace has been reached
+         */
+        public boolean advance() {
+            if (cur + 1 >= size) {
+                cur = size;
+                return false;
+            }
+            cur++;
+            return true;
+        }
+
+        /** Go back to the first branch, so the same branches can be replayed. */
+        public void rewind() {
+            cur = -1;
+        }
+
+        /** @return the index within the trace of the current branch */
+        public int index() {
+            return cur;
+        }
+
+        public long pc() {
+            return pc[cur];
+        }
+
+        public long fallthroughPC() {
+            return BranchTrace.this.fallthroughPC(cur);
+        }
+
+        public long target() {
+            return target[cur];
+        }
+
+        public BranchType type() {
+            return BranchTrace.this.type(cur);
+        }
+
+        public Direction direction() {
+            return BranchTrace.this.direction(cur);
+        }
+
+        public long nextPC() {
+            return BranchTrace.this.nextPC(cur);
+        }
+
+    }
+
+}
@@ -0,0 +1,71 @@
+package cis501;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads insns from a chunked binary trace file (see BinaryTrace), whose blocks are independently
+ * compressed. Only the block holding the current insn is ever inflated, so starting to read from
+ * the middle of a trace costs no more than starting at the beginning.
+ */
+public class ChunkedTraceSource extends BlockTraceSource {
+
+    /** File offset of each compressed block, plus the end of the last block */
+    private final long[] blockOffsets;
+    private final Inflater inflater = new Inflater();
+    private byte[] compressed = new byte[0];
+    private final byte[] raw;
+
+    /** @param filename The path to the chunked binary trace file */
+    public ChunkedTraceSource(String filename) throws IOException {
+        super(filename, BinaryTrace.CHUNKED_MAGIC, BinaryTrace.CHUNKED_TRAILER_BYTES);
+        file.seek(file.length() - BinaryTrace.CHUNKED_TRAILER_BYTES + 16);
+        final long indexOffset = file.readLong();
+
+        final int blocks = (int) ((insnCount + blockInsns - 1) / blockInsns);
+        blockOffsets = new long[blocks + 1];
+        file.seek(indexOffset);
+        for (int b = 0; b < blocks; b++) {
+            blockOffsets[b] = file.readLong();
+        }
+        blockOffsets[blocks] = dictOffset;
+        raw = new byte[(int) BinaryTrace.blockBytes(blockInsns)];
+        block = ByteBuffer.wrap(raw);
+        blockBase = 0;
+    }
+
+    @Override
+    protected void loadBlock(long b) {
+        final int len = (int) (blockOffsets[(int) b + 1] - blockOffsets[(int) b]);
+        if (compressed.length < len) {
+            compressed = new byte[len];
+        }
+        try {
+            file.seek(blockOffsets[(int) b]);
+            file.readFully(compressed, 0, len);
+            inflater.reset();
+            inflater.setInput(compressed, 0, len);
+            final int expected = (int) BinaryTrace.blockBytes(blockLength(b));
+            int n = 0;
+            while (n < expected && !inflater.finished()) {
+                final int k = inflater.inflate(raw, n, expected - n);
+                if (0 == k && inflater.needsInput()) break;
+                n += k;
+            }
+            if (n != expected) {
+                throw new IOException("Corrupt block " + b + " in chunked trace");
+            }
+        } catch (IOException | DataFormatException e) {
+            throw new IllegalStateException("Could not read block " + b + " of chunked trace", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        super.close();
+    }
+
+}
@@ -0,0 +1,107 @@
+package cis501;
+
+import java.util.Arrays;
+
+/**
+ * A histogram over a fixed number of integer-valued buckets, filled in a single pass over a trace.
+ * Cumulative counts are kept as prefix sums, recomputed only when the histogram has changed since
+ * the last query, so after a pass every cumulative query takes O(1) time.
+ */
+public class Histogram {
+
+    private final long[] counts;
+    /** prefix[b] is the sum of counts[0..b] */
+    private final long[] prefix;
+    private boolean prefixValid = true;
+
+    /** @param buckets the number of buckets, covering values 0 to buckets-1 */
+    public Histogram(int buckets) {
+        assert buckets > 0;
+        counts = new long[buckets];
+        prefix = new long[buckets];
+    }
+
+    /** @return the number of bits needed to encode v as a two's complement value */
+    public static int signedBits(long v) {
+        // v ^ (v >> 63) flips negative values so both signs count their significant bits
+        return 65 - Long.numberOfLeadingZeros(v ^ (v >> 63));
+    }
+
+    public int buckets() {
+        return counts.length;
+    }
+
+    /** Add one sample to the given bucket. Values beyond the last bucket fall into the last bucket. */
+    public void add(int bucket) {
+        add(bucket, 1);
+    }
+
+    public void add(int bucket, long n) {
+        assert bucket >= 0 : bucket;
+        counts[Math.min(bucket, counts.length - 1)] += n;
+        prefixValid = false;
+    }
+
+    /** Add all samples of the given histogram, which must have the same number of buckets. */
+    public void merge(Histogram h) {
+        if (h.counts.length != counts.length) {
+            throw new IllegalArgumentException("Cannot merge histograms with " + h.counts.length
+                    + " and " + counts.length + " buckets");
+        }
+        for (int b = 0; b < counts.length; b++) {
+            counts[b] += h.counts[b];
+        }
+        prefixValid = false;
+    }
+
+    public void clear() {
+        Arrays.fill(counts, 0);
+        prefixValid = false;
+    }
+
+    /** @return the number of samples in the given bucket */
+    public long count(int bucket) {
+        return counts[bucket];
+    }
+
+    /** @return the total number of samples */
+    public long total() {
+        return countLte(counts.length - 1);
+    }
+
+    /** @return the number of samples in buckets 0 to bucket, inclusive */
+    public long countLte(int bucket) {
+        if (!prefixValid) {
+            long sum = 0;
+            for (int b = 0; b < counts.length; b++) {
+                sum += counts[b];
+                prefix[b] = sum;
+            }
+            prefixValid = true;
+        }
+        return prefix[Math.min(bucket, counts.length - 1)];
+    }
+
+    /** @return the fraction of samples in buckets 0 to bucket, inclusive, or 0 if there are none */
+    public double fractionLte(int bucket) {
+        final long total = total();
+        return 0 == total ? 0.0 : (double) countLte(bucket) / total;
+    }
+
+    /** @return the average bucket value over all samples, or 0 if there are none */
+    public double mean() {
+        final long total = total();
+        if (0 == total) return 0.0;
+        double sum = 0;
+        for (int b = 0; b < counts.length; b++) {
+            sum += (double) b * counts[b];
+        }
+        return sum / total;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(counts);
+    }
+
+}
@@ -0,0 +1,23 @@
+package cis501;
+
+/**
+ * A branch target buffer that can also predict and train a whole batch of branches in one call,
+ * for trace-driven predictor studies. Branch outcomes are passed as a bitset held in a long array:
+ * branch i is bit (i % 64) of word (i / 64), and a set bit means Taken. See BatchPrediction for
+ * running any BTB over a batch.
+ */
+public interface IBatchBranchTargetBuffer extends IBranchTargetBuffer {
+
+    /**
+     * Predict each of the branches [0, n) in order, training the BTB with the actual target of
+     * each taken branch after predicting it, exactly as BranchPredictor.train() does.
+     *
+     * @param pcs         the program counters of the branches
+     * @param targets     the actual taken target of each branch
+     * @param outcomes    the actual direction of each branch, as a bitset
+     * @param predictions filled with the predicted target of each branch, 0 if there was no entry
+     * @param n           the number of branches in the batch
+     */
+    public void predictAndTrain(long[] pcs, long[] targets, long[] outcomes, long[] predictions, int n);
+
+}
@@ -0,0 +1,22 @@
+package cis501;
+
+/**
+ * A direction predictor that can also predict and train a whole batch of branches in one call,
+ * for trace-driven predictor studies. Branch outcomes and predictions are passed as bitsets held
+ * in long arrays: branch i is bit (i % 64) of word (i / 64), and a set bit means Taken. See
+ * BatchPrediction for running any predictor over a batch.
+ */
+public interface IBatchDirectionPredictor extends IDirectionPredictor {
+
+    /**
+     * Predict and then train each of the branches [0, n) in order, exactly as calling predict(pc)
+     * and then train(pc, actual) for each branch would.
+     *
+     * @param pcs         the program counters of the branches
+     * @param outcomes    the actual direction of each branch, as a bitset
+     * @param predictions filled with the predicted direction of each branch, as a bitset
+     * @param n           the number of branches in the batch
+     */
+    public void predictAndTrain(long[] pcs, long[] outcomes, long[] predictions, int n);
+
+}
@@ -11,6 +11,13 @@ public interface IOOOPipeline {
      */
     public void run(InsnIterator iiter);
 
+    /**
+     * Run the pipeline simulation over the insns exposed by the given cursor. The cursor's fields
+     * are overwritten on every advance(), so the pipeline must copy whatever it needs from the
+     * current insn into its own structures (e.g., the ROB) before advancing.
+     */
+    public void run(InsnCursor cursor);
+
     /** @return the number of insns (not uops!) executed so far */
     public long getInsns();
 
@@ -11,6 +11,12 @@ public interface ITraceAnalyzer {
      */
     public void run(Iterable<Insn> ui);
 
+    /**
+     * Run over the trace of insns exposed by the given cursor and compute the same summary data as
+     * run(Iterable), without allocating an Insn per dynamic insn.
+     */
+    public void run(InsnCursor cursor);
+
     /**
      * @return the average size of the insns in the trace, in bytes.
      */
@@ -0,0 +1,62 @@
+package cis501;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A trace decoded once and held in memory, so that it can be replayed any number of times, e.g.,
+ * to run the same trace through many predictor or cache configurations without re-reading the
+ * trace file. Each call to iterator() or cursor() starts a new, independent pass over the trace.
+ */
+public class InMemoryTrace implements Iterable<Insn> {
+
+    private final Insn[] insns;
+
+    public InMemoryTrace(List<Insn> l) {
+        this.insns = l.toArray(new Insn[l.size()]);
+    }
+
+    /**
+     * Read a trace file into memory.
+     *
+     * @param filename The path to the trace file
+     * @param limit    Stop after reading this many insns. If -1, read the entire trace.
+     */
+    public static InMemoryTrace load(String filename, int limit) throws IOException {
+        List<Insn> l = new ArrayList<>();
+        try (TraceSource src = TraceSource.open(filename)) {
+            Insn i;
+            while ((-1 == limit || l.size() < limit) && null != (i = src.read())) {
+                l.add(i);
+            }
+        }
+        return new InMemoryTrace(l);
+    }
+
+    /** @return the number of insns in the trace */
+    public int size() {
+        return insns.length;
+    }
+
+    public Insn get(int index) {
+        return insns[index];
+    }
+
+    /** @return a new iterator over the entire trace */
+    @Override
+    public InsnIterator iterator() {
+        return new InsnIterator(new ArrayTraceSource(insns), -1);
+    }
+
+    /** @return a new iterator over the insns [start, start+length) of the trace */
+    public InsnIterator iterator(int start, int length) {
+        return new InsnIterator(new ArrayTraceSource(insns, start, Math.min(insns.length, start + length)), -1);
+    }
+
+    /** @return a new cursor over the entire trace */
+    public ArrayTraceSource cursor() {
+        return new ArrayTraceSource(insns);
+    }
+
+}
@@ -1,5 +1,6 @@
 package cis501;
 
+import java.nio.charset.StandardCharsets;
 import java.util.StringTokenizer;
 
 /** Class representing a single micro-op. */
@@ -78,6 +79,45 @@ public class Insn {
         this.asm = asm;
     }
 
+    /** Create an insn sharing the static fields of s, with the given dynamic fields. */
+    Insn(StaticInsn s, Direction dir, long branchTarget, long memAddr) {
+        this.pc = s.pc;
+        this.insnSizeBytes = s.insnSizeBytes;
+        this.branchType = s.branchType;
+        this.branchDirection = dir;
+        this.branchTarget = branchTarget;
+        this.mem = s.mem;
+        this.memAddress = memAddr;
+        this.memAccessBytes = s.memAccessBytes;
+        this.condCode = s.condCode;
+        this.dstReg = s.dstReg;
+        this.srcReg1 = s.srcReg1;
+        this.srcReg2 = s.srcReg2;
+        this.asm = s.asm;
+    }
+
+    /** Create an insn from already-decoded trace fields, in the order they appear in a trace line. */
+    Insn(long pc, int isize,
+         BranchType btype, Direction dir, long branchTarget,
+         MemoryOp mop, long memAddr, int msize,
+         CondCodes cc,
+         int dr, int sr1, int sr2,
+         String asm) {
+        this.dstReg = (short) dr;
+        this.srcReg1 = (short) sr1;
+        this.srcReg2 = (short) sr2;
+        this.pc = pc;
+        this.insnSizeBytes = (short) isize;
+        this.branchType = btype;
+        this.branchDirection = dir;
+        this.branchTarget = branchTarget;
+        this.condCode = cc;
+        this.mem = mop;
+        this.memAddress = memAddr;
+        this.memAccessBytes = (short) msize;
+        this.asm = asm;
+    }
+
     private static short parseReg(String r) {
         switch (r) {
             case "  _":
@@ -119,47 +159,6 @@ public class Insn {
         }
     }
 
-    private static String stringOfReg(short reg) {
-        switch (reg) {
-            case -1:
-                return "  _";
-            case 0:
-                return " r0";
-            case 1:
-                return " r1";
-            case 2:
-                return " r2";
-            case 3:
-                return " r3";
-            case 4:
-                return " r4";
-            case 5:
-                return " r5";
-            case 6:
-                return " r6";
-            case 7:
-                return " r7";
-            case 8:
-                return " r8";
-            case 9:
-                return " r9";
-            case 10:
-                return "r10";
-            case 11:
-                return "r11";
-            case 12:
-                return "r12";
-            case 13:
-                return " sp";
-            case 14:
-                return " lr";
-            case 15:
-                return " pc";
-            default:
-                throw new IllegalArgumentException("Invalid register: " + reg);
-        }
-    }
-
     private static CondCodes CondCodeOfChar(char c) {
         switch (c) {
             case 'R':
@@ -217,68 +216,10 @@ public class Insn {
         return this.pc + this.insnSizeBytes;
     }
 
-    private char condCodeChar() {
-        if (null == this.condCode) return '_';
-        switch (this.condCode) {
-            case ReadCC:
-                return 'R';
-            case WriteCC:
-                return 'W';
-            case ReadWriteCC:
-                return 'B';
-            default:
-                throw new IllegalArgumentException("Invalid condcode field: " + this.toString());
-        }
-    }
-
-    private String branchTypeString() {
-        if (null == this.branchType) return " _";
-        switch (this.branchType) {
-            case ConditionalDirect:
-                return "CD";
-            case ConditionalIndirect:
-                return "CI";
-            case UnconditionalDirect:
-                return "UD";
-            case UnconditionalIndirect:
-                return "UI";
-            default:
-                throw new IllegalArgumentException("Invalid branch type: " + this.toString());
-        }
-    }
-
-    private char branchDirectionChar() {
-        if (null == this.branchDirection) return '_';
-        switch (this.branchDirection) {
-            case NotTaken:
-                return 'N';
-            case Taken:
-                return 'T';
-            default:
-                throw new IllegalArgumentException("Invalid branch direction: " + this.toString());
-        }
-    }
-
-    private char memChar() {
-        if (null == this.mem) return '_';
-        switch (this.mem) {
-            case Load:
-                return 'L';
-            case Store:
-                return 'S';
-            default:
-                throw new IllegalArgumentException("Invalid mem field: " + this.toString());
-        }
-    }
-
     public String toTraceLine() {
-        return String.format("%08x\t%d\t%s\t%c\t%08x\t%c\t%08x\t%d\t%c\t%s\t%s\t%s\t%s%n",
-                this.pc, this.insnSizeBytes,
-                branchTypeString(), branchDirectionChar(), this.branchTarget,
-                memChar(), this.memAddress, this.memAccessBytes,
-                condCodeChar(),
-                stringOfReg(this.dstReg), stringOfReg(this.srcReg1), stringOfReg(this.srcReg2),
-                this.asm);
+        final byte[] b = new byte[TraceLineFormatter.maxLineBytes(this)];
+        final int n = TraceLineFormatter.format(this, b, 0) - 1; // drop the '\n'
+        return new String(b, 0, n, StandardCharsets.US_ASCII) + System.lineSeparator();
     }
 
     @Override
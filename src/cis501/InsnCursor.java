@@ -0,0 +1,49 @@
+package cis501;
+
+/**
+ * A reusable view over the insns of a trace. Unlike InsnIterator, which allocates a new Insn for
+ * every dynamic insn, a cursor exposes the fields of the current insn through primitive getters
+ * and overwrites them on every call to advance(). Callers must copy out any values they need to
+ * keep before advancing.
+ *
+ * <p>The getters mirror the fields of Insn, and are only valid after advance() has returned true.
+ */
+public interface InsnCursor {
+
+    /**
+     * Move to the next insn of the trace.
+     *
+     * @return true if there is a current insn, false if the end of the trace has been reached
+     */
+    public boolean advance();
+
+    public long pc();
+
+    public short insnSizeBytes();
+
+    public short dstReg();
+
+    public short srcReg1();
+
+    public short srcReg2();
+
+    public BranchType branchType();
+
+    public Direction branchDirection();
+
+    public long branchTarget();
+
+    public CondCodes condCode();
+
+    public MemoryOp mem();
+
+    public long memAddress();
+
+    public short memAccessBytes();
+
+    public String asm();
+
+    /** @return a new Insn holding the fields of the current insn */
+    public Insn toInsn();
+
+}
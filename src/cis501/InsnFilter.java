@@ -0,0 +1,9 @@
+package cis501;
+
+/** Decides which insns a TraceWriter keeps. See InsnFilters for the common filters. */
+public interface InsnFilter {
+
+    /** @return true if i should be written, false if it should be dropped */
+    public boolean accept(Insn i);
+
+}
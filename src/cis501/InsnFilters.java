@@ -0,0 +1,71 @@
+package cis501;
+
+/**
+ * Common InsnFilters, for shrinking a trace down to the insns a particular study needs, e.g., only
+ * branches for branch predictor studies, or only loads and stores for cache studies.
+ */
+public final class InsnFilters {
+
+    private InsnFilters() {
+    }
+
+    /** @return a filter keeping only branches */
+    public static InsnFilter branches() {
+        return new InsnFilter() {
+            @Override
+            public boolean accept(Insn i) {
+                return null != i.branchType;
+            }
+        };
+    }
+
+    /** @return a filter keeping only loads and stores */
+    public static InsnFilter memory() {
+        return new InsnFilter() {
+            @Override
+            public boolean accept(Insn i) {
+                return null != i.mem;
+            }
+        };
+    }
+
+    /** @return a filter keeping only insns with PCs in [lo, hi) */
+    public static InsnFilter pcRange(final long lo, final long hi) {
+        if (lo > hi) {
+            throw new IllegalArgumentException(String.format("Empty PC range [%x, %x)", lo, hi));
+        }
+        return new InsnFilter() {
+            @Override
+            public boolean accept(Insn i) {
+                return i.pc >= lo && i.pc < hi;
+            }
+        };
+    }
+
+    /** @return a filter keeping only insns that every one of the given filters keeps */
+    public static InsnFilter all(final InsnFilter... filters) {
+        return new InsnFilter() {
+            @Override
+            public boolean accept(Insn i) {
+                for (InsnFilter f : filters) {
+                    if (!f.accept(i)) return false;
+                }
+                return true;
+            }
+        };
+    }
+
+    /** @return a filter keeping insns that any of the given filters keeps */
+    public static InsnFilter any(final InsnFilter... filters) {
+        return new InsnFilter() {
+            @Override
+            public boolean accept(Insn i) {
+                for (InsnFilter f : filters) {
+                    if (f.accept(i)) return true;
+                }
+                return false;
+            }
+        };
+    }
+
+}
@@ -1,82 +1,170 @@
 package cis501;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Stack;
-import java.util.zip.GZIPInputStream;
 
 public class InsnIterator implements Iterator<Insn>, Iterable<Insn> {
 
-    private final BufferedReader reader;
+    /**
+     * The maximum number of insns that can be buffered at once, counting both insns that have
+     * been put back and insns read ahead by peek().
+     */
+    public static final int LOOKAHEAD_CAPACITY = 64;
+
+    /** Check for thread interruption once per this many calls (must be a power of 2) */
+    private static final int INTERRUPT_CHECK_INTERVAL = 1024;
+
+    private final TraceSource source;
     private final int LIMIT;
-    private final List<Insn> list;
-    private final Stack<Insn> pbBuffer = new Stack<>();
-    private int insnsProcessed = 0;
+    /** The number of insns read from source so far */
+    private int sourceReads = 0;
+    private boolean sourceClosed = false;
+    private int calls = 0;
+
+    /**
+     * Ring of buffered insns: put-back insns are pushed onto the front, insns read ahead from
+     * source are appended to the back, and next() takes from the front.
+     */
+    private final Insn[] ring = new Insn[LOOKAHEAD_CAPACITY];
+    private static final int RING_MASK = LOOKAHEAD_CAPACITY - 1;
+    private int ringHead = 0;
+    private int ringCount = 0;
 
     /**
-     * @param filename The path to the compressed trace file
+     * @param filename The path to the trace file, either a compressed text trace or a binary trace
+     *                 produced by TraceConverter
      * @param limit    Stop after processing this many insns. If -1, process the entire trace.
      */
     public InsnIterator(String filename, int limit) {
+        this(openTrace(filename), limit);
+    }
+
+    /**
+     * Iterate over a region of the given trace file. Binary and chunked binary traces seek directly
+     * to the start insn; compressed text traces have to read and discard all insns before it.
+     *
+     * @param filename The path to the trace file
+     * @param start    The index of the first insn to process
+     * @param length   Stop after processing this many insns. If -1, process the rest of the trace.
+     */
+    public InsnIterator(String filename, long start, int length) {
+        this(openTrace(filename), length);
+        try {
+            source.skip(start);
+        } catch (IOException e) {
+            closeSource();
+            throw new IllegalArgumentException("Could not skip to insn " + start + " of trace file: " + filename, e);
+        }
+    }
+
+    /**
+     * @param src   The source of insns to iterate over
+     * @param limit Stop after processing this many insns. If -1, process the entire trace.
+     */
+    public InsnIterator(TraceSource src, int limit) {
         if (-1 == limit) {
             LIMIT = Integer.MAX_VALUE; // no limit
         } else {
             LIMIT = limit;
         }
-        list = null;
+        source = src;
+    }
 
-        InputStreamReader isr = null;
+    /**
+     * Iterate over the given insns. The list is copied up front, so each insn is then returned in
+     * O(1) time regardless of the kind of list, and the caller's list is left unmodified.
+     */
+    public InsnIterator(List<Insn> l) {
+        this(new ArrayTraceSource(l.toArray(new Insn[l.size()])), l.size());
+    }
+
+    private static TraceSource openTrace(String filename) {
         try {
-            isr = new InputStreamReader(new GZIPInputStream(new FileInputStream(filename)), "US-ASCII");
+            return TraceSource.open(filename);
         } catch (IOException e) {
             e.printStackTrace();
+            throw new IllegalArgumentException("Could not open trace file: " + filename, e);
         }
-        reader = new BufferedReader(isr);
     }
 
-    public InsnIterator(List<Insn> l) {
-        reader = null;
-        LIMIT = l.size();
-        list = l;
+    /** Interruption is polled periodically rather than on every call, to keep the common path cheap. */
+    private void checkInterrupted() {
+        if (0 == (++calls & (INTERRUPT_CHECK_INTERVAL - 1)) && Thread.interrupted()) {
+            throw new IllegalStateException("Interrupted!");
+        }
     }
 
-    public boolean hasNext() {
-        if (Thread.interrupted()) {
-            throw new IllegalStateException("Interrupted!");
+    /**
+     * Append the next insn from source to the back of the ring.
+     *
+     * @return false if there are no more insns to read from source
+     */
+    private boolean readAhead() {
+        if (sourceClosed) return false;
+        if (sourceReads >= LIMIT) {
+            closeSource();
+            return false;
         }
+        if (LOOKAHEAD_CAPACITY == ringCount) {
+            throw new IllegalStateException("Cannot buffer more than " + LOOKAHEAD_CAPACITY + " insns");
+        }
+        Insn i = null;
         try {
-            return !pbBuffer.isEmpty() ||
-                    (insnsProcessed < LIMIT &&
-                           ((null != reader && reader.ready()) ||
-                            (null != list && !list.isEmpty())));
+            i = source.read();
         } catch (IOException e) {
             e.printStackTrace();
+        }
+        if (null == i) {
+            closeSource();
             return false;
         }
+        sourceReads++;
+        ring[(ringHead + ringCount) & RING_MASK] = i;
+        ringCount++;
+        return true;
     }
 
-    public Insn next() {
-        if (Thread.interrupted()) {
-            throw new IllegalStateException("Interrupted!");
-        }
+    private void closeSource() {
+        sourceClosed = true;
         try {
-            insnsProcessed++;
-            if (!pbBuffer.isEmpty()) {
-                return pbBuffer.pop();
-            }
-            if (null != list) {
-                return list.remove(0);
-            }
-            String ln = reader.readLine();
-            return new Insn(ln);
+            source.close();
         } catch (IOException e) {
             e.printStackTrace();
+        }
+    }
+
+    public boolean hasNext() {
+        checkInterrupted();
+        return ringCount > 0 || readAhead();
+    }
+
+    public Insn next() {
+        checkInterrupted();
+        if (0 == ringCount && !readAhead()) {
             return null;
         }
+        Insn i = ring[ringHead];
+        ring[ringHead] = null;
+        ringHead = (ringHead + 1) & RING_MASK;
+        ringCount--;
+        return i;
+    }
+
+    /**
+     * Look ahead in the trace without consuming any insns. peek(0) returns the insn that the next
+     * call to next() will return, peek(1) the one after that, and so on. This lets a pipeline model
+     * a fetch width greater than 1 without having to putBack() the insns it could not fetch.
+     *
+     * @param k how far ahead to look, in the range [0, LOOKAHEAD_CAPACITY)
+     * @return the k-th upcoming insn, or null if the trace ends before it
+     */
+    public Insn peek(int k) {
+        assert k >= 0 && k < LOOKAHEAD_CAPACITY : k;
+        while (ringCount <= k) {
+            if (!readAhead()) return null;
+        }
+        return ring[(ringHead + k) & RING_MASK];
     }
 
     /**
@@ -84,8 +172,13 @@ public class InsnIterator implements Iterator<Insn>, Iterable<Insn> {
      * next() will return i. Insns that are put back will be returned via next() in LIFO order.
      */
     public void putBack(Insn i) {
-        pbBuffer.push(i);
-        insnsProcessed--;
+        checkInterrupted();
+        if (LOOKAHEAD_CAPACITY == ringCount) {
+            throw new IllegalStateException("Cannot buffer more than " + LOOKAHEAD_CAPACITY + " insns");
+        }
+        ringHead = (ringHead - 1) & RING_MASK;
+        ring[ringHead] = i;
+        ringCount++;
     }
 
     public Iterator<Insn> iterator() {
@@ -0,0 +1,95 @@
+package cis501;
+
+import java.util.Iterator;
+
+/** Adapts an iterator over Insn objects, e.g., an InsnIterator, to the InsnCursor interface. */
+public class IteratorInsnCursor implements InsnCursor {
+
+    private final Iterator<Insn> iter;
+    private Insn cur = null;
+
+    public IteratorInsnCursor(Iterator<Insn> it) {
+        this.iter = it;
+    }
+
+    @Override
+    public boolean advance() {
+        if (!iter.hasNext()) {
+            cur = null;
+            return false;
+        }
+        cur = iter.next();
+        return true;
+    }
+
+    @Override
+    public long pc() {
+        return cur.pc;
+    }
+
+    @Override
+    public short insnSizeBytes() {
+        return cur.insnSizeBytes;
+    }
+
+    @Override
+    public short dstReg() {
+        return cur.dstReg;
+    }
+
+    @Override
+    public short srcReg1() {
+        return cur.srcReg1;
+    }
+
+    @Override
+    public short srcReg2() {
+        return cur.srcReg2;
+    }
+
+    @Override
+    public BranchType branchType() {
+        return cur.branchType;
+    }
+
+    @Override
+    public Direction branchDirection() {
+        return cur.branchDirection;
+    }
+
+    @Override
+    public long branchTarget() {
+        return cur.branchTarget;
+    }
+
+    @Override
+    public CondCodes condCode() {
+        return cur.condCode;
+    }
+
+    @Override
+    public MemoryOp mem() {
+        return cur.mem;
+    }
+
+    @Override
+    public long memAddress() {
+        return cur.memAddress;
+    }
+
+    @Override
+    public short memAccessBytes() {
+        return cur.memAccessBytes;
+    }
+
+    @Override
+    public String asm() {
+        return cur.asm;
+    }
+
+    @Override
+    public Insn toInsn() {
+        return cur;
+    }
+
+}
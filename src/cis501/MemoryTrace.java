@@ -0,0 +1,142 @@
+package cis501;
+
+import java.util.Arrays;
+
+/**
+ * The loads and stores of a trace, projected out of the full trace and stored as primitive
+ * columns: the pc and address of each access, and one short packing its size and whether it is a
+ * store. At 18 bytes per access, replaying just the memory accesses of a trace through a cache
+ * reads a small fraction of the data that stepping through every insn does. See TraceProjection
+ * for building and caching projections.
+ */
+public class MemoryTrace {
+
+    /** Bytes used by a single access, summed across all columns */
+    public static final int ACCESS_BYTES = 8 + 8 + 2;
+
+    private static final int STORE_BIT = 0x8000;
+    private static final int MSIZE_MASK = 0x7FFF;
+
+    long[] pc;
+    long[] address;
+    short[] info;
+    int size = 0;
+
+    public MemoryTrace() {
+        this(1 << 10);
+    }
+
+    public MemoryTrace(int initialCapacity) {
+        final int n = Math.max(1, initialCapacity);
+        pc = new long[n];
+        address = new long[n];
+        info = new short[n];
+    }
+
+    /** Append the given load or store to the trace */
+    public void add(Insn i) {
+        add(i.pc, i.mem, i.memAddress, i.memAccessBytes);
+    }
+
+    /** Append a memory access to the trace */
+    public void add(long pc, MemoryOp mop, long address, int memAccessBytes) {
+        if (null == mop) {
+            throw new IllegalArgumentException(String.format("Insn at %x does not access memory", pc));
+        }
+        if (memAccessBytes < 0 || memAccessBytes > MSIZE_MASK) {
+            throw new IllegalArgumentException("Mem access size does not fit in memory trace: " + memAccessBytes);
+        }
+        if (size == this.pc.length) {
+            final int capacity = (int) Math.min(Integer.MAX_VALUE, 2L * size);
+            this.pc = Arrays.copyOf(this.pc, capacity);
+            this.address = Arrays.copyOf(this.address, capacity);
+            this.info = Arrays.copyOf(this.info, capacity);
+        }
+        this.pc[size] = pc;
+        this.address[size] = address;
+        this.info[size] = (short) ((MemoryOp.Store == mop ? STORE_BIT : 0) | memAccessBytes);
+        size++;
+    }
+
+    /** @return the number of accesses in the trace */
+    public int size() {
+        return size;
+    }
+
+    public long pc(int index) {
+        return pc[index];
+    }
+
+    public long address(int index) {
+        return address[index];
+    }
+
+    public boolean isLoad(int index) {
+        return 0 == (info[index] & STORE_BIT);
+    }
+
+    public MemoryOp mem(int index) {
+        return isLoad(index) ? MemoryOp.Load : MemoryOp.Store;
+    }
+
+    public short memAccessBytes(int index) {
+        return (short) (info[index] & MSIZE_MASK);
+    }
+
+    /** @return a new cursor over the entire trace */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /** A pass over the accesses of a MemoryTrace, which can be rewound to replay them. */
+    public class Cursor {
+
+        private int cur = -1;
+
+        /**
+         * Move to the next access.
+         *
+         * @return true if there is a current access, false if the end of the trace has been reached
+         */
+        public boolean advance() {
+            if (cur + 1 >= size) {
+                cur = size;
+                return false;
+            }
+            cur++;
+            return true;
+        }
+
+        /** Go back to the first access, so the same accesses can be replayed. */
+        public void rewind() {
+            cur = -1;
+        }
+
+        /** @return the index within the trace of the current access */
+        public int index() {
+            return cur;
+        }
+
+        public long pc() {
+            return pc[cur];
+        }
+
+        public long address() {
+            return address[cur];
+        }
+
+        public boolean isLoad() {
+            return MemoryTrace.this.isLoad(cur);
+        }
+
+        public MemoryOp mem() {
+            return MemoryTrace.this.mem(cur);
+        }
+
+        public short memAccessBytes() {
+            return MemoryTrace.this.memAccessBytes(cur);
+        }
+
+    }
+
+}
@@ -0,0 +1,147 @@
+package cis501;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a text trace as a multi-member gzip file, where each member holds a fixed number of whole
+ * trace lines. The result is an ordinary gzip file (gunzip and TextTraceSource read it as a single
+ * stream), but each member also records its own compressed size in a gzip extra field, so that
+ * ParallelTextTraceSource can find every member without inflating anything and decode them on
+ * separate threads.
+ *
+ * <p>Each member is laid out as:
+ *
+ * <pre>
+ *   header:  1f 8b 08, FLG=FEXTRA, MTIME=0, XFL=0, OS=255, XLEN=8
+ *   extra:   subfield 'C' '5', LEN=4, int memberBytes
+ *   body:    raw deflate data
+ *   trailer: int CRC32, int ISIZE
+ * </pre>
+ *
+ * As everywhere in gzip, multi-byte values are little-endian.
+ */
+public class MultiMemberTraceWriter extends TraceWriter {
+
+    /** The default number of insns per gzip member */
+    public static final int DEFAULT_MEMBER_INSNS = 1 << 16;
+
+    static final int HEADER_BYTES = 20;
+    static final int TRAILER_BYTES = 8;
+    static final int FLG_FEXTRA = 0x04;
+    static final int XLEN = 8;
+    static final byte SUBFIELD_ID1 = 'C';
+    static final byte SUBFIELD_ID2 = '5';
+
+    private final OutputStream out;
+    private final int memberInsns;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 crc = new CRC32();
+
+    /** Trace lines of the member currently being filled */
+    private final ByteArrayOutputStream lines = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final byte[] deflateBuf = new byte[1 << 16];
+    private byte[] lineBuf = new byte[256];
+    private int memberFill = 0;
+
+    private long insnCount = 0;
+    private long members = 0;
+
+    public MultiMemberTraceWriter(String filename) throws IOException {
+        this(filename, DEFAULT_MEMBER_INSNS);
+    }
+
+    /**
+     * @param filename    the path of the compressed trace file to create
+     * @param memberInsns the number of insns per gzip member
+     */
+    public MultiMemberTraceWriter(String filename, int memberInsns) throws IOException {
+        assert memberInsns > 0;
+        this.memberInsns = memberInsns;
+        out = new BufferedOutputStream(new FileOutputStream(filename), 1 << 16);
+    }
+
+    @Override
+    protected void append(Insn i) throws IOException {
+        if (lineBuf.length < TraceLineFormatter.maxLineBytes(i)) {
+            lineBuf = new byte[TraceLineFormatter.maxLineBytes(i)];
+        }
+        lines.write(lineBuf, 0, TraceLineFormatter.format(i, lineBuf, 0));
+        memberFill++;
+        insnCount++;
+        if (memberInsns == memberFill) {
+            flushMember();
+        }
+    }
+
+    private void flushMember() throws IOException {
+        if (0 == memberFill) return;
+        final byte[] raw = lines.toByteArray();
+        crc.reset();
+        crc.update(raw, 0, raw.length);
+        body.reset();
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        while (!deflater.finished()) {
+            final int n = deflater.deflate(deflateBuf);
+            body.write(deflateBuf, 0, n);
+        }
+
+        final int memberBytes = HEADER_BYTES + body.size() + TRAILER_BYTES;
+        out.write(0x1f);
+        out.write(0x8b);
+        out.write(Deflater.DEFLATED);
+        out.write(FLG_FEXTRA);
+        writeIntLE(0); // MTIME
+        out.write(0); // XFL
+        out.write(255); // OS: unknown
+        writeShortLE(XLEN);
+        out.write(SUBFIELD_ID1);
+        out.write(SUBFIELD_ID2);
+        writeShortLE(4);
+        writeIntLE(memberBytes);
+        body.writeTo(out);
+        writeIntLE((int) crc.getValue());
+        writeIntLE(raw.length);
+
+        lines.reset();
+        memberFill = 0;
+        members++;
+    }
+
+    private void writeShortLE(int v) throws IOException {
+        out.write(v & 0xFF);
+        out.write((v >>> 8) & 0xFF);
+    }
+
+    private void writeIntLE(int v) throws IOException {
+        writeShortLE(v & 0xFFFF);
+        writeShortLE(v >>> 16);
+    }
+
+    @Override
+    public long getInsns() {
+        return insnCount;
+    }
+
+    /** @return the number of complete gzip members written so far */
+    public long getMembers() {
+        return members;
+    }
+
+    /** Write out the final member and close the file. */
+    @Override
+    public void close() throws IOException {
+        flushMember();
+        deflater.end();
+        out.close();
+    }
+
+}
@@ -0,0 +1,371 @@
+package cis501;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An in-memory trace stored as primitive columns rather than as Insn objects. Each insn takes one
+ * long of packed registers, enum fields and sizes, plus its pc, branch target and memory address
+ * and an int asm id: 36 bytes, compared to over 80 bytes for an Insn object and the reference to
+ * it. The columns are scanned sequentially, so replaying a trace touches far fewer cache lines
+ * than chasing Insn references does.
+ *
+ * <p>The packed info word holds the flags of BinaryTrace.packFlags() in its low 32 bits, and the
+ * memory access size in the next 16 bits. The static accessors below decode it back into the
+ * existing enums, with null for absent fields, just like the fields of Insn.
+ *
+ * <p>Like InMemoryTrace, each call to iterator() or cursor() starts a new, independent pass over
+ * the trace.
+ */
+public class PackedTrace implements Iterable<Insn> {
+
+    /** Bytes used by a single insn, summed across all columns */
+    public static final int INSN_BYTES = 4 * 8 + 4;
+
+    private static final int DEFAULT_CAPACITY = 1 << 10;
+    private static final int MSIZE_SHIFT = 32;
+    private static final long MSIZE_MASK = 0xFFFF;
+
+    private long[] info;
+    private long[] pc;
+    private long[] branchTarget;
+    private long[] memAddress;
+    private int[] asmId;
+    private int size = 0;
+
+    /** Distinct asm strings, indexed by asm id */
+    private final List<String> asms = new ArrayList<>();
+    private final Map<String, Integer> asmIds = new HashMap<>();
+
+    public PackedTrace() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public PackedTrace(int initialCapacity) {
+        final int n = Math.max(1, initialCapacity);
+        info = new long[n];
+        pc = new long[n];
+        branchTarget = new long[n];
+        memAddress = new long[n];
+        asmId = new int[n];
+    }
+
+    /**
+     * Read a trace file into memory.
+     *
+     * @param filename The path to the trace file
+     * @param limit    Stop after reading this many insns. If -1, read the entire trace.
+     */
+    public static PackedTrace load(String filename, int limit) throws IOException {
+        InsnCursor c = TraceSource.openCursor(filename, limit);
+        final PackedTrace t;
+        try {
+            // size the columns from the trace's length where it is known, so that a limit larger
+            // than the trace doesn't allocate space for insns that will never be read
+            long capacity = -1 == limit ? Long.MAX_VALUE : limit;
+            if (c instanceof BlockTraceSource) {
+                capacity = Math.min(capacity, ((BlockTraceSource) c).getInsnCount());
+            } else {
+                capacity = Math.min(capacity, DEFAULT_CAPACITY);
+            }
+            t = new PackedTrace((int) Math.min(capacity, Integer.MAX_VALUE));
+            while (c.advance()) {
+                t.add(c);
+            }
+        } finally {
+            ((Closeable) c).close();
+        }
+        t.trimToSize();
+        return t;
+    }
+
+    /** Pack the registers, enum fields and sizes of an insn into a single long. */
+    public static long packInfo(int dstReg, int srcReg1, int srcReg2, int insnSizeBytes,
+                                BranchType bt, Direction dir, MemoryOp mop, CondCodes cc,
+                                int memAccessBytes) {
+        if (memAccessBytes < 0 || memAccessBytes > MSIZE_MASK) {
+            throw new IllegalArgumentException("Mem access size does not fit in packed trace: " + memAccessBytes);
+        }
+        final int flags = BinaryTrace.packFlags(dstReg, srcReg1, srcReg2, insnSizeBytes, bt, dir, mop, cc);
+        return (flags & BinaryTrace.ADDRESS_MASK) | (long) memAccessBytes << MSIZE_SHIFT;
+    }
+
+    public static long packInfo(Insn i) {
+        return packInfo(i.dstReg, i.srcReg1, i.srcReg2, i.insnSizeBytes,
+                i.branchType, i.branchDirection, i.mem, i.condCode, i.memAccessBytes);
+    }
+
+    public static short dstReg(long info) {
+        return BinaryTrace.dstReg((int) info);
+    }
+
+    public static short srcReg1(long info) {
+        return BinaryTrace.srcReg1((int) info);
+    }
+
+    public static short srcReg2(long info) {
+        return BinaryTrace.srcReg2((int) info);
+    }
+
+    public static short insnSizeBytes(long info) {
+        return BinaryTrace.insnSizeBytes((int) info);
+    }
+
+    public static BranchType branchType(long info) {
+        return BinaryTrace.branchType((int) info);
+    }
+
+    public static Direction branchDirection(long info) {
+        return BinaryTrace.branchDirection((int) info);
+    }
+
+    public static MemoryOp mem(long info) {
+        return BinaryTrace.mem((int) info);
+    }
+
+    public static CondCodes condCode(long info) {
+        return BinaryTrace.condCode((int) info);
+    }
+
+    public static short memAccessBytes(long info) {
+        return (short) ((info >>> MSIZE_SHIFT) & MSIZE_MASK);
+    }
+
+    /** Append the given insn to the trace */
+    public void add(Insn i) {
+        append(i.pc, packInfo(i), i.branchTarget, i.memAddress, i.asm);
+    }
+
+    /** Append the current insn of the given cursor to the trace, without creating an Insn */
+    public void add(InsnCursor c) {
+        append(c.pc(),
+                packInfo(c.dstReg(), c.srcReg1(), c.srcReg2(), c.insnSizeBytes(),
+                        c.branchType(), c.branchDirection(), c.mem(), c.condCode(), c.memAccessBytes()),
+                c.branchTarget(), c.memAddress(), c.asm());
+    }
+
+    private void append(long pc, long info, long branchTarget, long memAddress, String asm) {
+        if (size == this.pc.length) {
+            if (Integer.MAX_VALUE == size) {
+                throw new IllegalStateException("Packed trace is full");
+            }
+            resize((int) Math.min(Integer.MAX_VALUE, 2L * size));
+        }
+        this.info[size] = info;
+        this.pc[size] = pc;
+        this.branchTarget[size] = branchTarget;
+        this.memAddress[size] = memAddress;
+        this.asmId[size] = asmId(asm);
+        size++;
+    }
+
+    private int asmId(String asm) {
+        Integer id = asmIds.get(asm);
+        if (null == id) {
+            id = asms.size();
+            asms.add(asm);
+            asmIds.put(asm, id);
+        }
+        return id;
+    }
+
+    private void resize(int capacity) {
+        info = Arrays.copyOf(info, capacity);
+        pc = Arrays.copyOf(pc, capacity);
+        branchTarget = Arrays.copyOf(branchTarget, capacity);
+        memAddress = Arrays.copyOf(memAddress, capacity);
+        asmId = Arrays.copyOf(asmId, capacity);
+    }
+
+    /** Release any unused capacity, e.g., once the whole trace has been added */
+    public void trimToSize() {
+        if (size != pc.length) {
+            resize(Math.max(1, size));
+        }
+    }
+
+    /** @return the number of insns in the trace */
+    public int size() {
+        return size;
+    }
+
+    public long pc(int index) {
+        return pc[index];
+    }
+
+    /** @return the packed info word of an insn, which can be decoded with the static accessors */
+    public long info(int index) {
+        return info[index];
+    }
+
+    public long branchTarget(int index) {
+        return branchTarget[index];
+    }
+
+    public long memAddress(int index) {
+        return memAddress[index];
+    }
+
+    public String asm(int index) {
+        return asms.get(asmId[index]);
+    }
+
+    /** @return a new Insn holding the fields of the insn at the given index */
+    public Insn get(int index) {
+        final long f = info[index];
+        return new Insn(pc[index], insnSizeBytes(f),
+                branchType(f), branchDirection(f), branchTarget[index],
+                mem(f), memAddress[index], memAccessBytes(f),
+                condCode(f),
+                dstReg(f), srcReg1(f), srcReg2(f),
+                asm(index));
+    }
+
+    /** @return a new iterator over the entire trace */
+    @Override
+    public InsnIterator iterator() {
+        return new InsnIterator(cursor(), -1);
+    }
+
+    /** @return a new cursor over the entire trace */
+    public Cursor cursor() {
+        return new Cursor(0, size);
+    }
+
+    /** @return a new cursor over the insns [start, start+length) of the trace */
+    public Cursor cursor(int start, int length) {
+        return new Cursor(start, (int) Math.min(size, (long) start + length));
+    }
+
+    /**
+     * Reads insns out of the columns of a PackedTrace, decoding fields only when they are asked
+     * for. Reading, skipping and rewinding are all O(1).
+     */
+    public class Cursor extends TraceSource implements InsnCursor {
+
+        private final int start;
+        private int end;
+        /** The index of the next insn to read */
+        private int pos;
+        /** The index of the current insn */
+        private int cur = -1;
+
+        Cursor(int start, int end) {
+            assert 0 <= start && start <= end && end <= size;
+            this.start = start;
+            this.end = end;
+            this.pos = start;
+        }
+
+        @Override
+        public Insn read() {
+            if (pos >= end) return null;
+            return get(pos++);
+        }
+
+        @Override
+        public void skip(long n) {
+            pos = (int) Math.min(end, pos + n);
+        }
+
+        /** Stop reading after the next n insns. */
+        public void setLimit(long n) {
+            end = (int) Math.min(end, pos + n);
+        }
+
+        /** Go back to the first insn, so the same insns can be replayed. */
+        public void rewind() {
+            pos = start;
+            cur = -1;
+        }
+
+        /** @return the index within the trace of the current insn */
+        public int index() {
+            return cur;
+        }
+
+        @Override
+        public boolean advance() {
+            if (pos >= end) return false;
+            cur = pos++;
+            return true;
+        }
+
+        @Override
+        public long pc() {
+            return pc[cur];
+        }
+
+        @Override
+        public short insnSizeBytes() {
+            return PackedTrace.insnSizeBytes(info[cur]);
+        }
+
+        @Override
+        public short dstReg() {
+            return PackedTrace.dstReg(info[cur]);
+        }
+
+        @Override
+        public short srcReg1() {
+            return PackedTrace.srcReg1(info[cur]);
+        }
+
+        @Override
+        public short srcReg2() {
+            return PackedTrace.srcReg2(info[cur]);
+        }
+
+        @Override
+        public BranchType branchType() {
+            return PackedTrace.branchType(info[cur]);
+        }
+
+        @Override
+        public Direction branchDirection() {
+            return PackedTrace.branchDirection(info[cur]);
+        }
+
+        @Override
+        public long branchTarget() {
+            return branchTarget[cur];
+        }
+
+        @Override
+        public CondCodes condCode() {
+            return PackedTrace.condCode(info[cur]);
+        }
+
+        @Override
+        public MemoryOp mem() {
+            return PackedTrace.mem(info[cur]);
+        }
+
+        @Override
+        public long memAddress() {
+            return memAddress[cur];
+        }
+
+        @Override
+        public short memAccessBytes() {
+            return PackedTrace.memAccessBytes(info[cur]);
+        }
+
+        @Override
+        public String asm() {
+            return PackedTrace.this.asm(cur);
+        }
+
+        @Override
+        public Insn toInsn() {
+            return get(cur);
+        }
+
+    }
+
+}
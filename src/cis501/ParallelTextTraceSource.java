@@ -0,0 +1,219 @@
+package cis501;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a multi-member gzip text trace written by MultiMemberTraceWriter, inflating and parsing
+ * its members in parallel on a ForkJoinPool. Up to a fixed window of members is decoded ahead of
+ * the consumer, and members are handed back strictly in trace order, so this reads exactly the
+ * same insns as TextTraceSource while keeping many cores busy.
+ *
+ * <p>Usage: {@code new InsnIterator(new ParallelTextTraceSource(filename), limit)}.
+ */
+public class ParallelTextTraceSource extends TraceSource {
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ForkJoinPool pool;
+    /** True if pool was created by, and should be shut down by, this object */
+    private final boolean ownsPool;
+    private final int window;
+
+    /** File offset of each member, plus the end of the last member */
+    private final long[] memberOffsets;
+    private int nextMember = 0;
+    /** Members being decoded, in trace order */
+    private final ArrayDeque<ForkJoinTask<Insn[]>> inflight = new ArrayDeque<>();
+
+    private Insn[] batch = null;
+    private int batchPos = 0;
+
+    /** Decode using a new pool with one thread per available processor. */
+    public ParallelTextTraceSource(String filename) throws IOException {
+        this(filename, null, 0);
+    }
+
+    /**
+     * @param filename the path to a trace file written by MultiMemberTraceWriter
+     * @param pool     the pool to decode members on. If null, a new pool is created for this source
+     *                 and shut down when it is closed.
+     * @param window   the maximum number of members decoded ahead of the consumer. If 0, use twice
+     *                 the pool's parallelism.
+     */
+    public ParallelTextTraceSource(String filename, ForkJoinPool pool, int window) throws IOException {
+        this.ownsPool = null == pool;
+        this.pool = ownsPool ? new ForkJoinPool() : pool;
+        this.window = 0 == window ? 2 * this.pool.getParallelism() : window;
+        assert this.window > 0;
+        file = new RandomAccessFile(filename, "r");
+        channel = file.getChannel();
+        try {
+            memberOffsets = scanMembers(filename);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /** Walk the member headers to find where each member starts, without inflating anything. */
+    private long[] scanMembers(String filename) throws IOException {
+        final long size = channel.size();
+        long[] offsets = new long[16];
+        int count = 0;
+        long off = 0;
+        final ByteBuffer hdr = ByteBuffer.allocate(MultiMemberTraceWriter.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (off < size) {
+            hdr.clear();
+            readFully(hdr, off);
+            if ((hdr.get(0) & 0xFF) != 0x1f || (hdr.get(1) & 0xFF) != 0x8b
+                    || 0 == (hdr.get(3) & MultiMemberTraceWriter.FLG_FEXTRA)
+                    || hdr.getShort(10) != MultiMemberTraceWriter.XLEN
+                    || hdr.get(12) != MultiMemberTraceWriter.SUBFIELD_ID1
+                    || hdr.get(13) != MultiMemberTraceWriter.SUBFIELD_ID2) {
+                throw new IOException("Not a multi-member trace file (see MultiMemberTraceWriter): " + filename);
+            }
+            final int memberBytes = hdr.getInt(16);
+            if (memberBytes < MultiMemberTraceWriter.HEADER_BYTES + MultiMemberTraceWriter.TRAILER_BYTES
+                    || off + memberBytes > size) {
+                throw new IOException("Corrupt member at offset " + off + ": " + filename);
+            }
+            if (offsets.length == count) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = off;
+            off += memberBytes;
+        }
+        offsets = Arrays.copyOf(offsets, count + 1);
+        offsets[count] = off;
+        return offsets;
+    }
+
+    private void readFully(ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            final int n = channel.read(dst, position);
+            if (n < 0) {
+                throw new IOException("Truncated trace file");
+            }
+            position += n;
+        }
+    }
+
+    /** @return the number of gzip members in the trace */
+    public int getMembers() {
+        return memberOffsets.length - 1;
+    }
+
+    /** Start decoding members until the window is full. */
+    private void fillWindow() {
+        while (inflight.size() < window && nextMember < getMembers()) {
+            DecodeTask t = new DecodeTask(memberOffsets[nextMember], memberOffsets[nextMember + 1]);
+            nextMember++;
+            pool.execute(t);
+            inflight.addLast(t);
+        }
+    }
+
+    @Override
+    public Insn read() throws IOException {
+        while (null == batch || batchPos == batch.length) {
+            fillWindow();
+            ForkJoinTask<Insn[]> t = inflight.pollFirst();
+            if (null == t) return null;
+            batch = t.join();
+            batchPos = 0;
+        }
+        Insn i = batch[batchPos];
+        batch[batchPos] = null; // let the insn be collected once the consumer is done with it
+        batchPos++;
+        return i;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (ForkJoinTask<Insn[]> t : inflight) {
+            t.cancel(false);
+        }
+        inflight.clear();
+        if (ownsPool) {
+            pool.shutdownNow();
+        }
+        file.close();
+    }
+
+    /** Inflates and parses a single member. */
+    private class DecodeTask extends RecursiveTask<Insn[]> {
+
+        private final long start;
+        private final long end;
+
+        DecodeTask(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Insn[] compute() {
+            final byte[] member = new byte[(int) (end - start)];
+            final Inflater inflater = new Inflater(true);
+            try {
+                readFully(ByteBuffer.wrap(member), start);
+                final ByteBuffer trailer = ByteBuffer.wrap(member, member.length - MultiMemberTraceWriter.TRAILER_BYTES,
+                        MultiMemberTraceWriter.TRAILER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                final int expectedCrc = trailer.getInt();
+                final byte[] raw = new byte[trailer.getInt()];
+
+                inflater.setInput(member, MultiMemberTraceWriter.HEADER_BYTES,
+                        member.length - MultiMemberTraceWriter.HEADER_BYTES - MultiMemberTraceWriter.TRAILER_BYTES);
+                int n = 0;
+                while (n < raw.length && !inflater.finished()) {
+                    final int k = inflater.inflate(raw, n, raw.length - n);
+                    if (0 == k && inflater.needsInput()) break;
+                    n += k;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(raw, 0, n);
+                if (n != raw.length || (int) crc.getValue() != expectedCrc) {
+                    throw new IOException("Corrupt member at offset " + start);
+                }
+                return parseLines(raw);
+            } catch (IOException | DataFormatException e) {
+                throw new IllegalStateException("Could not decode member at offset " + start, e);
+            } finally {
+                inflater.end();
+            }
+        }
+
+        private Insn[] parseLines(byte[] raw) {
+            final TraceLineParser parser = new TraceLineParser();
+            final List<Insn> insns = new ArrayList<>();
+            int lineStart = 0;
+            for (int j = 0; j < raw.length; j++) {
+                if ('\n' == raw[j]) {
+                    parser.parse(raw, lineStart, j);
+                    insns.add(parser.toInsn());
+                    lineStart = j + 1;
+                }
+            }
+            if (lineStart < raw.length) {
+                parser.parse(raw, lineStart, raw.length);
+                insns.add(parser.toInsn());
+            }
+            return insns.toArray(new Insn[insns.size()]);
+        }
+    }
+
+}
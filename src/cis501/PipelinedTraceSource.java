@@ -0,0 +1,168 @@
+package cis501;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decompresses and parses a trace on a background thread, overlapping trace I/O with whatever
+ * model is consuming the insns. The producer thread reads insns from the wrapped source into
+ * batches, and hands them to the consumer through a lock-free single-producer/single-consumer ring.
+ *
+ * <p>Usage: {@code new InsnIterator(new PipelinedTraceSource(TraceSource.open(filename)), limit)}.
+ * The time each side spends waiting on the other is available from getProducerStallNanos() and
+ * getConsumerStallNanos(): a large consumer stall means the model is faster than trace decoding,
+ * while a large producer stall means trace decoding is fully hidden behind the model.
+ */
+public class PipelinedTraceSource extends TraceSource {
+
+    public static final int DEFAULT_BATCH_INSNS = 4096;
+    public static final int DEFAULT_RING_BATCHES = 16;
+
+    /** How long a stalled thread sleeps before polling the ring again */
+    private static final long STALL_PARK_NANOS = 10000;
+
+    private final SpscRing<Insn[]> ring;
+    private final Thread producer;
+
+    // written by the producer thread
+    private volatile boolean done = false;
+    /** Whatever ended the producer thread early, rethrown to the consumer once it has read every batch */
+    private volatile Throwable error = null;
+    private volatile long producerStallNanos = 0;
+
+    // written by the consumer thread
+    private volatile boolean closed = false;
+    private long consumerStallNanos = 0;
+    private Insn[] batch = null;
+    private int batchPos = 0;
+
+    public PipelinedTraceSource(TraceSource src) {
+        this(src, DEFAULT_BATCH_INSNS, DEFAULT_RING_BATCHES);
+    }
+
+    /**
+     * @param src         the source to read from on the producer thread. This object takes
+     *                    ownership of src, and closes it when the producer finishes.
+     * @param batchInsns  the number of insns handed over at a time
+     * @param ringBatches the maximum number of batches buffered ahead of the consumer, which must
+     *                    be a power of 2
+     */
+    public PipelinedTraceSource(final TraceSource src, final int batchInsns, int ringBatches) {
+        assert batchInsns > 0;
+        ring = new SpscRing<>(ringBatches);
+        producer = new Thread("trace-producer") {
+            @Override
+            public void run() {
+                produce(src, batchInsns);
+            }
+        };
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    /** Body of the producer thread */
+    private void produce(TraceSource src, int batchInsns) {
+        long stall = 0;
+        try {
+            boolean eof = false;
+            while (!eof && !closed) {
+                Insn[] b = new Insn[batchInsns];
+                int n = 0;
+                while (n < batchInsns) {
+                    Insn i;
+                    try {
+                        i = src.read();
+                    } catch (Throwable t) {
+                        // hand over the insns read so far, then report t once the consumer reaches it
+                        error = t;
+                        i = null;
+                    }
+                    if (null == i) {
+                        eof = true;
+                        break;
+                    }
+                    b[n++] = i;
+                }
+                if (0 == n) break;
+                // a batch shorter than batchInsns is terminated by a null entry
+                if (!ring.offer(b)) {
+                    final long start = System.nanoTime();
+                    while (!closed && !ring.offer(b)) {
+                        LockSupport.parkNanos(STALL_PARK_NANOS);
+                    }
+                    stall += System.nanoTime() - start;
+                    producerStallNanos = stall;
+                }
+            }
+        } catch (Throwable t) {
+            error = t;
+        } finally {
+            done = true;
+            try {
+                src.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public Insn read() throws IOException {
+        if (null == batch || batchPos == batch.length || null == batch[batchPos]) {
+            batch = nextBatch();
+            batchPos = 0;
+            if (null == batch) return null;
+        }
+        return batch[batchPos++];
+    }
+
+    /** @return the next batch from the producer, or null at the end of the trace */
+    private Insn[] nextBatch() throws IOException {
+        Insn[] b = ring.poll();
+        if (null != b) return b;
+
+        final long start = System.nanoTime();
+        while (null == b) {
+            // check done before polling again: once done is seen, the final batch is visible
+            final boolean finished = done;
+            b = ring.poll();
+            if (null == b) {
+                if (finished) break;
+                LockSupport.parkNanos(STALL_PARK_NANOS);
+            }
+        }
+        consumerStallNanos += System.nanoTime() - start;
+        if (null == b && null != error) {
+            final Throwable t = error;
+            if (t instanceof IOException) throw (IOException) t;
+            if (t instanceof RuntimeException) throw (RuntimeException) t;
+            if (t instanceof Error) throw (Error) t;
+            throw new IOException(t);
+        }
+        return b;
+    }
+
+    /** @return the total time the producer spent waiting for the consumer to free a ring slot */
+    public long getProducerStallNanos() {
+        return producerStallNanos;
+    }
+
+    /** @return the total time the consumer spent waiting for the producer to fill a batch */
+    public long getConsumerStallNanos() {
+        return consumerStallNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("producer stalled %.1f ms, consumer stalled %.1f ms",
+                producerStallNanos / 1e6, consumerStallNanos / 1e6);
+    }
+
+    /** Stop the producer thread, which closes the wrapped source. */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(producer);
+    }
+
+}
@@ -0,0 +1,196 @@
+package cis501;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Evaluates many branch predictor configurations against a trace in a single pass over the trace.
+ * The trace is decoded once, into chunks of branches, and every chunk is fed to every predictor.
+ * The predictors are partitioned across a fixed number of workers, and each worker runs its own
+ * predictors over a chunk while the next chunk is being decoded. A predictor only ever sees the
+ * chunks in trace order, one at a time, so it need not be thread-safe.
+ */
+public class PredictorSweep {
+
+    /** Branches per chunk handed to the workers */
+    static final int CHUNK_BRANCHES = 1 << 16;
+
+    /** The outcome of running one predictor over a trace */
+    public static class Result {
+        public final String name;
+        public final long insns;
+        public final long branches;
+        public final long mispredictions;
+
+        Result(String name, long insns, long branches, long mispredictions) {
+            this.name = name;
+            this.insns = insns;
+            this.branches = branches;
+            this.mispredictions = mispredictions;
+        }
+
+        /** @return the fraction of branches whose next PC was predicted correctly */
+        public double accuracy() {
+            return 0 == branches ? 1.0 : 1.0 - (double) mispredictions / branches;
+        }
+
+        /** @return mispredictions per 1,000 insns */
+        public double mpki() {
+            return 0 == insns ? 0.0 : 1000.0 * mispredictions / insns;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d/%d mispredicted, %.4f accuracy, %.3f MPKI",
+                    name, mispredictions, branches, accuracy(), mpki());
+        }
+    }
+
+    private final int threads;
+    private final List<String> names = new ArrayList<>();
+    private final List<BranchPredictor> predictors = new ArrayList<>();
+
+    /** @param threads the number of workers among which predictors are partitioned */
+    public PredictorSweep(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least 1 thread, got " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /** Add a predictor to the sweep. Each predictor must be a distinct, freshly-created instance. */
+    public void add(String name, BranchPredictor bp) {
+        for (BranchPredictor p : predictors) {
+            if (p == bp || p.dp == bp.dp || p.btb == bp.btb) {
+                throw new IllegalArgumentException("Predictor state is shared with another predictor: " + name);
+            }
+        }
+        names.add(name);
+        predictors.add(bp);
+    }
+
+    /** @return the number of predictors in the sweep */
+    public int size() {
+        return predictors.size();
+    }
+
+    /**
+     * Run every predictor over the given trace file.
+     *
+     * @param filename  The path to the trace file
+     * @param insnLimit Stop after processing this many insns. If -1, process the entire trace.
+     * @return one result per predictor, in the order they were added
+     */
+    public List<Result> run(String filename, int insnLimit) throws IOException {
+        InsnCursor cursor = TraceSource.openCursor(filename, insnLimit);
+        try {
+            return run(cursor);
+        } finally {
+            ((Closeable) cursor).close();
+        }
+    }
+
+    /**
+     * Run every predictor over the remaining insns of the given cursor.
+     *
+     * @return one result per predictor, in the order they were added
+     */
+    public List<Result> run(InsnCursor c) {
+        final int workers = Math.max(1, Math.min(threads, predictors.size()));
+        final long[] mispredictions = new long[predictors.size()];
+        // chunks are double-buffered: one is decoded into while the workers read the other
+        BranchTrace decoding = new BranchTrace(CHUNK_BRANCHES);
+        BranchTrace predicting = new BranchTrace(CHUNK_BRANCHES);
+        long insns = 0;
+        long branches = 0;
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> pending = new ArrayList<>();
+            boolean more = true;
+            while (more) {
+                decoding.clear();
+                while (decoding.size() < CHUNK_BRANCHES && (more = c.advance())) {
+                    insns++;
+                    if (null != c.branchType()) {
+                        decoding.add(c.pc(), c.insnSizeBytes(), c.branchType(), c.branchDirection(), c.branchTarget());
+                    }
+                }
+                branches += decoding.size();
+
+                await(pending);
+                final BranchTrace chunk = decoding;
+                decoding = predicting;
+                predicting = chunk;
+                if (0 == chunk.size()) continue;
+                for (int w = 0; w < workers; w++) {
+                    pending.add(pool.submit(new Worker(w, workers, chunk, mispredictions)));
+                }
+            }
+            await(pending);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        List<Result> results = new ArrayList<>(predictors.size());
+        for (int p = 0; p < predictors.size(); p++) {
+            results.add(new Result(names.get(p), insns, branches, mispredictions[p]));
+        }
+        return results;
+    }
+
+    /** Wait for the workers to finish their current chunk. */
+    private static void await(List<Future<?>> pending) {
+        try {
+            for (Future<?> f : pending) {
+                f.get();
+            }
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for predictors", e);
+        } finally {
+            pending.clear();
+        }
+    }
+
+    /**
+     * Runs every predictor whose index is congruent to the worker's id (modulo the number of
+     * workers) over one chunk. Interleaving the predictors, rather than giving each worker a
+     * contiguous range, spreads big and small configurations evenly across the workers.
+     */
+    private class Worker implements Callable<Void> {
+
+        private final int id;
+        private final int workers;
+        private final BranchTrace chunk;
+        private final long[] mispredictions;
+
+        Worker(int id, int workers, BranchTrace chunk, long[] mispredictions) {
+            this.id = id;
+            this.workers = workers;
+            this.chunk = chunk;
+            this.mispredictions = mispredictions;
+        }
+
+        @Override
+        public Void call() {
+            for (int p = id; p < predictors.size(); p += workers) {
+                mispredictions[p] += predictors.get(p).mispredictions(chunk);
+            }
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,400 @@
+package cis501;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Chooses a few representative intervals of a trace to simulate in place of the whole trace, in
+ * the style of SimPoint (Sherwood et al., ASPLOS 2002). The trace is split into fixed-size
+ * intervals, each interval is summarized by its basic block vector (see WindowedAnalyzer), the
+ * vectors are randomly projected down to a few dimensions, and then clustered with k-means. The
+ * interval closest to the center of each cluster represents the whole cluster, weighted by the
+ * fraction of the trace's insns that fall in that cluster.
+ *
+ * <p>A whole-trace metric such as CPI can then be estimated by simulating only the representative
+ * intervals and taking the weighted average of their results; see estimateCPI(). Simulating each
+ * interval from a cold pipeline (no warm caches or predictors) introduces a small error, which
+ * shrinks as the interval size grows.
+ */
+public class SimPoint {
+
+    public static final long DEFAULT_INTERVAL_INSNS = WindowedAnalyzer.DEFAULT_WINDOW_INSNS;
+    public static final int DEFAULT_MAX_K = 10;
+    /** The number of dimensions BBVs are projected down to, as in SimPoint */
+    public static final int DEFAULT_PROJECTED_DIMENSIONS = 15;
+
+    /** Runs of k-means with different random initial centers, keeping the best */
+    private static final int KMEANS_RESTARTS = 5;
+    private static final int KMEANS_MAX_ITERATIONS = 100;
+    /** Pick the smallest k whose BIC reaches this fraction of the range of BIC scores seen */
+    private static final double BIC_THRESHOLD = 0.9;
+
+    /** A representative interval of the trace */
+    public static class Point {
+        /** The index of this interval, i.e., startInsn / interval size */
+        public final long interval;
+        public final long startInsn;
+        public final int insns;
+        /** The fraction of the trace's insns this interval represents */
+        public final double weight;
+
+        Point(long interval, long startInsn, int insns, double weight) {
+            this.interval = interval;
+            this.startInsn = startInsn;
+            this.insns = insns;
+            this.weight = weight;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("interval %d (insns %d-%d) weight %.4f", interval, startInsn, startInsn + insns, weight);
+        }
+    }
+
+    /** Simulates a single interval, e.g., by running a fresh pipeline over it */
+    public interface IntervalSimulator {
+        /** @return the CPI of the insns exposed by the given cursor */
+        double cpi(InsnCursor interval);
+    }
+
+    private final int maxK;
+    private final int projectedDims;
+    private final long seed;
+    /** The number of clusters chosen by the last call to choose() */
+    private int chosenK = 0;
+
+    public SimPoint() {
+        this(DEFAULT_MAX_K, DEFAULT_PROJECTED_DIMENSIONS, 501);
+    }
+
+    /**
+     * @param maxK          the maximum number of clusters, and so of representative intervals
+     * @param projectedDims the number of dimensions to project BBVs down to
+     * @param seed          seeds the random projection and k-means, so results are repeatable
+     */
+    public SimPoint(int maxK, int projectedDims, long seed) {
+        assert maxK > 0 && projectedDims > 0;
+        this.maxK = maxK;
+        this.projectedDims = projectedDims;
+        this.seed = seed;
+    }
+
+    /** @return the number of clusters chosen by the last call to choose() */
+    public int getChosenK() {
+        return chosenK;
+    }
+
+    /**
+     * Choose representative intervals of the given trace. Only the projected BBV of each interval
+     * is kept, so memory grows with the number of intervals rather than the number of insns.
+     *
+     * @param filename      The path to the trace file
+     * @param intervalInsns The number of insns per interval
+     * @param insnLimit     Stop after processing this many insns. If -1, process the entire trace.
+     * @return the representative intervals, in trace order
+     */
+    public List<Point> choose(String filename, long intervalInsns, int insnLimit) throws IOException {
+        InsnCursor cursor = TraceSource.openCursor(filename, insnLimit);
+        try {
+            return choose(cursor, intervalInsns);
+        } finally {
+            ((Closeable) cursor).close();
+        }
+    }
+
+    /** Choose representative intervals of the insns exposed by the given cursor. */
+    public List<Point> choose(InsnCursor cursor, long intervalInsns) {
+        final double[][] projection = randomProjection(BasicBlockVector.DEFAULT_DIMENSIONS);
+        final List<double[]> vectors = new ArrayList<>();
+        final List<Long> starts = new ArrayList<>();
+        final List<Long> lengths = new ArrayList<>();
+        WindowedAnalyzer wa = new WindowedAnalyzer(intervalInsns, new WindowedAnalyzer.WindowListener() {
+            @Override
+            public void window(WindowedAnalyzer.Window w) {
+                vectors.add(project(w.bbv, projection));
+                starts.add(w.startInsn);
+                lengths.add(w.insns());
+            }
+        });
+        wa.run(cursor);
+
+        final int n = vectors.size();
+        long[] insns = new long[n];
+        for (int j = 0; j < n; j++) {
+            insns[j] = lengths.get(j);
+        }
+        final double[] weights = cluster(vectors.toArray(new double[n][]), insns);
+
+        List<Point> points = new ArrayList<>();
+        for (int j = 0; j < n; j++) {
+            if (weights[j] > 0) {
+                points.add(new Point(j, starts.get(j), (int) insns[j], weights[j]));
+            }
+        }
+        return points;
+    }
+
+    /** @return a dims x projectedDims matrix of values drawn uniformly from [-1,1] */
+    private double[][] randomProjection(int dims) {
+        Random r = new Random(seed);
+        double[][] m = new double[dims][projectedDims];
+        for (double[] row : m) {
+            for (int j = 0; j < projectedDims; j++) {
+                row[j] = 2 * r.nextDouble() - 1;
+            }
+        }
+        return m;
+    }
+
+    private double[] project(BasicBlockVector bbv, double[][] projection) {
+        final double[] v = bbv.normalized();
+        final double[] p = new double[projectedDims];
+        for (int d = 0; d < v.length; d++) {
+            if (0 == v[d]) continue; // BBVs are sparse
+            for (int j = 0; j < projectedDims; j++) {
+                p[j] += v[d] * projection[d][j];
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Cluster the given vectors, choosing the number of clusters by the Bayesian Information
+     * Criterion, and pick the vector closest to each cluster's center as its representative.
+     *
+     * @param vectors the vectors to cluster
+     * @param insns   the number of insns in the interval each vector summarizes
+     * @return the weight of each vector: the fraction of all insns its cluster holds if it is a
+     * representative, and 0 otherwise
+     */
+    double[] cluster(double[][] vectors, long[] insns) {
+        final int n = vectors.length;
+        final double[] weights = new double[n];
+        if (0 == n) {
+            chosenK = 0;
+            return weights;
+        }
+
+        final int kLimit = Math.min(maxK, n);
+        int[][] assignments = new int[kLimit + 1][];
+        double[] bic = new double[kLimit + 1];
+        double minBic = Double.POSITIVE_INFINITY, maxBic = Double.NEGATIVE_INFINITY;
+        Random r = new Random(seed);
+        for (int k = 1; k <= kLimit; k++) {
+            double bestSse = Double.POSITIVE_INFINITY;
+            for (int restart = 0; restart < KMEANS_RESTARTS; restart++) {
+                int[] assign = new int[n];
+                final double sse = kmeans(vectors, k, assign, r);
+                if (sse < bestSse) {
+                    bestSse = sse;
+                    assignments[k] = assign;
+                }
+            }
+            bic[k] = bic(vectors, k, assignments[k], bestSse);
+            minBic = Math.min(minBic, bic[k]);
+            maxBic = Math.max(maxBic, bic[k]);
+        }
+        int k = 1;
+        while (k < kLimit && bic[k] < minBic + BIC_THRESHOLD * (maxBic - minBic)) {
+            k++;
+        }
+        chosenK = k;
+
+        final int[] assign = assignments[k];
+        final double[][] centers = centers(vectors, k, assign);
+        long total = 0;
+        final long[] clusterInsns = new long[k];
+        for (int j = 0; j < n; j++) {
+            clusterInsns[assign[j]] += insns[j];
+            total += insns[j];
+        }
+        final int[] rep = new int[k];
+        final double[] repDist = new double[k];
+        Arrays.fill(rep, -1);
+        for (int j = 0; j < n; j++) {
+            final int c = assign[j];
+            final double d = distance2(vectors[j], centers[c]);
+            if (-1 == rep[c] || d < repDist[c]) {
+                rep[c] = j;
+                repDist[c] = d;
+            }
+        }
+        for (int c = 0; c < k; c++) {
+            if (-1 != rep[c]) {
+                weights[rep[c]] = (double) clusterInsns[c] / total;
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Run k-means from k randomly chosen initial centers (k-means++ seeding).
+     *
+     * @return the sum of squared distances from each vector to its cluster's center
+     */
+    private static double kmeans(double[][] vectors, int k, int[] assign, Random r) {
+        final int n = vectors.length;
+        double[][] centers = new double[k][];
+        centers[0] = vectors[r.nextInt(n)].clone();
+        final double[] nearest = new double[n];
+        for (int c = 1; c < k; c++) {
+            double sum = 0;
+            for (int j = 0; j < n; j++) {
+                nearest[j] = Double.POSITIVE_INFINITY;
+                for (int c2 = 0; c2 < c; c2++) {
+                    nearest[j] = Math.min(nearest[j], distance2(vectors[j], centers[c2]));
+                }
+                sum += nearest[j];
+            }
+            int pick = r.nextInt(n);
+            if (sum > 0) {
+                double target = r.nextDouble() * sum;
+                for (pick = 0; pick < n - 1; pick++) {
+                    target -= nearest[pick];
+                    if (target <= 0) break;
+                }
+            }
+            centers[c] = vectors[pick].clone();
+        }
+
+        Arrays.fill(assign, -1);
+        for (int it = 0; it < KMEANS_MAX_ITERATIONS; it++) {
+            boolean changed = false;
+            for (int j = 0; j < n; j++) {
+                int best = 0;
+                double bestDist = distance2(vectors[j], centers[0]);
+                for (int c = 1; c < k; c++) {
+                    final double d = distance2(vectors[j], centers[c]);
+                    if (d < bestDist) {
+                        best = c;
+                        bestDist = d;
+                    }
+                }
+                if (assign[j] != best) {
+                    assign[j] = best;
+                    changed = true;
+                }
+            }
+            if (!changed) break;
+            double[][] updated = centers(vectors, k, assign);
+            for (int c = 0; c < k; c++) {
+                if (null != updated[c]) {
+                    centers[c] = updated[c];
+                }
+            }
+        }
+
+        double sse = 0;
+        for (int j = 0; j < n; j++) {
+            sse += distance2(vectors[j], centers[assign[j]]);
+        }
+        return sse;
+    }
+
+    /** @return the mean of each cluster's vectors, or null for an empty cluster */
+    private static double[][] centers(double[][] vectors, int k, int[] assign) {
+        final int dims = vectors[0].length;
+        double[][] centers = new double[k][];
+        int[] sizes = new int[k];
+        for (int j = 0; j < vectors.length; j++) {
+            final int c = assign[j];
+            if (null == centers[c]) {
+                centers[c] = new double[dims];
+            }
+            for (int d = 0; d < dims; d++) {
+                centers[c][d] += vectors[j][d];
+            }
+            sizes[c]++;
+        }
+        for (int c = 0; c < k; c++) {
+            if (null == centers[c]) continue;
+            for (int d = 0; d < dims; d++) {
+                centers[c][d] /= sizes[c];
+            }
+        }
+        return centers;
+    }
+
+    /**
+     * @return the BIC score of a clustering, modeling each cluster as a spherical Gaussian with a
+     * shared variance (Pelleg and Moore, ICML 2000). Higher is better.
+     */
+    private static double bic(double[][] vectors, int k, int[] assign, double sse) {
+        final int n = vectors.length;
+        final int dims = vectors[0].length;
+        // guard against a perfect fit, whose variance (and so log-likelihood) is degenerate
+        final double variance = Math.max(n > k ? sse / (n - k) : 0, 1e-12);
+        int[] sizes = new int[k];
+        for (int a : assign) {
+            sizes[a]++;
+        }
+        double logLikelihood = 0;
+        for (int c = 0; c < k; c++) {
+            final int rn = sizes[c];
+            if (0 == rn) continue;
+            logLikelihood += -rn / 2.0 * Math.log(2 * Math.PI)
+                    - rn * dims / 2.0 * Math.log(variance)
+                    - (rn - k) / 2.0
+                    + rn * Math.log(rn)
+                    - rn * Math.log(n);
+        }
+        final double params = (k - 1) + dims * k + 1;
+        return logLikelihood - params / 2.0 * Math.log(n);
+    }
+
+    private static double distance2(double[] x, double[] y) {
+        double sum = 0;
+        for (int d = 0; d < x.length; d++) {
+            final double diff = x[d] - y[d];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    /**
+     * Estimate the CPI of the whole trace from its representative intervals.
+     *
+     * @param filename The path to the trace file
+     * @param points   the representative intervals returned by choose()
+     * @param sim      simulates each interval, typically by running a fresh pipeline over it
+     * @return the weighted average of the intervals' CPIs
+     */
+    public static double estimateCPI(String filename, List<Point> points, IntervalSimulator sim) throws IOException {
+        double cpi = 0;
+        double weights = 0;
+        for (Point p : points) {
+            InsnCursor cursor = TraceSource.openCursor(filename, p.startInsn, p.insns);
+            try {
+                cpi += p.weight * sim.cpi(cursor);
+            } finally {
+                ((Closeable) cursor).close();
+            }
+            weights += p.weight;
+        }
+        return 0 == weights ? 0.0 : cpi / weights;
+    }
+
+    /** Print the representative intervals of the given trace. */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 4) {
+            System.err.println("Usage: path/to/trace-file [interval-insns] [max-k] [insn-limit]");
+            return;
+        }
+        final long intervalInsns = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_INTERVAL_INSNS;
+        final int maxK = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_K;
+        final int insnLimit = args.length > 3 ? Integer.parseInt(args[3]) : -1;
+
+        SimPoint sp = new SimPoint(maxK, DEFAULT_PROJECTED_DIMENSIONS, 501);
+        List<Point> points = sp.choose(args[0], intervalInsns, insnLimit);
+        System.out.format("# %d clusters%n", sp.getChosenK());
+        System.out.println("interval,startInsn,insns,weight");
+        for (Point p : points) {
+            System.out.format("%d,%d,%d,%.6f%n", p.interval, p.startInsn, p.insns, p.weight);
+        }
+    }
+
+}
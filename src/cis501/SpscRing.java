@@ -0,0 +1,60 @@
+package cis501;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, lock-free ring buffer for passing objects from exactly one producer thread to exactly
+ * one consumer thread. Each side only ever writes its own index, and publishes it with an ordered
+ * store, so neither side ever takes a lock.
+ */
+public class SpscRing<T> {
+
+    private final Object[] slots;
+    private final int mask;
+    /** Index of the next slot to read; only written by the consumer */
+    private final AtomicLong head = new AtomicLong(0);
+    /** Index of the next slot to write; only written by the producer */
+    private final AtomicLong tail = new AtomicLong(0);
+
+    /** @param capacity the number of slots in the ring, which must be a power of 2 */
+    public SpscRing(int capacity) {
+        assert capacity > 0 && 0 == (capacity & (capacity - 1)) : "capacity must be a power of 2";
+        slots = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Called only by the producer.
+     *
+     * @return true if x was added, false if the ring was full
+     */
+    public boolean offer(T x) {
+        final long t = tail.get();
+        if (t - head.get() == slots.length) return false;
+        slots[(int) t & mask] = x;
+        tail.lazySet(t + 1); // publish the slot after writing it
+        return true;
+    }
+
+    /**
+     * Called only by the consumer.
+     *
+     * @return the oldest item in the ring, or null if the ring is empty
+     */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        final long h = head.get();
+        if (h == tail.get()) return null;
+        final int s = (int) h & mask;
+        T x = (T) slots[s];
+        slots[s] = null;
+        head.lazySet(h + 1); // free the slot after reading it
+        return x;
+    }
+
+    /** @return true if the ring held no items at the time of the call */
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+}
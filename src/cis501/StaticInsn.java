@@ -0,0 +1,73 @@
+package cis501;
+
+/**
+ * The fields of an insn that are fixed by the program's code, i.e., that are the same every time
+ * the insn at a given PC executes: its size, registers, branch and memory operation types, and asm
+ * text. A trace executes only a few thousand distinct static insns, so readers share one
+ * StaticInsn (and one asm String) among all dynamic executions of the same PC, instead of decoding
+ * and storing these fields again for every dynamic insn.
+ */
+public class StaticInsn {
+
+    public final long pc;
+    public final short insnSizeBytes;
+    public final BranchType branchType;
+    public final MemoryOp mem;
+    public final short memAccessBytes;
+    public final CondCodes condCode;
+    public final short dstReg;
+    public final short srcReg1;
+    public final short srcReg2;
+    public final String asm;
+
+    /**
+     * The bytes of the size, branch type, memory op and memory access size fields (each with its
+     * terminating tab) of the trace line this was parsed from, or null if this wasn't recorded by
+     * a TraceLineParser with its decode cache enabled
+     */
+    byte[] traceFixed;
+
+    /**
+     * The bytes of the trace line this was parsed from, from the cond code field to the end of the
+     * asm text, or null if this wasn't recorded by a TraceLineParser with its decode cache enabled
+     */
+    byte[] traceTail;
+
+    public StaticInsn(long pc, int isize, BranchType btype, MemoryOp mop, int msize, CondCodes cc,
+                      int dr, int sr1, int sr2, String asm) {
+        this.pc = pc;
+        this.insnSizeBytes = (short) isize;
+        this.branchType = btype;
+        this.mem = mop;
+        this.memAccessBytes = (short) msize;
+        this.condCode = cc;
+        this.dstReg = (short) dr;
+        this.srcReg1 = (short) sr1;
+        this.srcReg2 = (short) sr2;
+        this.asm = asm;
+    }
+
+    /**
+     * @return true if the line most recently parsed by p has exactly these static fields. A PC can
+     * map to different static insns, e.g., if code is overwritten, so this must be checked before
+     * a StaticInsn is shared.
+     */
+    boolean matches(TraceLineParser p) {
+        return pc == p.pc
+                && insnSizeBytes == p.insnSizeBytes
+                && branchType == p.branchType
+                && mem == p.mem
+                && memAccessBytes == p.memAccessBytes
+                && condCode == p.condCode
+                && dstReg == p.dstReg
+                && srcReg1 == p.srcReg1
+                && srcReg2 == p.srcReg2
+                && p.asmEquals(asm);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%x: %s", pc, asm);
+    }
+
+}
@@ -0,0 +1,60 @@
+package cis501;
+
+/**
+ * Maps PCs to the StaticInsn most recently seen at each PC. This is an open-addressing hash table
+ * keyed directly by the primitive PC, so lookups on the per-insn path neither box the key nor
+ * allocate.
+ */
+class StaticInsnTable {
+
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    private StaticInsn[] table = new StaticInsn[INITIAL_CAPACITY];
+    private int size = 0;
+
+    private static int hash(long pc, int mask) {
+        return (int) ((pc * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    /** @return the static insn recorded for the given PC, or null if there is none */
+    StaticInsn get(long pc) {
+        final int mask = table.length - 1;
+        for (int j = hash(pc, mask); ; j = (j + 1) & mask) {
+            final StaticInsn s = table[j];
+            if (null == s || pc == s.pc) return s;
+        }
+    }
+
+    /** Record s as the static insn at its PC, replacing any previous one. */
+    void put(StaticInsn s) {
+        final int mask = table.length - 1;
+        int j = hash(s.pc, mask);
+        while (null != table[j] && s.pc != table[j].pc) {
+            j = (j + 1) & mask;
+        }
+        if (null == table[j]) {
+            size++;
+        }
+        table[j] = s;
+        if (2 * size > table.length) {
+            grow();
+        }
+    }
+
+    private void grow() {
+        final StaticInsn[] old = table;
+        table = new StaticInsn[old.length * 2];
+        size = 0;
+        for (StaticInsn s : old) {
+            if (null != s) {
+                put(s);
+            }
+        }
+    }
+
+    /** @return the number of distinct PCs recorded */
+    int size() {
+        return size;
+    }
+
+}
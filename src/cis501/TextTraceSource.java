@@ -0,0 +1,186 @@
+package cis501;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads insns from a gzip-compressed text trace, one insn per line. Lines are parsed straight out
+ * of the decompressed bytes with a TraceLineParser, so insns can also be read without any
+ * allocation through the InsnCursor interface.
+ */
+public class TextTraceSource extends TraceSource implements InsnCursor {
+
+    private static final int DEFAULT_BUFFER_BYTES = 1 << 16;
+
+    private final InputStream in;
+    private final TraceLineParser parser = new TraceLineParser();
+    private byte[] buf;
+    /** Start of the unparsed bytes in buf */
+    private int pos = 0;
+    /** End of the valid bytes in buf */
+    private int lim = 0;
+    private boolean eof = false;
+    private long remaining = Long.MAX_VALUE;
+
+    /** @param filename The path to the compressed trace file */
+    public TextTraceSource(String filename) throws IOException {
+        this(filename, DEFAULT_BUFFER_BYTES);
+    }
+
+    TextTraceSource(String filename, int bufferBytes) throws IOException {
+        in = new GZIPInputStream(new FileInputStream(filename), DEFAULT_BUFFER_BYTES);
+        buf = new byte[bufferBytes];
+    }
+
+    /** Stop reading after the next n insns. */
+    public void setLimit(long n) {
+        remaining = n;
+    }
+
+    @Override
+    public Insn read() throws IOException {
+        return advance() ? parser.toInsn() : null;
+    }
+
+    /** Skip over the next n insns, parsing their lines but without creating an Insn for each */
+    @Override
+    public void skip(long n) throws IOException {
+        for (long i = 0; i < n && nextLine(); i++) {
+        }
+    }
+
+    @Override
+    public boolean advance() {
+        try {
+            return nextLine();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /** Parse the next line. @return false at the end of the trace or limit */
+    private boolean nextLine() throws IOException {
+        if (remaining <= 0) return false;
+        int nl = findNewline(pos);
+        while (nl < 0 && !eof) {
+            final int scanned = lim - pos;
+            refill();
+            nl = findNewline(pos + scanned);
+        }
+        if (nl < 0) {
+            // last line of the trace may lack a trailing newline
+            if (pos == lim) return false;
+            nl = lim;
+        }
+        parser.parse(buf, pos, nl);
+        pos = Math.min(nl + 1, lim);
+        remaining--;
+        return true;
+    }
+
+    private int findNewline(int from) {
+        for (int j = from; j < lim; j++) {
+            if ('\n' == buf[j]) return j;
+        }
+        return -1;
+    }
+
+    /** Move the unparsed bytes to the front of buf, growing it if needed, and read more input. */
+    private void refill() throws IOException {
+        final int unparsed = lim - pos;
+        if (unparsed == buf.length) {
+            byte[] bigger = new byte[buf.length * 2];
+            System.arraycopy(buf, pos, bigger, 0, unparsed);
+            buf = bigger;
+        } else {
+            System.arraycopy(buf, pos, buf, 0, unparsed);
+        }
+        pos = 0;
+        lim = unparsed;
+        final int n = in.read(buf, lim, buf.length - lim);
+        if (n < 0) {
+            eof = true;
+        } else {
+            lim += n;
+        }
+    }
+
+    @Override
+    public long pc() {
+        return parser.pc;
+    }
+
+    @Override
+    public short insnSizeBytes() {
+        return parser.insnSizeBytes;
+    }
+
+    @Override
+    public short dstReg() {
+        return parser.dstReg;
+    }
+
+    @Override
+    public short srcReg1() {
+        return parser.srcReg1;
+    }
+
+    @Override
+    public short srcReg2() {
+        return parser.srcReg2;
+    }
+
+    @Override
+    public BranchType branchType() {
+        return parser.branchType;
+    }
+
+    @Override
+    public Direction branchDirection() {
+        return parser.branchDirection;
+    }
+
+    @Override
+    public long branchTarget() {
+        return parser.branchTarget;
+    }
+
+    @Override
+    public CondCodes condCode() {
+        return parser.condCode;
+    }
+
+    @Override
+    public MemoryOp mem() {
+        return parser.mem;
+    }
+
+    @Override
+    public long memAddress() {
+        return parser.memAddress;
+    }
+
+    @Override
+    public short memAccessBytes() {
+        return parser.memAccessBytes;
+    }
+
+    @Override
+    public String asm() {
+        return parser.asm();
+    }
+
+    @Override
+    public Insn toInsn() {
+        return parser.toInsn();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+}
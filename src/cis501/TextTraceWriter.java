@@ -0,0 +1,56 @@
+package cis501;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a gzip-compressed text trace, in the same format as the traces produced by the external
+ * tracer. Lines are formatted straight into a byte buffer by TraceLineFormatter, which is handed to
+ * the compressor whenever it fills up.
+ */
+public class TextTraceWriter extends TraceWriter {
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final OutputStream out;
+    private byte[] buf = new byte[BUFFER_BYTES];
+    private int fill = 0;
+    private long insnCount = 0;
+
+    public TextTraceWriter(String filename) throws IOException {
+        out = new GZIPOutputStream(new FileOutputStream(filename), BUFFER_BYTES);
+    }
+
+    @Override
+    protected void append(Insn i) throws IOException {
+        final int n = TraceLineFormatter.maxLineBytes(i);
+        if (fill + n > buf.length) {
+            flushBuffer();
+            if (n > buf.length) {
+                buf = new byte[n];
+            }
+        }
+        fill = TraceLineFormatter.format(i, buf, fill);
+        insnCount++;
+    }
+
+    private void flushBuffer() throws IOException {
+        out.write(buf, 0, fill);
+        fill = 0;
+    }
+
+    @Override
+    public long getInsns() {
+        return insnCount;
+    }
+
+    /** Write out any buffered lines and close the file. */
+    @Override
+    public void close() throws IOException {
+        flushBuffer();
+        out.close();
+    }
+
+}
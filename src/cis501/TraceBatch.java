@@ -0,0 +1,218 @@
+package cis501;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Characterizes many traces in a single JVM. Traces are analyzed concurrently on a fixed number of
+ * worker threads. Each worker has at most one trace open, so the thread count also bounds how many
+ * decompressors (and their buffers) are live at once. Results are printed as one CSV or JSON row
+ * per trace, in the order the traces were listed. A trace that cannot be analyzed gets a row with
+ * an error message rather than aborting the batch.
+ */
+public class TraceBatch {
+
+    public enum Format {CSV, JSON}
+
+    /** Creates a fresh analyzer for each trace */
+    public interface AnalyzerFactory {
+        ITraceAnalyzer create();
+    }
+
+    private static final int MAX_OFFSET_BITS = 32;
+
+    private final int threads;
+    private final int insnLimit;
+    private final AnalyzerFactory factory;
+
+    /**
+     * @param threads   the maximum number of traces analyzed at once
+     * @param insnLimit Stop after processing this many insns of each trace. If -1, process entire
+     *                  traces.
+     */
+    public TraceBatch(int threads, int insnLimit, AnalyzerFactory factory) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least 1 thread, got " + threads);
+        }
+        this.threads = threads;
+        this.insnLimit = insnLimit;
+        this.factory = factory;
+    }
+
+    /**
+     * List the traces named by the given path. If path is a directory, return every file in it
+     * (except sidecars, see TraceSource.isSidecar()), sorted by name. Otherwise, path is a manifest with one
+     * trace path per line; blank lines and lines starting with # are ignored, and relative paths
+     * are relative to the manifest's directory.
+     */
+    public static List<String> listTraces(String path) throws IOException {
+        final File f = new File(path);
+        final List<String> traces = new ArrayList<>();
+        if (f.isDirectory()) {
+            File[] files = f.listFiles();
+            if (null == files) {
+                throw new IOException("Could not list directory " + path);
+            }
+            Arrays.sort(files);
+            for (File t : files) {
+                final String name = t.getName();
+                if (t.isFile() && !name.startsWith(".") && !TraceSource.isSidecar(name)) {
+                    traces.add(t.getPath());
+                }
+            }
+            return traces;
+        }
+
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(f), "UTF-8"))) {
+            String line;
+            while (null != (line = r.readLine())) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                File t = new File(line);
+                traces.add(t.isAbsolute() ? line : new File(f.getAbsoluteFile().getParentFile(), line).getPath());
+            }
+        }
+        return traces;
+    }
+
+    /** Analyze the given traces, printing a header (for CSV) and then one row per trace to out. */
+    public void run(List<String> traces, Format format, PrintStream out) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<TraceStats>> results = new ArrayList<>(traces.size());
+            for (final String trace : traces) {
+                results.add(pool.submit(new Callable<TraceStats>() {
+                    @Override
+                    public TraceStats call() throws IOException {
+                        return TraceStats.cached(trace, insnLimit, factory.create());
+                    }
+                }));
+            }
+
+            if (Format.CSV == format) {
+                out.println(csvHeader());
+            }
+            for (int j = 0; j < traces.size(); j++) {
+                TraceStats stats = null;
+                String error = null;
+                try {
+                    stats = results.get(j).get();
+                } catch (ExecutionException e) {
+                    error = String.valueOf(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    error = "interrupted";
+                }
+                out.println(Format.CSV == format
+                        ? csvRow(traces.get(j), stats, error)
+                        : jsonRow(traces.get(j), stats, error));
+                out.flush();
+                results.set(j, null); // let finished results be collected
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    static String csvHeader() {
+        StringBuilder sb = new StringBuilder("trace,avgInsnSize,insnBandwidthIncreaseWithoutThumb,mostCommonInsnCategory");
+        for (int b = 1; b <= MAX_OFFSET_BITS; b++) {
+            sb.append(",directBranchOffsetsLte").append(b).append("Bits");
+        }
+        return sb.append(",error").toString();
+    }
+
+    static String csvRow(String trace, TraceStats stats, String error) {
+        StringBuilder sb = new StringBuilder(csvField(trace));
+        if (null == stats) {
+            for (int c = 0; c < 3 + MAX_OFFSET_BITS; c++) {
+                sb.append(',');
+            }
+        } else {
+            sb.append(',').append(stats.avgInsnSize);
+            sb.append(',').append(stats.insnBandwidthIncreaseWithoutThumb);
+            sb.append(',').append(null == stats.mostCommonInsnCategory ? "" : csvField(stats.mostCommonInsnCategory));
+            for (int b = 1; b <= MAX_OFFSET_BITS; b++) {
+                sb.append(',').append(stats.fractionOfDirectBranchOffsetsLteNBits(b));
+            }
+        }
+        return sb.append(',').append(null == error ? "" : csvField(error)).toString();
+    }
+
+    /** Quote the given field if it contains a delimiter, quote or line break. */
+    private static String csvField(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+            return s;
+        }
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    static String jsonRow(String trace, TraceStats stats, String error) {
+        StringBuilder sb = new StringBuilder("{\"trace\":").append(jsonString(trace));
+        if (null != stats) {
+            sb.append(",\"avgInsnSize\":").append(jsonNumber(stats.avgInsnSize));
+            sb.append(",\"insnBandwidthIncreaseWithoutThumb\":").append(jsonNumber(stats.insnBandwidthIncreaseWithoutThumb));
+            sb.append(",\"mostCommonInsnCategory\":").append(jsonString(stats.mostCommonInsnCategory));
+            sb.append(",\"directBranchOffsetsLteNBits\":[");
+            for (int b = 1; b <= MAX_OFFSET_BITS; b++) {
+                if (b > 1) sb.append(',');
+                sb.append(jsonNumber(stats.fractionOfDirectBranchOffsetsLteNBits(b)));
+            }
+            sb.append(']');
+        }
+        if (null != error) {
+            sb.append(",\"error\":").append(jsonString(error));
+        }
+        return sb.append('}').toString();
+    }
+
+    private static String jsonNumber(double d) {
+        // JSON has no NaN or infinity
+        return Double.isNaN(d) || Double.isInfinite(d) ? "null" : Double.toString(d);
+    }
+
+    private static String jsonString(String s) {
+        if (null == s) return "null";
+        StringBuilder sb = new StringBuilder("\"");
+        for (int j = 0; j < s.length(); j++) {
+            final char c = s.charAt(j);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+}
@@ -0,0 +1,95 @@
+package cis501;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Converts a compressed text trace into the binary trace format (see BinaryTrace), which
+ * InsnIterator reads without any text parsing. This only needs to be done once per trace. With
+ * -chunked, blocks are compressed independently and indexed (see ChunkedTraceSource), which keeps
+ * the file small while still allowing reads to start anywhere in the trace. With -members, the
+ * output is instead a text trace split into gzip members that ParallelTextTraceSource can decode
+ * in parallel (see MultiMemberTraceWriter), and with -text it is an ordinary compressed text trace.
+ *
+ * <p>The output can also be shrunk to just the insns a study needs: -branches keeps only branches,
+ * -mem keeps only loads and stores, and -pcs lo:hi keeps only insns with PCs (in hex) in [lo, hi).
+ * When several filters are given, an insn must pass all of them.
+ */
+public class TraceConverter {
+
+    private static final String USAGE = "Usage: [-chunked|-members|-text] [-branches] [-mem] [-pcs lo:hi] "
+            + "path/to/trace-file.gz path/to/output [insn-limit]";
+
+    public static void main(String[] args) throws IOException {
+        TraceWriter.Format format = TraceWriter.Format.BINARY;
+        List<InsnFilter> filters = new ArrayList<>();
+        int a = 0;
+        for (; a < args.length && args[a].startsWith("-"); a++) {
+            switch (args[a]) {
+                case "-chunked":
+                    format = TraceWriter.Format.CHUNKED;
+                    break;
+                case "-members":
+                    format = TraceWriter.Format.MEMBERS;
+                    break;
+                case "-text":
+                    format = TraceWriter.Format.TEXT;
+                    break;
+                case "-branches":
+                    filters.add(InsnFilters.branches());
+                    break;
+                case "-mem":
+                    filters.add(InsnFilters.memory());
+                    break;
+                case "-pcs":
+                    if (++a == args.length || !args[a].contains(":")) {
+                        System.err.println(USAGE);
+                        return;
+                    }
+                    final String[] range = args[a].split(":");
+                    filters.add(InsnFilters.pcRange(Long.parseLong(range[0], 16), Long.parseLong(range[1], 16)));
+                    break;
+                default:
+                    System.err.println(USAGE);
+                    return;
+            }
+        }
+        args = Arrays.copyOfRange(args, a, args.length);
+        final int insnLimit;
+
+        switch (args.length) {
+            case 2:
+                insnLimit = -1; // by default, convert the entire trace
+                break;
+            case 3: // use user-provided limit
+                insnLimit = Integer.parseInt(args[2]);
+                break;
+            default:
+                System.err.println(USAGE);
+                return;
+        }
+
+        final long startTime = System.currentTimeMillis();
+        TraceWriter w = TraceWriter.create(args[1], format);
+        if (!filters.isEmpty()) {
+            w.setFilter(InsnFilters.all(filters.toArray(new InsnFilter[filters.size()])));
+        }
+        for (Insn i : new InsnIterator(args[0], insnLimit)) {
+            w.write(i);
+        }
+        w.close();
+        final long endTime = System.currentTimeMillis();
+
+        System.out.format("Converted %d insns (%d filtered out) to %s: %d bytes in %d ms%n",
+                w.getInsns(), w.getFiltered(), args[1], new File(args[1]).length(), endTime - startTime);
+        if (w instanceof BinaryTraceWriter) {
+            System.out.format("%d distinct asm strings%n", ((BinaryTraceWriter) w).getDictionarySize());
+        } else if (w instanceof MultiMemberTraceWriter) {
+            System.out.format("%d gzip members%n", ((MultiMemberTraceWriter) w).getMembers());
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package cis501;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Compares the decode throughput of the single-stream TextTraceSource against the parallel,
+ * multi-member ParallelTextTraceSource. The given compressed text trace is first rewritten as a
+ * multi-member trace in a temporary file, then each reader decodes the whole trace a few times and
+ * the best run is reported in insns per second.
+ */
+public class TraceDecodeBenchmark {
+
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) throws IOException {
+        final int insnLimit;
+
+        switch (args.length) {
+            case 1:
+                insnLimit = -1; // by default, use the entire trace
+                break;
+            case 2: // use user-provided limit
+                insnLimit = Integer.parseInt(args[1]);
+                break;
+            default:
+                System.err.println("Usage: path/to/trace-file.gz [insn-limit]");
+                return;
+        }
+
+        File multi = File.createTempFile("trace-members", ".gz");
+        multi.deleteOnExit();
+        try (MultiMemberTraceWriter w = new MultiMemberTraceWriter(multi.getPath())) {
+            for (Insn i : new InsnIterator(args[0], insnLimit)) {
+                w.write(i);
+            }
+        }
+
+        System.out.format("%d processors%n", Runtime.getRuntime().availableProcessors());
+        long best = 0;
+        for (int r = 0; r < RUNS; r++) {
+            TextTraceSource src = new TextTraceSource(args[0]);
+            if (-1 != insnLimit) {
+                src.setLimit(insnLimit);
+            }
+            best = Math.max(best, time("single-stream", src));
+        }
+        final long serial = best;
+        best = 0;
+        for (int r = 0; r < RUNS; r++) {
+            best = Math.max(best, time("multi-member ", new ParallelTextTraceSource(multi.getPath())));
+        }
+        System.out.format("best: single-stream %,d insns/s, multi-member %,d insns/s (%.2fx)%n",
+                serial, best, (double) best / serial);
+    }
+
+    /** Read all insns from src and close it. @return the throughput in insns per second */
+    private static long time(String label, TraceSource src) throws IOException {
+        final long startTime = System.nanoTime();
+        long insns = 0;
+        try {
+            while (null != src.read()) {
+                insns++;
+            }
+        } finally {
+            src.close();
+        }
+        final long elapsed = Math.max(1, System.nanoTime() - startTime);
+        final long rate = insns * 1000000000L / elapsed;
+        System.out.format("%s: %d insns in %d ms, %,d insns/s%n", label, insns, elapsed / 1000000, rate);
+        return rate;
+    }
+
+}
@@ -0,0 +1,166 @@
+package cis501;
+
+/**
+ * Formats insns as trace lines directly into a byte buffer, the inverse of TraceLineParser. This
+ * produces exactly the text of Insn.toTraceLine(), without going through String.format.
+ */
+public final class TraceLineFormatter {
+
+    private static final byte TAB = '\t';
+
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes();
+
+    /** Register names, indexed by register number + 1 */
+    private static final byte[][] REGS = new byte[17][];
+
+    static {
+        final String[] names = {"  _", " r0", " r1", " r2", " r3", " r4", " r5", " r6", " r7", " r8", " r9",
+                "r10", "r11", "r12", " sp", " lr", " pc"};
+        for (int r = 0; r < names.length; r++) {
+            REGS[r] = names[r].getBytes();
+        }
+    }
+
+    /** Fixed-width bytes of a line, i.e., all but its hex and decimal fields and its asm text */
+    private static final int FIXED_BYTES = 12 + 2 + 1 + 1 + 1 + 3 * 3 + 1;
+
+    private TraceLineFormatter() {
+    }
+
+    /** @return an upper bound on the bytes needed to format i, including its newline */
+    public static int maxLineBytes(Insn i) {
+        return FIXED_BYTES + 3 * 16 + 2 * 6 + i.asm.length();
+    }
+
+    /**
+     * Format i as a trace line, terminated by '\n', into buf starting at pos. buf must have room
+     * for at least maxLineBytes(i) bytes from pos.
+     *
+     * @return the position just after the line's newline
+     */
+    public static int format(Insn i, byte[] buf, int pos) {
+        int p = pos;
+        p = hex(i.pc, buf, p);
+        buf[p++] = TAB;
+        p = dec(i.insnSizeBytes, buf, p);
+        buf[p++] = TAB;
+        p = branchType(i.branchType, buf, p);
+        buf[p++] = TAB;
+        buf[p++] = directionChar(i.branchDirection);
+        buf[p++] = TAB;
+        p = hex(i.branchTarget, buf, p);
+        buf[p++] = TAB;
+        buf[p++] = memChar(i.mem);
+        buf[p++] = TAB;
+        p = hex(i.memAddress, buf, p);
+        buf[p++] = TAB;
+        p = dec(i.memAccessBytes, buf, p);
+        buf[p++] = TAB;
+        buf[p++] = condCodeChar(i.condCode);
+        buf[p++] = TAB;
+        p = reg(i.dstReg, buf, p);
+        buf[p++] = TAB;
+        p = reg(i.srcReg1, buf, p);
+        buf[p++] = TAB;
+        p = reg(i.srcReg2, buf, p);
+        buf[p++] = TAB;
+        final String asm = i.asm;
+        for (int j = 0; j < asm.length(); j++) {
+            final char c = asm.charAt(j);
+            buf[p++] = c < 0x80 ? (byte) c : (byte) '?'; // as String.getBytes(US_ASCII) does
+        }
+        buf[p++] = '\n';
+        return p;
+    }
+
+    /** Format v in hex, zero-padded to at least 8 digits, like %08x */
+    private static int hex(long v, byte[] buf, int p) {
+        final int digits = Math.max(8, (67 - Long.numberOfLeadingZeros(v)) / 4);
+        for (int d = digits - 1; d >= 0; d--) {
+            buf[p + d] = HEX_DIGITS[(int) (v & 0xF)];
+            v >>>= 4;
+        }
+        return p + digits;
+    }
+
+    private static int dec(int v, byte[] buf, int p) {
+        if (v < 0) {
+            buf[p++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (int t = v; t >= 10; t /= 10) {
+            digits++;
+        }
+        for (int d = digits - 1; d >= 0; d--) {
+            buf[p + d] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        return p + digits;
+    }
+
+    private static int reg(short r, byte[] buf, int p) {
+        if (r < -1 || r > 15) {
+            throw new IllegalArgumentException("Invalid register: " + r);
+        }
+        final byte[] name = REGS[r + 1];
+        buf[p] = name[0];
+        buf[p + 1] = name[1];
+        buf[p + 2] = name[2];
+        return p + 3;
+    }
+
+    private static int branchType(BranchType bt, byte[] buf, int p) {
+        if (null == bt) {
+            buf[p] = ' ';
+            buf[p + 1] = '_';
+            return p + 2;
+        }
+        switch (bt) {
+            case ConditionalDirect:
+                buf[p] = 'C';
+                buf[p + 1] = 'D';
+                break;
+            case ConditionalIndirect:
+                buf[p] = 'C';
+                buf[p + 1] = 'I';
+                break;
+            case UnconditionalDirect:
+                buf[p] = 'U';
+                buf[p + 1] = 'D';
+                break;
+            case UnconditionalIndirect:
+                buf[p] = 'U';
+                buf[p + 1] = 'I';
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid branch type: " + bt);
+        }
+        return p + 2;
+    }
+
+    private static byte directionChar(Direction dir) {
+        if (null == dir) return '_';
+        return Direction.Taken == dir ? (byte) 'T' : (byte) 'N';
+    }
+
+    private static byte memChar(MemoryOp mop) {
+        if (null == mop) return '_';
+        return MemoryOp.Load == mop ? (byte) 'L' : (byte) 'S';
+    }
+
+    private static byte condCodeChar(CondCodes cc) {
+        if (null == cc) return '_';
+        switch (cc) {
+            case ReadCC:
+                return 'R';
+            case WriteCC:
+                return 'W';
+            case ReadWriteCC:
+                return 'B';
+            default:
+                throw new IllegalArgumentException("Invalid cond code type: " + cc);
+        }
+    }
+
+}
@@ -0,0 +1,374 @@
+package cis501;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Parses trace lines (in the layout written by Insn.toTraceLine()) directly out of a byte buffer.
+ * Numeric fields are decoded in place, register and enum fields are recognized from their fixed
+ * character positions, and the asm text is only turned into a String when asm() is called.
+ * Static fields are shared between executions of the same PC (see StaticInsn), so the asm String
+ * of an insn is only created the first time its PC is seen.
+ *
+ * <p>Optionally, the static fields are also cached by PC for decoding: once a PC has been seen,
+ * later lines at that PC only have their dynamic fields (branch direction and target, and memory address)
+ * decoded. The static fields are taken from the cache instead, after checking that the line's
+ * size, branch type, memory op, memory access size, cond code, register and asm text fields are
+ * byte-for-byte those of the cached line. Otherwise, the line is decoded in full.
+ *
+ * <p>The fields of the most recently parsed line are held in this object, and are overwritten by
+ * the next call to parse().
+ */
+public class TraceLineParser {
+
+    private static final byte TAB = '\t';
+
+    /** Value of each ASCII hex digit, or -1 for non-hex characters */
+    private static final byte[] HEX = new byte[256];
+
+    static {
+        for (int c = 0; c < HEX.length; c++) {
+            HEX[c] = -1;
+        }
+        for (int c = '0'; c <= '9'; c++) {
+            HEX[c] = (byte) (c - '0');
+        }
+        for (int c = 'a'; c <= 'f'; c++) {
+            HEX[c] = (byte) (c - 'a' + 10);
+            HEX[c - 'a' + 'A'] = (byte) (c - 'a' + 10);
+        }
+    }
+
+    public long pc;
+    public short insnSizeBytes;
+    public BranchType branchType;
+    public Direction branchDirection;
+    public long branchTarget;
+    public MemoryOp mem;
+    public long memAddress;
+    public short memAccessBytes;
+    public CondCodes condCode;
+    public short dstReg;
+    public short srcReg1;
+    public short srcReg2;
+
+    private byte[] buf;
+    // Bounds of the static fields that precede the static tail of the line, each with its tab
+    private int sizeStart;
+    private int branchTypeEnd;
+    private int memStart;
+    private int memEnd;
+    private int memSizeStart;
+    /** Start of the cond code field, where the static tail of the line begins */
+    private int tailStart;
+    private int asmStart;
+    private int asmEnd;
+    /** The static record of the most recently parsed line, or null if not yet created */
+    private StaticInsn staticInsn;
+    private final StaticInsnTable statics = new StaticInsnTable();
+    private final boolean decodeCache;
+
+    /** A parser without the decode cache, which decodes every field of every line */
+    public TraceLineParser() {
+        this(false);
+    }
+
+    /**
+     * @param decodeCache if true, only decode the dynamic fields of lines at PCs that have been
+     *                    seen before. On the traces measured by TraceParseBenchmark this is no
+     *                    faster than decoding every field, so it is off by default.
+     */
+    public TraceLineParser(boolean decodeCache) {
+        this.decodeCache = decodeCache;
+    }
+
+    /** Position of the next character to decode within buf */
+    private int p;
+
+    /**
+     * Parse the trace line held in buf[start, end). The line must not include its terminating
+     * newline.
+     */
+    public void parse(byte[] b, int start, int end) {
+        this.buf = b;
+        this.p = start;
+        this.staticInsn = null;
+        try {
+            pc = hexField(end);
+            if (decodeCache) {
+                final StaticInsn s = statics.get(pc);
+                final int afterPc = p;
+                if (null != s && parseDynamic(s, end)) {
+                    return;
+                }
+                p = afterPc; // not seen before, or the code at this PC changed
+            }
+            sizeStart = p;
+            insnSizeBytes = (short) decField(end);
+            branchType = branchTypeField(end);
+            branchTypeEnd = p;
+            branchDirection = directionField(end);
+            branchTarget = hexField(end);
+            memStart = p;
+            mem = memField(end);
+            memEnd = p;
+            memAddress = hexField(end);
+            memSizeStart = p;
+            memAccessBytes = (short) decField(end);
+            tailStart = p;
+            condCode = condCodeField(end);
+            dstReg = regField(end);
+            srcReg1 = regField(end);
+            srcReg2 = regField(end);
+            asmStart = p;
+            asmEnd = (end > p && '\r' == buf[end - 1]) ? end - 1 : end;
+            if (decodeCache) {
+                staticInsn(); // record this PC's static fields for later lines
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error parsing insn: " + new String(b, start, end - start, StandardCharsets.US_ASCII));
+            throw e;
+        }
+    }
+
+    /** Parse the given trace line */
+    public void parse(String line) {
+        byte[] b = line.getBytes(StandardCharsets.US_ASCII);
+        parse(b, 0, b.length);
+    }
+
+    /**
+     * Decode only the dynamic fields of the line at buf[p], taking the static fields from s.
+     *
+     * @return true on success, or false if any of the line's static fields don't match those of s
+     */
+    private boolean parseDynamic(StaticInsn s, int end) {
+        final byte[] fixed = s.traceFixed;
+        int f = matchField(fixed, 0, end); // size
+        if (f >= 0) f = matchField(fixed, f, end); // branch type
+        if (f < 0) return false;
+        branchDirection = directionField(end);
+        branchTarget = hexField(end);
+        f = matchField(fixed, f, end); // mem op
+        if (f < 0) return false;
+        memAddress = hexField(end);
+        if (matchField(fixed, f, end) < 0) return false; // mem access size
+
+        final int lineEnd = (end > p && '\r' == buf[end - 1]) ? end - 1 : end;
+        final byte[] tail = s.traceTail;
+        if (lineEnd - p != tail.length) return false;
+        for (int j = 0; j < tail.length; j++) {
+            if (tail[j] != buf[p + j]) return false;
+        }
+
+        insnSizeBytes = s.insnSizeBytes;
+        branchType = s.branchType;
+        mem = s.mem;
+        memAccessBytes = s.memAccessBytes;
+        condCode = s.condCode;
+        dstReg = s.dstReg;
+        srcReg1 = s.srcReg1;
+        srcReg2 = s.srcReg2;
+        asmStart = lineEnd - s.asm.length();
+        asmEnd = lineEnd;
+        staticInsn = s;
+        return true;
+    }
+
+    /**
+     * Match the field at buf[p], including its terminating tab, against the field starting at
+     * fixed[f], and move past it if they match.
+     *
+     * @return the start of the next field in fixed, or -1 if the fields differ
+     */
+    private int matchField(byte[] fixed, int f, int end) {
+        int q = p;
+        while (true) {
+            if (q >= end || f >= fixed.length || fixed[f] != buf[q]) return -1;
+            q++;
+            if (TAB == fixed[f++]) break;
+        }
+        p = q;
+        return f;
+    }
+
+    /** @return the asm text of the most recently parsed line */
+    public String asm() {
+        return staticInsn().asm;
+    }
+
+    /**
+     * @return the static fields of the most recently parsed line, shared with every previous line
+     * at the same PC that had the same static fields
+     */
+    public StaticInsn staticInsn() {
+        if (null == staticInsn) {
+            if (!decodeCache) {
+                final StaticInsn s = statics.get(pc);
+                if (null != s && s.matches(this)) {
+                    staticInsn = s;
+                    return s;
+                }
+            }
+            staticInsn = new StaticInsn(pc, insnSizeBytes, branchType, mem, memAccessBytes, condCode,
+                    dstReg, srcReg1, srcReg2,
+                    new String(buf, asmStart, asmEnd - asmStart, StandardCharsets.US_ASCII));
+            if (decodeCache) {
+                final int sizeEnd = branchTypeEnd - sizeStart;
+                final int memOpEnd = sizeEnd + memEnd - memStart;
+                final byte[] fixed = new byte[memOpEnd + tailStart - memSizeStart];
+                System.arraycopy(buf, sizeStart, fixed, 0, sizeEnd);
+                System.arraycopy(buf, memStart, fixed, sizeEnd, memEnd - memStart);
+                System.arraycopy(buf, memSizeStart, fixed, memOpEnd, tailStart - memSizeStart);
+                staticInsn.traceFixed = fixed;
+                staticInsn.traceTail = Arrays.copyOfRange(buf, tailStart, asmEnd);
+            }
+            statics.put(staticInsn);
+        }
+        return staticInsn;
+    }
+
+    /** @return true if the asm text of the most recently parsed line is s */
+    boolean asmEquals(String s) {
+        if (s.length() != asmEnd - asmStart) return false;
+        for (int j = 0; j < s.length(); j++) {
+            if (s.charAt(j) != (char) buf[asmStart + j]) return false;
+        }
+        return true;
+    }
+
+    /** @return a new Insn holding the fields of the most recently parsed line */
+    public Insn toInsn() {
+        return new Insn(staticInsn(), branchDirection, branchTarget, memAddress);
+    }
+
+    /** Consume the tab terminating the current field */
+    private void endField(int end) {
+        if (p >= end || TAB != buf[p]) {
+            throw new IllegalArgumentException("Expected tab at column " + p);
+        }
+        p++;
+    }
+
+    private long hexField(int end) {
+        long v = 0;
+        final int start = p;
+        while (p < end && TAB != buf[p]) {
+            final int d = HEX[buf[p] & 0xFF];
+            if (d < 0) {
+                throw new IllegalArgumentException("Invalid hex digit: " + (char) buf[p]);
+            }
+            v = (v << 4) | d;
+            p++;
+        }
+        if (start == p) {
+            throw new IllegalArgumentException("Empty hex field at column " + p);
+        }
+        endField(end);
+        return v;
+    }
+
+    private int decField(int end) {
+        int v = 0;
+        final int start = p;
+        while (p < end && TAB != buf[p]) {
+            final int d = buf[p] - '0';
+            if (d < 0 || d > 9) {
+                throw new IllegalArgumentException("Invalid decimal digit: " + (char) buf[p]);
+            }
+            v = (v * 10) + d;
+            p++;
+        }
+        if (start == p) {
+            throw new IllegalArgumentException("Empty decimal field at column " + p);
+        }
+        endField(end);
+        return v;
+    }
+
+    /** Consume a field of exactly n characters, returning the position of its first character */
+    private int fixedField(int n, int end) {
+        final int start = p;
+        p += n;
+        if (p > end) {
+            throw new IllegalArgumentException("Truncated trace line at column " + start);
+        }
+        endField(end);
+        return start;
+    }
+
+    private BranchType branchTypeField(int end) {
+        final int s = fixedField(2, end);
+        final byte c0 = buf[s], c1 = buf[s + 1];
+        if (' ' == c0 && '_' == c1) return null;
+        if ('C' == c0) {
+            if ('D' == c1) return BranchType.ConditionalDirect;
+            if ('I' == c1) return BranchType.ConditionalIndirect;
+        } else if ('U' == c0) {
+            if ('D' == c1) return BranchType.UnconditionalDirect;
+            if ('I' == c1) return BranchType.UnconditionalIndirect;
+        }
+        throw new IllegalArgumentException("Invalid branch type: " + (char) c0 + (char) c1);
+    }
+
+    private Direction directionField(int end) {
+        final byte c = buf[fixedField(1, end)];
+        switch (c) {
+            case 'T':
+                return Direction.Taken;
+            case 'N':
+                return Direction.NotTaken;
+            case '_':
+                return null;
+            default:
+                throw new IllegalArgumentException("Invalid branch direction: " + (char) c);
+        }
+    }
+
+    private MemoryOp memField(int end) {
+        final byte c = buf[fixedField(1, end)];
+        switch (c) {
+            case 'L':
+                return MemoryOp.Load;
+            case 'S':
+                return MemoryOp.Store;
+            case '_':
+                return null;
+            default:
+                throw new IllegalArgumentException("Invalid mem op: " + (char) c);
+        }
+    }
+
+    private CondCodes condCodeField(int end) {
+        final byte c = buf[fixedField(1, end)];
+        switch (c) {
+            case 'R':
+                return CondCodes.ReadCC;
+            case 'W':
+                return CondCodes.WriteCC;
+            case 'B':
+                return CondCodes.ReadWriteCC;
+            case '_':
+                return null;
+            default:
+                throw new IllegalArgumentException("Invalid cond code type: " + (char) c);
+        }
+    }
+
+    /** Registers are always 3 characters: "  _", " r0" through " r9", "r10" through "r12", " sp", " lr", " pc" */
+    private short regField(int end) {
+        final int s = fixedField(3, end);
+        final byte c0 = buf[s], c1 = buf[s + 1], c2 = buf[s + 2];
+        if (' ' == c0) {
+            if (' ' == c1 && '_' == c2) return -1;
+            if ('r' == c1 && c2 >= '0' && c2 <= '9') return (short) (c2 - '0');
+            if ('s' == c1 && 'p' == c2) return 13;
+            if ('l' == c1 && 'r' == c2) return 14;
+            if ('p' == c1 && 'c' == c2) return 15;
+        } else if ('r' == c0 && '1' == c1 && c2 >= '0' && c2 <= '2') {
+            return (short) (10 + (c2 - '0'));
+        }
+        throw new IllegalArgumentException("Invalid reg: " + (char) c0 + (char) c1 + (char) c2);
+    }
+
+}
@@ -0,0 +1,89 @@
+package cis501;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Measures the per-line cost of TraceLineParser with and without its PC-keyed decode cache. The
+ * given compressed text trace is decompressed into memory first, so that only parsing is timed.
+ * Each parser then parses every line a few times, and the best run is reported in ns per line.
+ */
+public class TraceParseBenchmark {
+
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws IOException {
+        final int insnLimit;
+
+        switch (args.length) {
+            case 1:
+                insnLimit = -1; // by default, use the entire trace
+                break;
+            case 2: // use user-provided limit
+                insnLimit = Integer.parseInt(args[1]);
+                break;
+            default:
+                System.err.println("Usage: path/to/trace-file.gz [insn-limit]");
+                return;
+        }
+
+        final byte[] text = readLines(args[0], insnLimit);
+        long lines = 0;
+        for (byte b : text) {
+            if ('\n' == b) lines++;
+        }
+
+        double uncached = Double.MAX_VALUE, cached = Double.MAX_VALUE;
+        for (int r = 0; r < RUNS; r++) {
+            uncached = Math.min(uncached, time("full decode ", new TraceLineParser(false), text, lines));
+            cached = Math.min(cached, time("decode cache", new TraceLineParser(true), text, lines));
+        }
+        System.out.format("best: full decode %.1f ns/line, decode cache %.1f ns/line (%.2fx)%n",
+                uncached, cached, uncached / cached);
+    }
+
+    /** @return the first insnLimit lines of the given trace, or all of them if insnLimit is -1 */
+    private static byte[] readLines(String filename, int insnLimit) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long lines = 0;
+        try (InputStream in = new GZIPInputStream(new FileInputStream(filename), 1 << 16)) {
+            final byte[] b = new byte[1 << 16];
+            int n;
+            while ((n = in.read(b)) > 0) {
+                int keep = n;
+                for (int j = 0; j < n; j++) {
+                    if ('\n' == b[j] && ++lines == insnLimit) {
+                        keep = j + 1;
+                        break;
+                    }
+                }
+                out.write(b, 0, keep);
+                if (lines == insnLimit) break;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /** Parse every line of text with p, building an Insn for each. @return the cost in ns per line */
+    private static double time(String label, TraceLineParser p, byte[] text, long lines) {
+        final long startTime = System.nanoTime();
+        long check = 0;
+        int start = 0;
+        for (int j = 0; j < text.length; j++) {
+            if ('\n' == text[j]) {
+                p.parse(text, start, j);
+                check += p.toInsn().memAddress;
+                start = j + 1;
+            }
+        }
+        final long elapsed = System.nanoTime() - startTime;
+        final double perLine = (double) elapsed / lines;
+        System.out.format("%s: %d lines in %d ms, %.1f ns/line (checksum %x)%n",
+                label, lines, elapsed / 1000000, perLine, check);
+        return perLine;
+    }
+
+}
@@ -0,0 +1,194 @@
+package cis501;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The branch-only and memory-only projections of a trace, built together in one pass over the
+ * full trace. Projections can be cached in a sidecar file next to the trace, so that they are only
+ * built once per trace. The sidecar is laid out as:
+ *
+ * <pre>
+ *   header:   int MAGIC, int VERSION, long traceSize, long traceModified, int branches, int accesses
+ *   branches: long pc[branches], long target[branches], byte info[branches]
+ *   memory:   long pc[accesses], long address[accesses], short info[accesses]
+ * </pre>
+ *
+ * All values are big-endian. The sidecar is rebuilt whenever the trace's size or modification time
+ * no longer match those recorded in the header.
+ */
+public class TraceProjection {
+
+    /** "C5PJ", the first 4 bytes of every projection sidecar */
+    public static final int MAGIC = 0x4335504A;
+
+    public static final int VERSION = 1;
+
+    /** Appended to the trace's filename to form the name of its projection sidecar */
+    public static final String SIDECAR_SUFFIX = ".proj";
+
+    /** Elements per chunk when moving columns to and from files */
+    private static final int IO_CHUNK = 1 << 13;
+
+    public final BranchTrace branches;
+    public final MemoryTrace memory;
+
+    public TraceProjection(BranchTrace branches, MemoryTrace memory) {
+        this.branches = branches;
+        this.memory = memory;
+    }
+
+    /** Project the branches and memory accesses out of the remaining insns of the given cursor */
+    public static TraceProjection extract(InsnCursor c) {
+        BranchTrace bt = new BranchTrace();
+        MemoryTrace mt = new MemoryTrace();
+        while (c.advance()) {
+            if (null != c.branchType()) {
+                bt.add(c.pc(), c.insnSizeBytes(), c.branchType(), c.branchDirection(), c.branchTarget());
+            }
+            if (null != c.mem()) {
+                mt.add(c.pc(), c.mem(), c.memAddress(), c.memAccessBytes());
+            }
+        }
+        return new TraceProjection(bt, mt);
+    }
+
+    /**
+     * Project the branches and memory accesses out of the given trace file.
+     *
+     * @param filename  The path to the trace file
+     * @param insnLimit Stop after processing this many insns. If -1, process the entire trace.
+     */
+    public static TraceProjection extract(String filename, int insnLimit) throws IOException {
+        InsnCursor cursor = TraceSource.openCursor(filename, insnLimit);
+        try {
+            return extract(cursor);
+        } finally {
+            ((Closeable) cursor).close();
+        }
+    }
+
+    /**
+     * Return the projections of the given trace, reading them from the trace's sidecar file if it
+     * is up to date. Otherwise, extract them from the trace and record them in the sidecar.
+     *
+     * @param filename  The path to the trace file
+     * @param insnLimit Stop after processing this many insns. If -1, process the entire trace.
+     */
+    public static TraceProjection cached(String filename, int insnLimit) throws IOException {
+        final File trace = new File(filename);
+        final File sidecar = sidecar(filename, insnLimit);
+        if (sidecar.isFile()) {
+            TraceProjection p = load(sidecar, trace);
+            if (null != p) return p;
+        }
+        TraceProjection p = extract(filename, insnLimit);
+        try {
+            p.save(sidecar, trace);
+        } catch (IOException e) {
+            // caching is best-effort, e.g., the trace may live in a read-only directory
+            System.err.println("Could not write trace projection to " + sidecar + ": " + e.getMessage());
+        }
+        return p;
+    }
+
+    /** @return the sidecar holding the projections of the first insnLimit insns of the given trace */
+    static File sidecar(String filename, int insnLimit) {
+        return new File(filename + SIDECAR_SUFFIX + (-1 == insnLimit ? "" : "." + insnLimit));
+    }
+
+    /** @return the projections held in the given sidecar, or null if it is stale or unreadable */
+    private static TraceProjection load(File sidecar, File trace) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(sidecar), 1 << 16))) {
+            if (MAGIC != in.readInt() || VERSION != in.readInt()
+                    || trace.length() != in.readLong() || trace.lastModified() != in.readLong()) {
+                return null;
+            }
+            final int nb = in.readInt();
+            final int nm = in.readInt();
+            final ByteBuffer chunk = ByteBuffer.allocate(8 * IO_CHUNK);
+
+            BranchTrace bt = new BranchTrace(nb);
+            readLongs(in, chunk, bt.pc, nb);
+            readLongs(in, chunk, bt.target, nb);
+            in.readFully(bt.info, 0, nb);
+            bt.size = nb;
+
+            MemoryTrace mt = new MemoryTrace(nm);
+            readLongs(in, chunk, mt.pc, nm);
+            readLongs(in, chunk, mt.address, nm);
+            for (int off = 0; off < nm; off += IO_CHUNK) {
+                final int n = Math.min(IO_CHUNK, nm - off);
+                chunk.clear();
+                in.readFully(chunk.array(), 0, 2 * n);
+                chunk.asShortBuffer().get(mt.info, off, n);
+            }
+            mt.size = nm;
+            return new TraceProjection(bt, mt);
+        } catch (EOFException e) {
+            return null; // truncated sidecar
+        }
+    }
+
+    private static void readLongs(DataInputStream in, ByteBuffer chunk, long[] a, int count) throws IOException {
+        for (int off = 0; off < count; off += IO_CHUNK) {
+            final int n = Math.min(IO_CHUNK, count - off);
+            chunk.clear();
+            in.readFully(chunk.array(), 0, 8 * n);
+            chunk.asLongBuffer().get(a, off, n);
+        }
+    }
+
+    /** Write to a temporary file first, so that a crash never leaves a half-written sidecar. */
+    private void save(File sidecar, File trace) throws IOException {
+        File tmp = new File(sidecar.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(trace.length());
+            out.writeLong(trace.lastModified());
+            out.writeInt(branches.size);
+            out.writeInt(memory.size);
+            final ByteBuffer chunk = ByteBuffer.allocate(8 * IO_CHUNK);
+
+            writeLongs(out, chunk, branches.pc, branches.size);
+            writeLongs(out, chunk, branches.target, branches.size);
+            out.write(branches.info, 0, branches.size);
+
+            writeLongs(out, chunk, memory.pc, memory.size);
+            writeLongs(out, chunk, memory.address, memory.size);
+            for (int off = 0; off < memory.size; off += IO_CHUNK) {
+                final int n = Math.min(IO_CHUNK, memory.size - off);
+                chunk.clear();
+                chunk.asShortBuffer().put(memory.info, off, n);
+                out.write(chunk.array(), 0, 2 * n);
+            }
+        }
+        if (!tmp.renameTo(sidecar)) {
+            sidecar.delete();
+            if (!tmp.renameTo(sidecar)) {
+                tmp.delete();
+                throw new IOException("Could not rename " + tmp);
+            }
+        }
+    }
+
+    private static void writeLongs(DataOutputStream out, ByteBuffer chunk, long[] a, int count) throws IOException {
+        for (int off = 0; off < count; off += IO_CHUNK) {
+            final int n = Math.min(IO_CHUNK, count - off);
+            chunk.clear();
+            chunk.asLongBuffer().put(a, off, n);
+            out.write(chunk.array(), 0, 8 * n);
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package cis501;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/** A source of insns backing an InsnIterator, e.g., a text trace file or a binary trace file. */
+public abstract class TraceSource implements Closeable {
+
+    /**
+     * The suffixes appended to a trace's filename to name the sidecar files kept next to it. A
+     * sidecar may also carry an insn limit (".proj.1000") and, while being written, ".tmp".
+     */
+    private static final String[] SIDECAR_SUFFIXES = {TraceStats.SIDECAR_SUFFIX, TraceProjection.SIDECAR_SUFFIX};
+
+    /** @return true if the named file is a sidecar of some trace, rather than a trace itself */
+    public static boolean isSidecar(String filename) {
+        for (String suffix : SIDECAR_SUFFIXES) {
+            final int at = filename.lastIndexOf(suffix);
+            if (at > 0 && filename.substring(at + suffix.length()).matches("(\\.\\d+)?(\\.tmp)?")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** @return the next insn in the trace, or null if the end of the trace has been reached */
+    public abstract Insn read() throws IOException;
+
+    /**
+     * Skip over the next n insns of the trace. Sources that support random access override this to
+     * seek directly; the default implementation reads and discards insns.
+     */
+    public void skip(long n) throws IOException {
+        for (long i = 0; i < n; i++) {
+            if (null == read()) return;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+
+    /**
+     * Open the given trace file, choosing the binary, chunked binary or compressed text reader based
+     * on the file's contents.
+     */
+    public static TraceSource open(String filename) throws IOException {
+        int magic = 0;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(filename))) {
+            magic = in.readInt();
+        } catch (EOFException e) {
+            // file too short to be a binary trace
+        }
+        if (BinaryTrace.MAGIC == magic) {
+            return new BinaryTraceSource(filename);
+        }
+        if (BinaryTrace.CHUNKED_MAGIC == magic) {
+            return new ChunkedTraceSource(filename);
+        }
+        return new TextTraceSource(filename);
+    }
+
+    /**
+     * Open the given trace file as an InsnCursor, which reads the trace without any per-insn
+     * allocation.
+     *
+     * @param filename The path to the trace file
+     * @param limit    Stop after processing this many insns. If -1, process the entire trace.
+     */
+    public static InsnCursor openCursor(String filename, int limit) throws IOException {
+        return openCursor(filename, 0, limit);
+    }
+
+    /**
+     * Open the given trace file as an InsnCursor positioned at the given insn. Binary traces seek
+     * directly to the start insn, while text traces have to read their way there.
+     *
+     * @param filename The path to the trace file
+     * @param start    The index of the first insn to process
+     * @param length   Stop after processing this many insns. If -1, process the rest of the trace.
+     */
+    public static InsnCursor openCursor(String filename, long start, long length) throws IOException {
+        TraceSource src = open(filename);
+        src.skip(start);
+        if (src instanceof BlockTraceSource) {
+            BlockTraceSource bts = (BlockTraceSource) src;
+            if (-1 != length) {
+                bts.setLimit(length);
+            }
+            return bts;
+        }
+        TextTraceSource tts = (TextTraceSource) src;
+        if (-1 != length) {
+            tts.setLimit(length);
+        }
+        return tts;
+    }
+
+}
@@ -0,0 +1,245 @@
+package cis501;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * A snapshot of the summary data computed by an ITraceAnalyzer, which can be persisted in a
+ * sidecar file next to the trace so that repeated runs over an unchanged trace need not re-scan it.
+ *
+ * <p>The sidecar (the trace's path plus ".stats") is a Properties file keyed by the SHA-1 of the
+ * trace's contents. It holds one entry per insn limit, and also records the SHA-1 of the analyzer's
+ * class file, together with those of TraceSummary and Histogram to which analyzers delegate, so
+ * that editing any of them invalidates cached results. If a class file cannot be read, results
+ * are not cached at all. To avoid re-hashing a large
+ * trace on every run, the trace's size and modification time are recorded too: the trace is only
+ * re-hashed when either of them changes.
+ */
+public final class TraceStats {
+
+    public static final String SIDECAR_SUFFIX = ".stats";
+
+    /**
+     * Bump this when the set of stored statistics changes, or when summary logic changes outside
+     * of the classes hashed by analyzerKey(), to invalidate existing sidecars
+     */
+    private static final int VERSION = 2;
+
+    /** Classes that analyzers delegate to, whose code is part of every analyzer's cache key */
+    private static final Class<?>[] SHARED_ANALYZER_CLASSES = {TraceSummary.class, Histogram.class};
+    private static final int MAX_OFFSET_BITS = 32;
+
+    public final double avgInsnSize;
+    public final double insnBandwidthIncreaseWithoutThumb;
+    /** null if the analyzer did not report a category */
+    public final String mostCommonInsnCategory;
+    /** Indexed by number of bits, from 1 to MAX_OFFSET_BITS */
+    private final double[] offsetFractions;
+
+    private TraceStats(double avgInsnSize, double bwIncrease, String category, double[] offsetFractions) {
+        this.avgInsnSize = avgInsnSize;
+        this.insnBandwidthIncreaseWithoutThumb = bwIncrease;
+        this.mostCommonInsnCategory = category;
+        this.offsetFractions = offsetFractions;
+    }
+
+    /** Capture the summary data of an analyzer that has already been run. */
+    public static TraceStats of(ITraceAnalyzer ta) {
+        double[] fractions = new double[MAX_OFFSET_BITS + 1];
+        for (int b = 1; b <= MAX_OFFSET_BITS; b++) {
+            fractions[b] = ta.fractionOfDirectBranchOffsetsLteNBits(b);
+        }
+        return new TraceStats(ta.avgInsnSize(), ta.insnBandwidthIncreaseWithoutThumb(),
+                ta.mostCommonInsnCategory(), fractions);
+    }
+
+    /** @see ITraceAnalyzer#fractionOfDirectBranchOffsetsLteNBits(int) */
+    public double fractionOfDirectBranchOffsetsLteNBits(int bits) {
+        assert bits >= 1 && bits <= MAX_OFFSET_BITS : bits;
+        return offsetFractions[bits];
+    }
+
+    /**
+     * Return the statistics of the given trace, reading them from the trace's sidecar file if it
+     * holds results for the same trace contents, insn limit and analyzer. Otherwise, run the given
+     * analyzer over the trace and record its results in the sidecar.
+     *
+     * @param filename  The path to the trace file
+     * @param insnLimit Stop after processing this many insns. If -1, process the entire trace.
+     * @param ta        A fresh analyzer to run if the statistics are not cached
+     */
+    public static TraceStats cached(String filename, int insnLimit, ITraceAnalyzer ta) throws IOException {
+        return cached(filename, insnLimit, ta, analyzerKey(ta.getClass()));
+    }
+
+    /**
+     * As cached(filename, insnLimit, ta), but with results keyed by the given analyzer key. If the
+     * key is null, the analyzer is always run and nothing is cached.
+     */
+    static TraceStats cached(String filename, int insnLimit, ITraceAnalyzer ta, String analyzer) throws IOException {
+        if (null == analyzer) {
+            return run(filename, insnLimit, ta);
+        }
+        final File trace = new File(filename);
+        final File sidecar = new File(filename + SIDECAR_SUFFIX);
+        final Properties p = new Properties();
+        if (sidecar.isFile()) {
+            try (InputStream in = new FileInputStream(sidecar)) {
+                p.load(in);
+            }
+        }
+
+        boolean valid = String.valueOf(VERSION).equals(p.getProperty("version"))
+                && analyzer.equals(p.getProperty("analyzer"));
+        boolean dirty = false;
+        String hash = null;
+        if (valid && !(String.valueOf(trace.length()).equals(p.getProperty("trace.size"))
+                && String.valueOf(trace.lastModified()).equals(p.getProperty("trace.modified")))) {
+            // the trace may have changed: fall back to comparing contents
+            hash = sha1(trace);
+            valid = hash.equals(p.getProperty("trace.sha1"));
+            dirty = true;
+        }
+        if (!valid) {
+            p.clear();
+            p.setProperty("version", String.valueOf(VERSION));
+            p.setProperty("analyzer", analyzer);
+            p.setProperty("trace.sha1", null == hash ? sha1(trace) : hash);
+            dirty = true;
+        }
+
+        final String prefix = "limit." + insnLimit + ".";
+        TraceStats stats = load(p, prefix);
+        if (null == stats) {
+            stats = run(filename, insnLimit, ta);
+            stats.store(p, prefix);
+            dirty = true;
+        }
+
+        if (dirty) {
+            p.setProperty("trace.size", String.valueOf(trace.length()));
+            p.setProperty("trace.modified", String.valueOf(trace.lastModified()));
+            try {
+                save(p, sidecar);
+            } catch (IOException e) {
+                // caching is best-effort, e.g., the trace may live in a read-only directory
+                System.err.println("Could not write trace statistics to " + sidecar + ": " + e.getMessage());
+            }
+        }
+        return stats;
+    }
+
+    private static TraceStats run(String filename, int insnLimit, ITraceAnalyzer ta) throws IOException {
+        InsnCursor cursor = TraceSource.openCursor(filename, insnLimit);
+        try {
+            ta.run(cursor);
+        } finally {
+            ((Closeable) cursor).close();
+        }
+        return of(ta);
+    }
+
+    private static TraceStats load(Properties p, String prefix) {
+        final String avg = p.getProperty(prefix + "avgInsnSize");
+        final String bw = p.getProperty(prefix + "insnBandwidthIncreaseWithoutThumb");
+        if (null == avg || null == bw) return null;
+        double[] fractions = new double[MAX_OFFSET_BITS + 1];
+        for (int b = 1; b <= MAX_OFFSET_BITS; b++) {
+            final String f = p.getProperty(prefix + "directBranchOffsetsLteNBits." + b);
+            if (null == f) return null;
+            fractions[b] = Double.parseDouble(f);
+        }
+        return new TraceStats(Double.parseDouble(avg), Double.parseDouble(bw),
+                p.getProperty(prefix + "mostCommonInsnCategory"), fractions);
+    }
+
+    private void store(Properties p, String prefix) {
+        p.setProperty(prefix + "avgInsnSize", Double.toString(avgInsnSize));
+        p.setProperty(prefix + "insnBandwidthIncreaseWithoutThumb", Double.toString(insnBandwidthIncreaseWithoutThumb));
+        if (null != mostCommonInsnCategory) {
+            p.setProperty(prefix + "mostCommonInsnCategory", mostCommonInsnCategory);
+        }
+        for (int b = 1; b <= MAX_OFFSET_BITS; b++) {
+            p.setProperty(prefix + "directBranchOffsetsLteNBits." + b, Double.toString(offsetFractions[b]));
+        }
+    }
+
+    /** Write to a temporary file first, so that a crash never leaves a half-written sidecar. */
+    private static void save(Properties p, File sidecar) throws IOException {
+        File tmp = new File(sidecar.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            p.store(out, "cis501 trace statistics");
+        }
+        if (!tmp.renameTo(sidecar)) {
+            sidecar.delete();
+            if (!tmp.renameTo(sidecar)) {
+                tmp.delete();
+                throw new IOException("Could not rename " + tmp);
+            }
+        }
+    }
+
+    /**
+     * @return the name of the given analyzer, plus the SHA-1s of its class file and of the class
+     * files it delegates to, or null (after printing a warning) if any of them cannot be read
+     */
+    static String analyzerKey(Class<?> c) throws IOException {
+        StringBuilder key = new StringBuilder(c.getName());
+        final String hash = classHash(c);
+        if (null == hash) return warnUncached(c);
+        key.append('@').append(hash);
+        for (Class<?> shared : SHARED_ANALYZER_CLASSES) {
+            final String h = classHash(shared);
+            if (null == h) return warnUncached(shared);
+            key.append(',').append(h);
+        }
+        return key.toString();
+    }
+
+    private static String warnUncached(Class<?> c) {
+        System.err.println("Could not read the class file of " + c.getName() + ": trace statistics will not be cached");
+        return null;
+    }
+
+    /** @return the SHA-1 of the class file defining the given class, or null if it cannot be read */
+    private static String classHash(Class<?> c) throws IOException {
+        final String classFile = c.getName().substring(c.getName().lastIndexOf('.') + 1) + ".class";
+        try (InputStream in = c.getResourceAsStream(classFile)) {
+            return null == in ? null : sha1(in);
+        }
+    }
+
+    private static String sha1(File f) throws IOException {
+        try (InputStream in = new FileInputStream(f)) {
+            return sha1(in);
+        }
+    }
+
+    private static String sha1(InputStream in) throws IOException {
+        final MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JVM is required to support SHA-1
+        }
+        final byte[] buf = new byte[1 << 16];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            md.update(buf, 0, n);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : md.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,182 @@
+package cis501;
+
+/**
+ * The summary data behind ITraceAnalyzer, accumulated over a contiguous range of a trace. Since
+ * every metric is a sum, the summaries of adjacent ranges can be computed independently (see
+ * TraceSummaryTask) and then merged into the summary of the combined range.
+ */
+public class TraceSummary {
+
+    /** Bit widths from 0 to 32; wider values are counted as 32 bits */
+    public static final int BIT_BUCKETS = 33;
+    /** Insn sizes from 0 to 15 bytes; larger insns are counted as 15 bytes */
+    public static final int SIZE_BUCKETS = 16;
+
+    private static final String[] CATEGORIES =
+            {"load", "store", "unconditionalbranch", "conditionalbranch", "other"};
+    private static final int LOAD = 0, STORE = 1, UNCOND = 2, COND = 3, OTHER = 4;
+
+    private static final long NO_ADDRESS = -1;
+
+    private final Histogram offsetBits = new Histogram(BIT_BUCKETS);
+    private final Histogram memStrideBits = new Histogram(BIT_BUCKETS);
+    private final Histogram insnSizes = new Histogram(SIZE_BUCKETS);
+    private final long[] categoryCounts = new long[CATEGORIES.length];
+    private long thumbInsns = 0;
+    private long insnBytes = 0;
+    /** The first and last memory addresses accessed in this range, to link strides across merges */
+    private long firstMemAddress = NO_ADDRESS;
+    private long lastMemAddress = NO_ADDRESS;
+
+    /** Add every remaining insn of the given cursor to this summary. */
+    public void addAll(InsnCursor cursor) {
+        while (cursor.advance()) {
+            add(cursor);
+        }
+    }
+
+    /** Add the cursor's current insn to this summary. */
+    public void add(InsnCursor cursor) {
+        final int isize = cursor.insnSizeBytes();
+        insnSizes.add(isize);
+        insnBytes += isize;
+        if (2 == isize) {
+            thumbInsns++;
+        }
+
+        final BranchType bt = cursor.branchType();
+        final MemoryOp mop = cursor.mem();
+        if (null != bt) {
+            switch (bt) {
+                case ConditionalDirect:
+                    offsetBits.add(Histogram.signedBits(cursor.branchTarget() - cursor.pc()));
+                    categoryCounts[COND]++;
+                    break;
+                case ConditionalIndirect:
+                    categoryCounts[COND]++;
+                    break;
+                case UnconditionalDirect:
+                    offsetBits.add(Histogram.signedBits(cursor.branchTarget() - cursor.pc()));
+                    categoryCounts[UNCOND]++;
+                    break;
+                case UnconditionalIndirect:
+                    categoryCounts[UNCOND]++;
+                    break;
+            }
+        } else if (MemoryOp.Load == mop) {
+            categoryCounts[LOAD]++;
+        } else if (MemoryOp.Store == mop) {
+            categoryCounts[STORE]++;
+        } else {
+            categoryCounts[OTHER]++;
+        }
+
+        if (null != mop) {
+            addMemAddress(cursor.memAddress());
+        }
+    }
+
+    private void addMemAddress(long addr) {
+        if (NO_ADDRESS == firstMemAddress) {
+            firstMemAddress = addr;
+        } else {
+            memStrideBits.add(Histogram.signedBits(addr - lastMemAddress));
+        }
+        lastMemAddress = addr;
+    }
+
+    /**
+     * Merge the summary of the range immediately following this one into this summary. All metrics
+     * are order-independent sums, except for the memory stride that spans the two ranges, so s must
+     * summarize the insns that come after this summary's insns.
+     */
+    public void merge(TraceSummary s) {
+        assert this != s : "can't merge with myself!";
+        offsetBits.merge(s.offsetBits);
+        memStrideBits.merge(s.memStrideBits);
+        insnSizes.merge(s.insnSizes);
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            categoryCounts[c] += s.categoryCounts[c];
+        }
+        thumbInsns += s.thumbInsns;
+        insnBytes += s.insnBytes;
+        if (NO_ADDRESS != s.firstMemAddress) {
+            final long last = s.lastMemAddress;
+            addMemAddress(s.firstMemAddress);
+            lastMemAddress = last;
+        }
+    }
+
+    /** @return the number of insns summarized */
+    public long insns() {
+        return insnSizes.total();
+    }
+
+    /** @see ITraceAnalyzer#avgInsnSize() */
+    public double avgInsnSize() {
+        return insnSizes.mean();
+    }
+
+    /** @see ITraceAnalyzer#insnBandwidthIncreaseWithoutThumb() */
+    public double insnBandwidthIncreaseWithoutThumb() {
+        if (0 == insnBytes) return 1.0;
+        return (double) (insnBytes + 2 * thumbInsns) / insnBytes;
+    }
+
+    /** @see ITraceAnalyzer#mostCommonInsnCategory() */
+    public String mostCommonInsnCategory() {
+        if (0 == insns()) return null;
+        int best = 0;
+        for (int c = 1; c < CATEGORIES.length; c++) {
+            if (categoryCounts[c] > categoryCounts[best]) {
+                best = c;
+            }
+        }
+        return CATEGORIES[best];
+    }
+
+    /**
+     * @param category one of the categories returned by mostCommonInsnCategory()
+     * @return the fraction of insns in the given category, or 0 if there are no insns
+     */
+    public double categoryFraction(String category) {
+        for (int c = 0; c < CATEGORIES.length; c++) {
+            if (CATEGORIES[c].equals(category)) {
+                return 0 == insns() ? 0.0 : (double) categoryCounts[c] / insns();
+            }
+        }
+        throw new IllegalArgumentException("Unknown insn category: " + category);
+    }
+
+    /** @return the names of all insn categories, as accepted by categoryFraction() */
+    public static String[] categories() {
+        return CATEGORIES.clone();
+    }
+
+    /** @see ITraceAnalyzer#fractionOfDirectBranchOffsetsLteNBits(int) */
+    public double fractionOfDirectBranchOffsetsLteNBits(int bits) {
+        return offsetBits.fractionLte(bits);
+    }
+
+    /**
+     * @return histogram of the number of bits needed to encode each direct branch's offset (target
+     * minus PC) as a two's complement value
+     */
+    public Histogram directBranchOffsetBits() {
+        return offsetBits;
+    }
+
+    /**
+     * @return histogram of the number of bits needed to encode the stride between the addresses of
+     * consecutive memory accesses as a two's complement value
+     */
+    public Histogram memStrideBits() {
+        return memStrideBits;
+    }
+
+    /** @return histogram of insn sizes in bytes */
+    public Histogram insnSizes() {
+        return insnSizes;
+    }
+
+}
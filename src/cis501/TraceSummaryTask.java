@@ -0,0 +1,89 @@
+package cis501;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Summarizes a range of a trace file on a ForkJoinPool, by recursively splitting the range in half
+ * until it is small enough to summarize sequentially, and merging the halves' TraceSummary objects.
+ * Each leaf opens its own reader positioned at the start of its range, so this only pays off for
+ * binary and chunked binary traces, which can seek directly to any insn.
+ */
+public class TraceSummaryTask extends RecursiveTask<TraceSummary> {
+
+    /** Ranges at most this long are summarized sequentially */
+    public static final long MIN_GRAIN_INSNS = 1 << 16;
+
+    private final String filename;
+    private final long start;
+    private final long length;
+    private final long grain;
+
+    TraceSummaryTask(String filename, long start, long length, long grain) {
+        this.filename = filename;
+        this.start = start;
+        this.length = length;
+        this.grain = grain;
+    }
+
+    /**
+     * Summarize the given trace file. Binary traces are split into ranges that are summarized in
+     * parallel; text traces cannot seek, so they are summarized sequentially.
+     *
+     * @param filename  The path to the trace file
+     * @param insnLimit Stop after processing this many insns. If -1, process the entire trace.
+     * @param pool      The pool to run on
+     */
+    public static TraceSummary summarize(String filename, int insnLimit, ForkJoinPool pool) throws IOException {
+        final long insns;
+        try (TraceSource src = TraceSource.open(filename)) {
+            if (src instanceof TextTraceSource) {
+                TextTraceSource text = (TextTraceSource) src;
+                if (-1 != insnLimit) {
+                    text.setLimit(insnLimit);
+                }
+                TraceSummary s = new TraceSummary();
+                s.addAll(text);
+                return s;
+            }
+            final long count = ((BlockTraceSource) src).getInsnCount();
+            insns = -1 == insnLimit ? count : Math.min(count, insnLimit);
+        }
+        // a few leaves per thread, so that threads finishing early can steal work
+        final long grain = Math.max(MIN_GRAIN_INSNS, insns / (4L * pool.getParallelism()));
+        return pool.invoke(new TraceSummaryTask(filename, 0, insns, grain));
+    }
+
+    /** Called during parallel execution by the ForkJoinPool */
+    @Override
+    protected TraceSummary compute() {
+        if (length <= grain) {
+            return summarizeRange();
+        }
+        final long half = length / 2;
+        TraceSummaryTask right = new TraceSummaryTask(filename, start + half, length - half, grain);
+        right.fork();
+        TraceSummary s = new TraceSummaryTask(filename, start, half, grain).compute();
+        s.merge(right.join());
+        return s;
+    }
+
+    private TraceSummary summarizeRange() {
+        TraceSummary s = new TraceSummary();
+        try {
+            InsnCursor cursor = TraceSource.openCursor(filename, start, length);
+            try {
+                s.addAll(cursor);
+            } finally {
+                ((Closeable) cursor).close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read insns " + start + " to " + (start + length)
+                    + " of " + filename, e);
+        }
+        return s;
+    }
+
+}
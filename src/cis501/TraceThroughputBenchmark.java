@@ -0,0 +1,405 @@
+package cis501;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Measures the throughput of each stage of reading a text trace, so that changes to the readers
+ * can be checked against a recorded baseline. For each requested trace size, the first N lines of
+ * the given trace are recompressed in memory and to a temporary file, and then each stage is run
+ * for a number of warmup iterations followed by a number of measured iterations:
+ *
+ * <ul>
+ * <li>inflate: decompress the in-memory gzip bytes, discarding the output</li>
+ * <li>split: find every line in the decompressed bytes</li>
+ * <li>insn-string: build a String and then an Insn(String) for every line</li>
+ * <li>parser: build an Insn for every line with TraceLineParser</li>
+ * <li>iterator: read the temporary file end to end with InsnIterator</li>
+ * <li>cursor: read the temporary file end to end with an InsnCursor, without building Insns</li>
+ * </ul>
+ *
+ * With -gc, the bytes allocated per insn and the garbage collections during the measured
+ * iterations are reported too. With -csv, results are written to a file, which can later be passed
+ * to -baseline to report the change in throughput of every stage.
+ */
+public class TraceThroughputBenchmark {
+
+    private static final String USAGE = "Usage: [-sizes n1,n2,...] [-warmup n] [-iterations n] [-gc] "
+            + "[-csv results.csv] [-baseline results.csv] path/to/trace-file.gz";
+
+    /** Written by every stage, so that the JIT cannot discard the work being measured */
+    static volatile long blackhole;
+
+    /** One stage of the read path, measured over a whole trace input */
+    private abstract static class Stage {
+        final String name;
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        /** @return the number of insns processed */
+        abstract long run(Input in) throws IOException;
+    }
+
+    /** The first N lines of a trace, in the forms the stages consume */
+    private static class Input {
+        final int insns;
+        final byte[] compressed;
+        final byte[] text;
+        final File file;
+
+        Input(int insns, byte[] compressed, byte[] text, File file) {
+            this.insns = insns;
+            this.compressed = compressed;
+            this.text = text;
+            this.file = file;
+        }
+    }
+
+    /** Results of one stage on one input */
+    private static class Result {
+        final String stage;
+        final int size;
+        final double meanRate;
+        final double sdRate;
+        /** Bytes allocated per insn, or -1 if not profiled */
+        final double allocPerInsn;
+        final long gcCount;
+        final long gcMillis;
+
+        Result(String stage, int size, double meanRate, double sdRate, double allocPerInsn, long gcCount, long gcMillis) {
+            this.stage = stage;
+            this.size = size;
+            this.meanRate = meanRate;
+            this.sdRate = sdRate;
+            this.allocPerInsn = allocPerInsn;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        String key() {
+            return stage + "@" + size;
+        }
+    }
+
+    private static final Stage[] STAGES = {
+            new Stage("inflate") {
+                @Override
+                long run(Input in) throws IOException {
+                    final byte[] b = new byte[1 << 16];
+                    long total = 0;
+                    try (InputStream gz = new GZIPInputStream(new ByteArrayInputStream(in.compressed), 1 << 16)) {
+                        int n;
+                        while ((n = gz.read(b)) > 0) {
+                            total += n;
+                        }
+                    }
+                    blackhole = total;
+                    return in.insns;
+                }
+            },
+            new Stage("split") {
+                @Override
+                long run(Input in) {
+                    final byte[] t = in.text;
+                    long lines = 0, lengths = 0;
+                    int start = 0;
+                    for (int j = 0; j < t.length; j++) {
+                        if ('\n' == t[j]) {
+                            lengths += j - start;
+                            start = j + 1;
+                            lines++;
+                        }
+                    }
+                    blackhole = lengths;
+                    return lines;
+                }
+            },
+            new Stage("insn-string") {
+                @Override
+                long run(Input in) {
+                    final byte[] t = in.text;
+                    long lines = 0, sum = 0;
+                    int start = 0;
+                    for (int j = 0; j < t.length; j++) {
+                        if ('\n' == t[j]) {
+                            sum += new Insn(new String(t, start, j - start, StandardCharsets.US_ASCII)).pc;
+                            start = j + 1;
+                            lines++;
+                        }
+                    }
+                    blackhole = sum;
+                    return lines;
+                }
+            },
+            new Stage("parser") {
+                @Override
+                long run(Input in) {
+                    final byte[] t = in.text;
+                    final TraceLineParser p = new TraceLineParser();
+                    long lines = 0, sum = 0;
+                    int start = 0;
+                    for (int j = 0; j < t.length; j++) {
+                        if ('\n' == t[j]) {
+                            p.parse(t, start, j);
+                            sum += p.toInsn().pc;
+                            start = j + 1;
+                            lines++;
+                        }
+                    }
+                    blackhole = sum;
+                    return lines;
+                }
+            },
+            new Stage("iterator") {
+                @Override
+                long run(Input in) {
+                    long n = 0, sum = 0;
+                    for (Insn i : new InsnIterator(in.file.getPath(), -1)) {
+                        sum += i.pc;
+                        n++;
+                    }
+                    blackhole = sum;
+                    return n;
+                }
+            },
+            new Stage("cursor") {
+                @Override
+                long run(Input in) throws IOException {
+                    long n = 0, sum = 0;
+                    try (TraceSource src = TraceSource.open(in.file.getPath())) {
+                        final InsnCursor c = (InsnCursor) src;
+                        while (c.advance()) {
+                            sum += c.pc() + c.memAddress();
+                            n++;
+                        }
+                    }
+                    blackhole = sum;
+                    return n;
+                }
+            },
+    };
+
+    public static void main(String[] args) throws IOException {
+        List<Integer> sizes = new ArrayList<>();
+        int warmup = 3, iterations = 5;
+        boolean gc = false;
+        String csv = null, baseline = null, trace = null;
+        for (int a = 0; a < args.length; a++) {
+            final boolean hasValue = a + 1 < args.length;
+            switch (args[a]) {
+                case "-sizes":
+                    if (!hasValue) break;
+                    for (String s : args[++a].split(",")) {
+                        sizes.add(Integer.parseInt(s.trim()));
+                    }
+                    continue;
+                case "-warmup":
+                    if (!hasValue) break;
+                    warmup = Integer.parseInt(args[++a]);
+                    continue;
+                case "-iterations":
+                    if (!hasValue) break;
+                    iterations = Integer.parseInt(args[++a]);
+                    continue;
+                case "-gc":
+                    gc = true;
+                    continue;
+                case "-csv":
+                    if (!hasValue) break;
+                    csv = args[++a];
+                    continue;
+                case "-baseline":
+                    if (!hasValue) break;
+                    baseline = args[++a];
+                    continue;
+                default:
+                    if (!args[a].startsWith("-") && null == trace) {
+                        trace = args[a];
+                        continue;
+                    }
+            }
+            System.err.println(USAGE);
+            return;
+        }
+        if (null == trace || iterations < 1 || warmup < 0) {
+            System.err.println(USAGE);
+            return;
+        }
+        if (sizes.isEmpty()) {
+            sizes.add(100000);
+            sizes.add(1000000);
+        }
+
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (gc && !allocationProfiling(threads)) {
+            System.err.println("Allocation profiling is not supported by this JVM");
+            gc = false;
+        }
+
+        List<Result> results = new ArrayList<>();
+        System.out.format("%-12s %10s %16s %14s%s%n", "stage", "insns", "insns/s", "+-",
+                gc ? String.format(" %12s %6s %8s", "B/insn", "gcs", "gc ms") : "");
+        for (int size : sizes) {
+            final Input in = prepare(trace, size);
+            try {
+                for (Stage s : STAGES) {
+                    Result r = measure(s, in, warmup, iterations, gc ? threads : null);
+                    results.add(r);
+                    System.out.format("%-12s %10d %,16.0f %,14.0f%s%n", r.stage, in.insns, r.meanRate, r.sdRate,
+                            gc ? String.format(" %12.1f %6d %8d", r.allocPerInsn, r.gcCount, r.gcMillis) : "");
+                }
+            } finally {
+                in.file.delete();
+            }
+        }
+
+        if (null != baseline) {
+            compare(readBaseline(baseline), results, System.out);
+        }
+        if (null != csv) {
+            try (PrintStream out = new PrintStream(new FileOutputStream(csv), false, "US-ASCII")) {
+                out.println("stage,insns,insns_per_s,sd,bytes_per_insn,gc_count,gc_ms");
+                for (Result r : results) {
+                    out.format("%s,%d,%.1f,%.1f,%.2f,%d,%d%n", r.stage, r.size, r.meanRate, r.sdRate,
+                            r.allocPerInsn, r.gcCount, r.gcMillis);
+                }
+            }
+        }
+    }
+
+    private static boolean allocationProfiling(ThreadMXBean threads) {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return false;
+        com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean) threads;
+        if (!t.isThreadAllocatedMemorySupported()) return false;
+        t.setThreadAllocatedMemoryEnabled(true);
+        return true;
+    }
+
+    /** Read the first size lines of the given trace, and recompress them in memory and to a file. */
+    private static Input prepare(String trace, int size) throws IOException {
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        int lines = 0;
+        try (InputStream in = new GZIPInputStream(new FileInputStream(trace), 1 << 16)) {
+            final byte[] b = new byte[1 << 16];
+            int n;
+            while (lines < size && (n = in.read(b)) > 0) {
+                int keep = n;
+                for (int j = 0; j < n; j++) {
+                    if ('\n' == b[j] && ++lines == size) {
+                        keep = j + 1;
+                        break;
+                    }
+                }
+                text.write(b, 0, keep);
+            }
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream gz = new GZIPOutputStream(compressed, 1 << 16)) {
+            text.writeTo(gz);
+        }
+        File f = File.createTempFile("trace-bench", ".gz");
+        f.deleteOnExit();
+        try (OutputStream out = new FileOutputStream(f)) {
+            compressed.writeTo(out);
+        }
+        return new Input(lines, compressed.toByteArray(), text.toByteArray(), f);
+    }
+
+    private static Result measure(Stage s, Input in, int warmup, int iterations, ThreadMXBean threads) throws IOException {
+        for (int w = 0; w < warmup; w++) {
+            s.run(in);
+        }
+
+        final long[] gcBefore = gcTotals();
+        final long allocBefore = allocatedBytes(threads);
+        double[] rates = new double[iterations];
+        long insns = 0;
+        for (int it = 0; it < iterations; it++) {
+            final long start = System.nanoTime();
+            final long n = s.run(in);
+            final long elapsed = Math.max(1, System.nanoTime() - start);
+            rates[it] = n * 1e9 / elapsed;
+            insns += n;
+        }
+        final long allocated = allocatedBytes(threads) - allocBefore;
+        final long[] gcAfter = gcTotals();
+
+        double mean = 0;
+        for (double r : rates) {
+            mean += r;
+        }
+        mean /= iterations;
+        double var = 0;
+        for (double r : rates) {
+            var += (r - mean) * (r - mean);
+        }
+        final double sd = iterations > 1 ? Math.sqrt(var / (iterations - 1)) : 0;
+        return new Result(s.name, in.insns, mean, sd,
+                null == threads ? -1 : (double) allocated / Math.max(1, insns),
+                gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1]);
+    }
+
+    private static long allocatedBytes(ThreadMXBean threads) {
+        if (null == threads) return 0;
+        return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /** @return the total number of collections and total collection time in ms, across all collectors */
+    private static long[] gcTotals() {
+        long count = 0, millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[]{count, millis};
+    }
+
+    /** @return the insns/s of every stage@size in a CSV file written by -csv */
+    private static Map<String, Double> readBaseline(String filename) throws IOException {
+        Map<String, Double> rates = new HashMap<>();
+        try (BufferedReader in = new BufferedReader(new FileReader(filename))) {
+            in.readLine(); // header
+            String line;
+            while (null != (line = in.readLine())) {
+                final String[] f = line.split(",");
+                if (f.length < 3) continue;
+                rates.put(f[0] + "@" + f[1], Double.parseDouble(f[2]));
+            }
+        }
+        return rates;
+    }
+
+    private static void compare(Map<String, Double> baseline, List<Result> results, PrintStream out) {
+        out.println();
+        out.format("%-12s %10s %16s %16s %8s%n", "stage", "insns", "baseline", "insns/s", "change");
+        for (Result r : results) {
+            final Double before = baseline.get(r.key());
+            if (null == before) continue;
+            out.format("%-12s %10d %,16.0f %,16.0f %+7.1f%%%n", r.stage, r.size, before, r.meanRate,
+                    100 * (r.meanRate / before - 1));
+        }
+    }
+
+}
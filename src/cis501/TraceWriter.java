@@ -0,0 +1,73 @@
+package cis501;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes insns to a trace file, in any of the formats that TraceSource can read. An optional
+ * InsnFilter drops insns before they are written, so that a trace can be shrunk down to, e.g., its
+ * branches or its memory operations, and then replayed much faster.
+ */
+public abstract class TraceWriter implements Closeable {
+
+    public enum Format {
+        /** A gzip-compressed text trace, see TextTraceWriter */
+        TEXT,
+        /** A text trace split into gzip members, see MultiMemberTraceWriter */
+        MEMBERS,
+        /** The binary trace format, see BinaryTrace */
+        BINARY,
+        /** The chunked binary trace format, see BinaryTrace */
+        CHUNKED
+    }
+
+    private InsnFilter filter = null;
+    private long filtered = 0;
+
+    /** Create a writer for a new trace file in the given format */
+    public static TraceWriter create(String filename, Format format) throws IOException {
+        switch (format) {
+            case TEXT:
+                return new TextTraceWriter(filename);
+            case MEMBERS:
+                return new MultiMemberTraceWriter(filename);
+            case BINARY:
+                return new BinaryTraceWriter(filename);
+            case CHUNKED:
+                return new BinaryTraceWriter(filename, BinaryTrace.DEFAULT_CHUNK_INSNS, true);
+            default:
+                throw new IllegalArgumentException("Invalid trace format: " + format);
+        }
+    }
+
+    /** Only write insns that f accepts. If f is null, write every insn. */
+    public void setFilter(InsnFilter f) {
+        this.filter = f;
+    }
+
+    /**
+     * Append the given insn to the trace, unless the filter drops it.
+     *
+     * @return true if i was written, false if it was dropped
+     */
+    public boolean write(Insn i) throws IOException {
+        if (null != filter && !filter.accept(i)) {
+            filtered++;
+            return false;
+        }
+        append(i);
+        return true;
+    }
+
+    /** Append the given insn to the trace, which has already passed the filter */
+    protected abstract void append(Insn i) throws IOException;
+
+    /** @return the number of insns written so far */
+    public abstract long getInsns();
+
+    /** @return the number of insns dropped by the filter so far */
+    public long getFiltered() {
+        return filtered;
+    }
+
+}
@@ -0,0 +1,169 @@
+package cis501;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Streams over a trace, summarizing each consecutive window of a fixed number of insns. When a
+ * window is complete its summary is handed to a listener and then dropped, so memory use does not
+ * depend on the length of the trace or on the window size. Each window records the same metrics as
+ * TraceSummary plus a basic block vector, which is what phase analysis (e.g., choosing simulation
+ * points) needs.
+ */
+public class WindowedAnalyzer {
+
+    public static final long DEFAULT_WINDOW_INSNS = 1000000;
+
+    /** Receives each window's summary as soon as the window is complete */
+    public interface WindowListener {
+        void window(Window w);
+    }
+
+    /** The summary of one window of the trace */
+    public static class Window {
+        /** This window's position in the sequence of windows, starting from 0 */
+        public final long index;
+        /** The index within the trace of this window's first insn */
+        public final long startInsn;
+        public final TraceSummary summary;
+        public final BasicBlockVector bbv;
+
+        Window(long index, long startInsn, int bbvDimensions) {
+            this.index = index;
+            this.startInsn = startInsn;
+            this.summary = new TraceSummary();
+            this.bbv = new BasicBlockVector(bbvDimensions);
+        }
+
+        public long insns() {
+            return summary.insns();
+        }
+    }
+
+    private final long windowInsns;
+    private final int bbvDimensions;
+    private final WindowListener listener;
+
+    private Window current;
+    private long insnsSeen = 0;
+    /** Start PC of the basic block being executed, valid if inBlock */
+    private long blockStart;
+    private boolean inBlock = false;
+    /** Insns of the current basic block executed in the current window */
+    private long blockInsns = 0;
+
+    public WindowedAnalyzer(long windowInsns, WindowListener listener) {
+        this(windowInsns, BasicBlockVector.DEFAULT_DIMENSIONS, listener);
+    }
+
+    /**
+     * @param windowInsns   the number of insns per window
+     * @param bbvDimensions the number of dimensions of each window's basic block vector
+     * @param listener      receives every window, in trace order
+     */
+    public WindowedAnalyzer(long windowInsns, int bbvDimensions, WindowListener listener) {
+        if (windowInsns < 1) {
+            throw new IllegalArgumentException("Window must hold at least 1 insn, got " + windowInsns);
+        }
+        this.windowInsns = windowInsns;
+        this.bbvDimensions = bbvDimensions;
+        this.listener = listener;
+        current = new Window(0, 0, bbvDimensions);
+    }
+
+    /**
+     * Analyze every remaining insn of the given cursor. The final window is emitted even if it is
+     * shorter than the window size.
+     */
+    public void run(InsnCursor cursor) {
+        while (cursor.advance()) {
+            add(cursor);
+        }
+        finish();
+    }
+
+    /** Add the cursor's current insn, emitting the current window if this insn completes it. */
+    public void add(InsnCursor cursor) {
+        if (!inBlock) {
+            blockStart = cursor.pc();
+            inBlock = true;
+        }
+        blockInsns++;
+        current.summary.add(cursor);
+        insnsSeen++;
+
+        if (null != cursor.branchType()) {
+            // a branch ends the basic block
+            countBlock();
+            inBlock = false;
+        }
+        if (insnsSeen - current.startInsn == windowInsns) {
+            emit();
+        }
+    }
+
+    /** Emit the current window, if it holds any insns. */
+    public void finish() {
+        if (insnsSeen > current.startInsn) {
+            emit();
+        }
+    }
+
+    /** Count the insns of the current basic block executed so far in the current window. */
+    private void countBlock() {
+        if (blockInsns > 0) {
+            current.bbv.add(blockStart, blockInsns);
+            blockInsns = 0;
+        }
+    }
+
+    private void emit() {
+        // a basic block spanning two windows is counted in both, under the same start PC
+        countBlock();
+        listener.window(current);
+        current = new Window(current.index + 1, insnsSeen, bbvDimensions);
+    }
+
+    /** Print one CSV row per window of the given trace. */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: path/to/trace-file [window-insns] [insn-limit]");
+            return;
+        }
+        final long windowInsns = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_WINDOW_INSNS;
+        final int insnLimit = args.length > 2 ? Integer.parseInt(args[2]) : -1;
+
+        final String[] categories = TraceSummary.categories();
+        StringBuilder header = new StringBuilder("window,startInsn,insns,avgInsnSize");
+        for (String c : categories) {
+            header.append(',').append(c);
+        }
+        System.out.println(header.append(",offsetsLte8Bits,offsetsLte16Bits,bbvDistanceToPrevious"));
+
+        WindowedAnalyzer wa = new WindowedAnalyzer(windowInsns, new WindowListener() {
+            private BasicBlockVector prev = null;
+
+            @Override
+            public void window(Window w) {
+                StringBuilder row = new StringBuilder();
+                row.append(w.index).append(',').append(w.startInsn).append(',').append(w.insns());
+                row.append(',').append(w.summary.avgInsnSize());
+                for (String c : categories) {
+                    row.append(',').append(w.summary.categoryFraction(c));
+                }
+                row.append(',').append(w.summary.fractionOfDirectBranchOffsetsLteNBits(8));
+                row.append(',').append(w.summary.fractionOfDirectBranchOffsetsLteNBits(16));
+                row.append(',').append(null == prev ? "" : String.valueOf(w.bbv.distance(prev)));
+                System.out.println(row);
+                prev = w.bbv;
+            }
+        });
+        InsnCursor cursor = TraceSource.openCursor(args[0], insnLimit);
+        try {
+            wa.run(cursor);
+        } finally {
+            ((Closeable) cursor).close();
+        }
+    }
+
+}
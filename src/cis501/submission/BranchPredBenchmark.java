@@ -0,0 +1,156 @@
+package cis501.submission;
+
+import cis501.BatchPrediction;
+import cis501.BranchPredictor;
+import cis501.BranchTrace;
+import cis501.Direction;
+import cis501.IDirectionPredictor;
+import cis501.TraceProjection;
+
+import java.io.IOException;
+
+/**
+ * Compares the throughput, in branches per second, of running a trace's branches through
+ * predictors one branch at a time (via predict() and train()) and in batches (via the batch entry
+ * points). The branches are read from the trace's cached branch projection (see TraceProjection),
+ * so only the first run on a trace has to decode the trace itself.
+ */
+public class BranchPredBenchmark {
+
+    private static final int RUNS = 5;
+    private static final int BATCH = 1 << 12;
+
+    /** Written by every run, so that the JIT cannot discard the work being measured */
+    static volatile long blackhole;
+
+    /** Creates a fresh predictor for each run */
+    interface Factory {
+        IDirectionPredictor create();
+    }
+
+    /**
+     * Read the branches of the trace named by args, which are: path/to/trace-file [insn-limit]
+     *
+     * @param usage printed if args are malformed
+     * @return the trace's branches, or null if args are malformed
+     */
+    static BranchTrace branches(String[] args, String usage) throws IOException {
+        final int insnLimit;
+
+        switch (args.length) {
+            case 1:
+                insnLimit = -1; // by default, use the entire trace
+                break;
+            case 2: // use user-provided limit
+                insnLimit = Integer.parseInt(args[1]);
+                break;
+            default:
+                System.err.println(usage);
+                return null;
+        }
+
+        return TraceProjection.cached(args[0], insnLimit).branches;
+    }
+
+    public static void main(String[] args) throws IOException {
+        final BranchTrace bt = branches(args, "Usage: path/to/trace-file [insn-limit]");
+        if (null == bt) return;
+        System.out.format("%,d branches%n", bt.size());
+
+        final String[] names = {"bimodal-18", "gshare-18-18"};
+        final Factory[] factories = {
+                new Factory() {
+                    @Override
+                    public IDirectionPredictor create() {
+                        return new DirPredBimodal(18);
+                    }
+                },
+                new Factory() {
+                    @Override
+                    public IDirectionPredictor create() {
+                        return new DirPredGshare(18, 18);
+                    }
+                },
+        };
+
+        for (int p = 0; p < names.length; p++) {
+            double single = 0, batch = 0;
+            for (int r = 0; r < RUNS; r++) {
+                single = Math.max(single, directionSingle(factories[p].create(), bt));
+                batch = Math.max(batch, directionBatch(factories[p].create(), bt));
+            }
+            report(names[p], single, batch);
+        }
+
+        double single = 0, batch = 0;
+        for (int r = 0; r < RUNS; r++) {
+            single = Math.max(single, predictorSingle(new BranchPredictor(factories[1].create(), new BranchTargetBuffer(12)), bt));
+            batch = Math.max(batch, predictorBatch(new BranchPredictor(factories[1].create(), new BranchTargetBuffer(12)), bt));
+        }
+        report(names[1] + " + btb-12", single, batch);
+    }
+
+    private static void report(String name, double single, double batch) {
+        System.out.format("%-22s one at a time %,14.0f branches/s, batched %,14.0f branches/s (%.2fx)%n",
+                name, single, batch, batch / single);
+    }
+
+    private static double rate(long branches, long startTime) {
+        return branches * 1e9 / Math.max(1, System.nanoTime() - startTime);
+    }
+
+    private static double directionSingle(IDirectionPredictor dp, BranchTrace bt) {
+        final long start = System.nanoTime();
+        long correct = 0;
+        for (int i = 0; i < bt.size(); i++) {
+            final long pc = bt.pc(i) >> 1;
+            final Direction actual = bt.direction(i);
+            if (dp.predict(pc) == actual) correct++;
+            dp.train(pc, actual);
+        }
+        blackhole = correct;
+        return rate(bt.size(), start);
+    }
+
+    private static double directionBatch(IDirectionPredictor dp, BranchTrace bt) {
+        final long start = System.nanoTime();
+        final long[] pcs = new long[BATCH];
+        final long[] targets = new long[BATCH];
+        final long[] outcomes = new long[BatchPrediction.words(BATCH)];
+        final long[] predictions = new long[outcomes.length];
+        long correct = 0;
+        for (int base = 0; base < bt.size(); base += BATCH) {
+            final int n = Math.min(BATCH, bt.size() - base);
+            bt.copyBatch(base, n, pcs, targets, outcomes);
+            for (int i = 0; i < n; i++) {
+                pcs[i] >>= 1;
+            }
+            BatchPrediction.predictAndTrain(dp, pcs, outcomes, predictions, n);
+            for (int w = 0; w < BatchPrediction.words(n); w++) {
+                final long valid = (w + 1) << 6 <= n ? -1L : (1L << n) - 1;
+                correct += Long.bitCount(~(predictions[w] ^ outcomes[w]) & valid);
+            }
+        }
+        blackhole = correct;
+        return rate(bt.size(), start);
+    }
+
+    private static double predictorSingle(BranchPredictor bp, BranchTrace bt) {
+        final long start = System.nanoTime();
+        long mispredictions = 0;
+        for (int i = 0; i < bt.size(); i++) {
+            final long next = bt.nextPC(i);
+            if (bp.predict(bt.pc(i), bt.fallthroughPC(i)) != next) mispredictions++;
+            bp.train(bt.pc(i), next, bt.direction(i));
+        }
+        blackhole = mispredictions;
+        return rate(bt.size(), start);
+    }
+
+    private static double predictorBatch(BranchPredictor bp, BranchTrace bt) {
+        final long start = System.nanoTime();
+        blackhole = bp.mispredictions(bt);
+        return rate(bt.size(), start);
+    }
+
+}
@@ -0,0 +1,162 @@
+package cis501.submission;
+
+import cis501.BranchPredictor;
+import cis501.IDirectionPredictor;
+import cis501.PredictorSweep;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Sweeps the index and history sizes of the bimodal, gshare and tournament predictors over a
+ * trace, decoding the trace just once (see PredictorSweep). Prints one accuracy and one MPKI matrix
+ * per predictor, with a row per index size and a column per history size, or with -csv, one row per
+ * configuration.
+ *
+ * <p>Every configuration uses its own BTB of the same size, so differences between configurations
+ * come only from their direction predictors. A tournament predictor chooses between a bimodal and a
+ * gshare predictor, with its chooser and both sub-predictors indexed by the same number of bits.
+ */
+public class BranchPredSweep {
+
+    private static final String[] KINDS = {"bimodal", "gshare", "tournament"};
+
+    public static void main(String[] args) throws IOException {
+        String trace = null;
+        int insnLimit = -1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int[] indexBits = range("8:16");
+        int[] historyBits = range("4:16");
+        int btbBits = 12;
+        boolean csv = false;
+
+        for (int a = 0; a < args.length; a++) {
+            switch (args[a]) {
+                case "-limit":
+                    insnLimit = Integer.parseInt(args[++a]);
+                    break;
+                case "-threads":
+                    threads = Integer.parseInt(args[++a]);
+                    break;
+                case "-index":
+                    indexBits = range(args[++a]);
+                    break;
+                case "-history":
+                    historyBits = range(args[++a]);
+                    break;
+                case "-btb":
+                    btbBits = Integer.parseInt(args[++a]);
+                    break;
+                case "-csv":
+                    csv = true;
+                    break;
+                default:
+                    trace = args[a];
+            }
+        }
+        if (null == trace) {
+            System.err.println("Usage: [-limit insns] [-threads n] [-index lo:hi] [-history lo:hi] [-btb bits] [-csv] path/to/trace-file");
+            return;
+        }
+
+        PredictorSweep sweep = new PredictorSweep(threads);
+        for (int i : indexBits) {
+            sweep.add(name(KINDS[0], i, 0), new BranchPredictor(new DirPredBimodal(i), new BranchTargetBuffer(btbBits)));
+        }
+        for (int k = 1; k < KINDS.length; k++) {
+            for (int i : indexBits) {
+                for (int h : historyBits) {
+                    sweep.add(name(KINDS[k], i, h), new BranchPredictor(create(KINDS[k], i, h), new BranchTargetBuffer(btbBits)));
+                }
+            }
+        }
+
+        final long start = System.nanoTime();
+        List<PredictorSweep.Result> results = sweep.run(trace, insnLimit);
+        final double seconds = (System.nanoTime() - start) / 1e9;
+
+        if (csv) {
+            System.out.println("predictor,indexBits,historyBits,insns,branches,mispredictions,accuracy,mpki");
+            int r = 0;
+            for (int i : indexBits) {
+                printCsv(KINDS[0], i, 0, results.get(r++));
+            }
+            for (int k = 1; k < KINDS.length; k++) {
+                for (int i : indexBits) {
+                    for (int h : historyBits) {
+                        printCsv(KINDS[k], i, h, results.get(r++));
+                    }
+                }
+            }
+            return;
+        }
+
+        final PredictorSweep.Result first = results.get(0);
+        System.out.format("%,d insns, %,d branches, %d configurations on %d threads in %.1fs%n",
+                first.insns, first.branches, results.size(), threads, seconds);
+        printMatrix(KINDS[0], indexBits, new int[]{0}, results, 0, false);
+        printMatrix(KINDS[0], indexBits, new int[]{0}, results, 0, true);
+        int offset = indexBits.length;
+        for (int k = 1; k < KINDS.length; k++) {
+            printMatrix(KINDS[k], indexBits, historyBits, results, offset, false);
+            printMatrix(KINDS[k], indexBits, historyBits, results, offset, true);
+            offset += indexBits.length * historyBits.length;
+        }
+    }
+
+    private static IDirectionPredictor create(String kind, int indexBits, int historyBits) {
+        switch (kind) {
+            case "gshare":
+                return new DirPredGshare(indexBits, historyBits);
+            case "tournament":
+                return new DirPredTournament(indexBits, new DirPredBimodal(indexBits), new DirPredGshare(indexBits, historyBits));
+            default:
+                return new DirPredBimodal(indexBits);
+        }
+    }
+
+    private static String name(String kind, int indexBits, int historyBits) {
+        return 0 == historyBits ? kind + "-" + indexBits : kind + "-" + indexBits + "-" + historyBits;
+    }
+
+    /** Parse lo:hi, or a single number, into the inclusive range of sizes it names */
+    private static int[] range(String s) {
+        final int colon = s.indexOf(':');
+        final int lo = Integer.parseInt(-1 == colon ? s : s.substring(0, colon));
+        final int hi = -1 == colon ? lo : Integer.parseInt(s.substring(colon + 1));
+        if (lo < 0 || hi < lo) {
+            throw new IllegalArgumentException("Invalid range: " + s);
+        }
+        int[] r = new int[hi - lo + 1];
+        for (int j = 0; j < r.length; j++) {
+            r[j] = lo + j;
+        }
+        return r;
+    }
+
+    private static void printCsv(String kind, int indexBits, int historyBits, PredictorSweep.Result r) {
+        System.out.format("%s,%d,%d,%d,%d,%d,%.6f,%.4f%n", kind, indexBits, historyBits,
+                r.insns, r.branches, r.mispredictions, r.accuracy(), r.mpki());
+    }
+
+    /** Print the accuracy (or MPKI) of configurations [offset, offset+rows*columns) as a matrix */
+    private static void printMatrix(String kind, int[] indexBits, int[] historyBits,
+                                    List<PredictorSweep.Result> results, int offset, boolean mpki) {
+        System.out.format("%n%s %s%n%8s", kind, mpki ? "MPKI" : "accuracy", historyBits.length > 1 ? "idx\\hist" : "idx");
+        if (historyBits.length > 1) {
+            for (int h : historyBits) {
+                System.out.format("%9d", h);
+            }
+        }
+        System.out.println();
+        for (int row = 0; row < indexBits.length; row++) {
+            System.out.format("%8d", indexBits[row]);
+            for (int col = 0; col < historyBits.length; col++) {
+                final PredictorSweep.Result r = results.get(offset + row * historyBits.length + col);
+                System.out.format(mpki ? "%9.3f" : "%9.4f", mpki ? r.mpki() : r.accuracy());
+            }
+            System.out.println();
+        }
+    }
+
+}
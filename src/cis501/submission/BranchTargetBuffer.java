@@ -1,20 +1,52 @@
 package cis501.submission;
 
-import cis501.IBranchTargetBuffer;
+import cis501.IBatchBranchTargetBuffer;
 
-public class BranchTargetBuffer implements IBranchTargetBuffer {
+/** A direct-mapped BTB, indexed by the low bits of the PC and tagged with the full PC. */
+public class BranchTargetBuffer implements IBatchBranchTargetBuffer {
 
-    public BranchTargetBuffer(int indexBits) {
+    private final long[] tags;
+    private final long[] targets;
+    private final long indexMask;
 
+    public BranchTargetBuffer(int indexBits) {
+        tags = new long[1 << indexBits];
+        targets = new long[1 << indexBits];
+        indexMask = (1L << indexBits) - 1;
     }
 
     @Override
     public long predict(long pc) {
-        return 0;
+        final int i = (int) (pc & indexMask);
+        return pc == tags[i] ? targets[i] : 0;
     }
 
     @Override
     public void train(long pc, long actual) {
+        final int i = (int) (pc & indexMask);
+        tags[i] = pc;
+        targets[i] = actual;
+    }
+
+    @Override
+    public void predictAndTrain(long[] pcs, long[] targets, long[] outcomes, long[] predictions, int n) {
+        final long[] tg = tags;
+        final long[] tt = this.targets;
+        final int mask = (int) indexMask;
+        for (int k = 0; k < n; k++) {
+            final long pc = pcs[k];
+            final int i = (int) pc & mask;
+            predictions[k] = pc == tg[i] ? tt[i] : 0;
+            if (0 != (outcomes[k >>> 6] & (1L << k))) {
+                tg[i] = pc;
+                tt[i] = targets[k];
+            }
+        }
+    }
 
+    @Override
+    public String toString() {
+        return "btb-" + Integer.numberOfTrailingZeros(tags.length);
     }
+
 }
@@ -1,21 +1,54 @@
 package cis501.submission;
 
 import cis501.Direction;
-import cis501.IDirectionPredictor;
+import cis501.IBatchDirectionPredictor;
 
-public class DirPredBimodal implements IDirectionPredictor {
+/** A table of 2-bit saturating counters, indexed by the low bits of the PC. */
+public class DirPredBimodal implements IBatchDirectionPredictor {
+
+    protected final PackedCounterTable counters;
+    protected final long indexMask;
 
     public DirPredBimodal(int indexBits) {
+        counters = new PackedCounterTable(indexBits);
+        indexMask = (1L << indexBits) - 1;
+    }
+
+    /** @return the counter index used for the given PC */
+    protected int index(long pc) {
+        return (int) (pc & indexMask); // masking, unlike %, never yields a negative index
     }
 
     @Override
     public Direction predict(long pc) {
-        return null;
+        return counters.isTaken(index(pc)) ? Direction.Taken : Direction.NotTaken;
     }
 
     @Override
     public void train(long pc, Direction actual) {
+        counters.update(index(pc), Direction.Taken == actual ? 1 : 0);
+    }
 
+    @Override
+    public void predictAndTrain(long[] pcs, long[] outcomes, long[] predictions, int n) {
+        final PackedCounterTable ctrs = counters;
+        final int mask = (int) indexMask;
+        for (int w = 0; w << 6 < n; w++) {
+            final long out = outcomes[w];
+            long pred = 0;
+            final int end = Math.min(64, n - (w << 6));
+            for (int b = 0; b < end; b++) {
+                final int i = (int) pcs[(w << 6) + b] & mask;
+                final int c = ctrs.update(i, (int) ((out >>> b) & 1));
+                pred |= (long) (c >>> 1) << b; // the prediction made before training
+            }
+            predictions[w] = pred;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "bimodal-" + Integer.numberOfTrailingZeros(counters.size());
     }
 
 }
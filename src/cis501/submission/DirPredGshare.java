@@ -2,19 +2,52 @@ package cis501.submission;
 
 import cis501.Direction;
 
+/** A table of 2-bit counters, indexed by the PC xor'ed with a history of recent branch outcomes. */
 public class DirPredGshare extends DirPredBimodal {
 
+    private final long historyMask;
+    private long history = 0;
+
     public DirPredGshare(int indexBits, int historyBits) {
         super(indexBits);
+        historyMask = (1L << historyBits) - 1;
     }
 
     @Override
-    public Direction predict(long pc) {
-        return null;
+    protected int index(long pc) {
+        return (int) ((pc ^ history) & indexMask);
     }
 
     @Override
     public void train(long pc, Direction actual) {
+        super.train(pc, actual);
+        history = ((history << 1) | (Direction.Taken == actual ? 1 : 0)) & historyMask;
+    }
 
+    @Override
+    public void predictAndTrain(long[] pcs, long[] outcomes, long[] predictions, int n) {
+        final PackedCounterTable ctrs = counters;
+        final int mask = (int) indexMask;
+        final long hmask = historyMask;
+        long h = history;
+        for (int w = 0; w << 6 < n; w++) {
+            final long out = outcomes[w];
+            long pred = 0;
+            final int end = Math.min(64, n - (w << 6));
+            for (int b = 0; b < end; b++) {
+                final int i = (int) (pcs[(w << 6) + b] ^ h) & mask;
+                final int taken = (int) ((out >>> b) & 1);
+                pred |= (long) (ctrs.update(i, taken) >>> 1) << b;
+                h = ((h << 1) | taken) & hmask;
+            }
+            predictions[w] = pred;
+        }
+        history = h;
     }
+
+    @Override
+    public String toString() {
+        return "gshare-" + Integer.numberOfTrailingZeros(counters.size()) + "-" + Long.bitCount(historyMask);
+    }
+
 }
@@ -6,11 +6,16 @@ import cis501.IDirectionPredictor;
 public class DirPredNeverTaken implements IDirectionPredictor {
     @Override
     public Direction predict(long pc) {
-        return null;
+        return Direction.NotTaken;
     }
 
     @Override
     public void train(long pc, Direction actual) {
 
     }
+
+    @Override
+    public String toString() {
+        return "never-taken";
+    }
 }
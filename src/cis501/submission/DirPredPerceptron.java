@@ -0,0 +1,168 @@
+package cis501.submission;
+
+import cis501.Direction;
+import cis501.IDirectionPredictor;
+
+/**
+ * A hashed perceptron predictor, after Tarjan and Skadron, "Merging path and gshare indexing in
+ * perceptron branch prediction", TACO 2005. Each of N tables of 8-bit weights is indexed by the PC
+ * hashed with a global history of a different length, and the prediction is the sign of the sum
+ * of the N selected weights. A table with history length 0 is indexed by the PC alone, and acts as
+ * the bias weight.
+ *
+ * <p>Unlike gshare, whose single table must be indexed by the whole history, every table here only
+ * sees its own history, so long histories add one table each instead of doubling one table's size.
+ * As in DirPredTAGE, histories are kept folded to the width of an index and updated in constant
+ * time per table.
+ *
+ * <p>Weights are trained on a misprediction, or when the sum's magnitude is at most a threshold.
+ * The threshold adapts as in Seznec's O-GEHL: it rises when mispredictions outnumber low-confidence
+ * correct predictions, and falls otherwise.
+ */
+public class DirPredPerceptron implements IDirectionPredictor {
+
+    private static final int WEIGHT_MAX = Byte.MAX_VALUE;
+    private static final int WEIGHT_MIN = Byte.MIN_VALUE;
+    /** How far the threshold counter must drift before the threshold moves */
+    private static final int THRESHOLD_SPEED = 18;
+
+    /** The history lengths of the default configuration, as in ChampSim's hashed perceptron */
+    private static final int[] DEFAULT_HISTORY_LENGTHS = {0, 3, 4, 6, 8, 10, 14, 19, 26, 36, 49, 67, 91, 125, 170, 232};
+
+    private final int tables;
+    private final int indexBits;
+    private final int indexMask;
+    private final int[] historyLengths;
+
+    /**
+     * The weights of every table, laid end to end, so that weight i of table t is at
+     * (t << indexBits) | i
+     */
+    private final byte[] weights;
+
+    /** Each table's history, folded to the width of an index (see GlobalHistory.fold()) */
+    private final int[] folds;
+    private final int[] outPoints;
+    private final GlobalHistory history;
+
+    private int threshold;
+    private int thresholdCounter = 0;
+
+    // The lookup for the most recent branch, computed by predict() and reused by train()
+    private long lookupPC;
+    private boolean lookupValid = false;
+    /** The weight used from each table, as an index into weights */
+    private final int[] indices;
+    private int sum;
+
+    /** A hashed perceptron with 16 tables of 2^12 weights (64KB), and histories up to 232 */
+    public DirPredPerceptron() {
+        this(12, DEFAULT_HISTORY_LENGTHS);
+    }
+
+    /**
+     * @param indexBits      each table has 2^indexBits weights
+     * @param historyLengths the global history length used to index each table, one per table
+     */
+    public DirPredPerceptron(int indexBits, int[] historyLengths) {
+        this(indexBits, historyLengths, (int) (1.93 * historyLengths.length + 14));
+    }
+
+    /**
+     * @param indexBits      each table has 2^indexBits weights
+     * @param historyLengths the global history length used to index each table, one per table
+     * @param threshold      the initial training threshold
+     */
+    public DirPredPerceptron(int indexBits, int[] historyLengths, int threshold) {
+        if (indexBits < 1 || indexBits > 24 || 0 == historyLengths.length || threshold < 0) {
+            throw new IllegalArgumentException(String.format("Invalid perceptron configuration: %d tables of 2^%d weights, threshold %d",
+                    historyLengths.length, indexBits, threshold));
+        }
+        int maxHistory = 0;
+        for (int len : historyLengths) {
+            if (len < 0) {
+                throw new IllegalArgumentException("Invalid history length: " + len);
+            }
+            maxHistory = Math.max(maxHistory, len);
+        }
+        this.tables = historyLengths.length;
+        this.indexBits = indexBits;
+        this.indexMask = (1 << indexBits) - 1;
+        this.historyLengths = historyLengths.clone();
+        this.threshold = threshold;
+
+        weights = new byte[tables << indexBits];
+        folds = new int[tables];
+        outPoints = new int[tables];
+        for (int t = 0; t < tables; t++) {
+            outPoints[t] = historyLengths[t] % indexBits;
+        }
+        history = new GlobalHistory(maxHistory);
+        indices = new int[tables];
+    }
+
+    /** @return the current training threshold */
+    public int threshold() {
+        return threshold;
+    }
+
+    /** Compute the sum of the weights selected for pc, unless it is already known */
+    private void lookup(long pc) {
+        if (lookupValid && pc == lookupPC) return;
+        final int p = (int) (pc ^ (pc >>> indexBits));
+        final byte[] w = weights;
+        int y = 0;
+        for (int t = 0; t < tables; t++) {
+            final int i = (t << indexBits) | ((p ^ folds[t]) & indexMask);
+            indices[t] = i;
+            y += w[i];
+        }
+        sum = y;
+        lookupPC = pc;
+        lookupValid = true;
+    }
+
+    @Override
+    public Direction predict(long pc) {
+        lookup(pc);
+        return sum >= 0 ? Direction.Taken : Direction.NotTaken;
+    }
+
+    @Override
+    public void train(long pc, Direction actual) {
+        lookup(pc);
+        final boolean taken = Direction.Taken == actual;
+        final boolean correct = (sum >= 0) == taken;
+
+        if (!correct || Math.abs(sum) <= threshold) {
+            final int delta = taken ? 1 : -1;
+            final byte[] w = weights;
+            for (int t = 0; t < tables; t++) {
+                final int i = indices[t];
+                w[i] = (byte) Math.max(WEIGHT_MIN, Math.min(WEIGHT_MAX, w[i] + delta));
+            }
+            if (!correct) {
+                if (++thresholdCounter >= THRESHOLD_SPEED) {
+                    threshold++;
+                    thresholdCounter = 0;
+                }
+            } else if (--thresholdCounter <= -THRESHOLD_SPEED) {
+                threshold = Math.max(0, threshold - 1);
+                thresholdCounter = 0;
+            }
+        }
+
+        final int outcome = taken ? 1 : 0;
+        history.push(outcome);
+        for (int t = 0; t < tables; t++) {
+            folds[t] = GlobalHistory.fold(folds[t], outcome, history.get(historyLengths[t]), outPoints[t], indexBits);
+        }
+        lookupValid = false;
+    }
+
+    @Override
+    public String toString() {
+        return "perceptron-" + tables + "x" + indexBits;
+    }
+
+}
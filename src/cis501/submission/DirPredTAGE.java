@@ -0,0 +1,253 @@
+package cis501.submission;
+
+import cis501.Direction;
+import cis501.IDirectionPredictor;
+
+/**
+ * A TAGE (TAgged GEometric history length) predictor, after Seznec and Michaud, "A case for
+ * (partially) TAgged GEometric history length branch prediction", JILP 2006. A bimodal base
+ * predictor is backed by tagged tables indexed with global histories of geometrically increasing
+ * lengths. The tagged table with the longest history whose tag matches provides the prediction.
+ *
+ * <p>The long histories are never hashed directly: each table keeps its history folded down to
+ * the width of its index and tag in folded-history registers. These are updated in constant time
+ * per branch, however long the history, so a prediction and update cost O(tables).
+ *
+ * <p>Simplifications relative to the paper: there is no path history, and a new entry is
+ * allocated in the first table above the provider that has a free slot, rather than in a randomly
+ * chosen one.
+ */
+public class DirPredTAGE implements IDirectionPredictor {
+
+    /** Tagged counters are 3-bit signed, and predict Taken when >= 0 */
+    private static final int CTR_MAX = 3;
+    private static final int CTR_MIN = -4;
+    private static final int USEFUL_MAX = 3;
+    /** useAltOnNewAlloc is a 4-bit signed counter */
+    private static final int USE_ALT_MAX = 7;
+    private static final int USE_ALT_MIN = -8;
+    /** The useful bits of every entry are halved every this many branches */
+    private static final int USEFUL_RESET_PERIOD = 1 << 18;
+
+    private final PackedCounterTable base;
+    private final int baseMask;
+
+    private final int tables;
+    private final int indexBits;
+    private final int indexMask;
+    private final int tagMask;
+    private final int[] historyLengths;
+
+    private final int tagBits;
+
+    /**
+     * The tag, counter and useful bits of each entry of each tagged table. The tables are laid
+     * end to end, so entry i of table t is at (t << indexBits) | i.
+     */
+    private final short[] tags;
+    private final byte[] ctrs;
+    private final byte[] useful;
+
+    /**
+     * Each table's history, folded to the width of its index, its tag, and its tag less one bit
+     * (see GlobalHistory.fold()), along with the out points used to fold them
+     */
+    private final int[] indexFolds;
+    private final int[] tagFolds;
+    private final int[] tagFolds2;
+    private final int[] indexOutPoints;
+    private final int[] tagOutPoints;
+    private final int[] tagOutPoints2;
+
+    private final GlobalHistory history;
+
+    /** Whether to trust the alternate prediction over a newly-allocated provider entry */
+    private int useAltOnNewAlloc = 0;
+    private int branches = 0;
+
+    // The lookup for the most recent branch, computed by predict() and reused by train()
+    private long lookupPC;
+    private boolean lookupValid = false;
+    /** The entry, as an index into the flattened tables, looked up in each table */
+    private final int[] indices;
+    private final int[] tagValues;
+    private int provider;
+    private int alt;
+    private boolean providerPred;
+    private boolean altPred;
+
+    /** A TAGE predictor with about 14KB of state: a 2^13-entry base plus 7 tables of 2^10 entries */
+    public DirPredTAGE() {
+        this(13, 7, 10, 9, 5, 200);
+    }
+
+    /**
+     * @param baseIndexBits the base bimodal predictor has 2^baseIndexBits counters
+     * @param tables        the number of tagged tables
+     * @param indexBits     each tagged table has 2^indexBits entries
+     * @param tagBits       the width of each tag, at most 15
+     * @param minHistory    the history length of the first tagged table
+     * @param maxHistory    the history length of the last tagged table
+     */
+    public DirPredTAGE(int baseIndexBits, int tables, int indexBits, int tagBits, int minHistory, int maxHistory) {
+        if (tables < 1 || tagBits < 2 || tagBits > 15 || indexBits < 1 || indexBits > 24
+                || minHistory < 1 || maxHistory < minHistory) {
+            throw new IllegalArgumentException(String.format("Invalid TAGE configuration: %d tables of 2^%d entries, %d-bit tags, histories %d to %d",
+                    tables, indexBits, tagBits, minHistory, maxHistory));
+        }
+        this.base = new PackedCounterTable(baseIndexBits);
+        this.baseMask = (1 << baseIndexBits) - 1;
+        this.tables = tables;
+        this.indexBits = indexBits;
+        this.indexMask = (1 << indexBits) - 1;
+        this.tagBits = tagBits;
+        this.tagMask = (1 << tagBits) - 1;
+
+        historyLengths = new int[tables];
+        for (int t = 0; t < tables; t++) {
+            final double ratio = tables == 1 ? 0 : (double) t / (tables - 1);
+            historyLengths[t] = (int) Math.round(minHistory * Math.pow((double) maxHistory / minHistory, ratio));
+        }
+
+        tags = new short[tables << indexBits];
+        ctrs = new byte[tables << indexBits];
+        useful = new byte[tables << indexBits];
+        indexFolds = new int[tables];
+        tagFolds = new int[tables];
+        tagFolds2 = new int[tables];
+        indexOutPoints = new int[tables];
+        tagOutPoints = new int[tables];
+        tagOutPoints2 = new int[tables];
+        for (int t = 0; t < tables; t++) {
+            indexOutPoints[t] = historyLengths[t] % indexBits;
+            tagOutPoints[t] = historyLengths[t] % tagBits;
+            tagOutPoints2[t] = historyLengths[t] % (tagBits - 1);
+        }
+
+        history = new GlobalHistory(historyLengths[tables - 1]);
+
+        indices = new int[tables];
+        tagValues = new int[tables];
+    }
+
+    /** @return the history length of each tagged table, shortest first */
+    public int[] historyLengths() {
+        return historyLengths.clone();
+    }
+
+    private void lookup(long pc) {
+        if (lookupValid && pc == lookupPC) return;
+        final int p = (int) pc;
+        provider = -1;
+        alt = -1;
+        for (int t = tables - 1; t >= 0; t--) {
+            final int i = (t << indexBits) | ((p ^ (p >>> indexBits) ^ indexFolds[t]) & indexMask);
+            final int tag = (p ^ tagFolds[t] ^ (tagFolds2[t] << 1)) & tagMask;
+            indices[t] = i;
+            tagValues[t] = tag;
+            if (tags[i] == tag) {
+                if (provider < 0) {
+                    provider = t;
+                } else if (alt < 0) {
+                    alt = t;
+                }
+            }
+        }
+        final boolean basePred = base.isTaken(p & baseMask);
+        altPred = alt < 0 ? basePred : ctrs[indices[alt]] >= 0;
+        providerPred = provider < 0 ? basePred : ctrs[indices[provider]] >= 0;
+        lookupPC = pc;
+        lookupValid = true;
+    }
+
+    /** @return true if the provider entry looks newly allocated: weak, and not yet useful */
+    private boolean providerIsNew() {
+        final int c = ctrs[indices[provider]];
+        return (0 == c || -1 == c) && 0 == useful[indices[provider]];
+    }
+
+    private boolean prediction() {
+        if (provider >= 0 && useAltOnNewAlloc >= 0 && providerIsNew()) {
+            return altPred;
+        }
+        return providerPred;
+    }
+
+    @Override
+    public Direction predict(long pc) {
+        lookup(pc);
+        return prediction() ? Direction.Taken : Direction.NotTaken;
+    }
+
+    @Override
+    public void train(long pc, Direction actual) {
+        lookup(pc);
+        final boolean taken = Direction.Taken == actual;
+        final boolean predicted = prediction();
+
+        if (provider >= 0) {
+            final int i = indices[provider];
+            if (providerIsNew() && providerPred != altPred) {
+                useAltOnNewAlloc = altPred == taken
+                        ? Math.min(USE_ALT_MAX, useAltOnNewAlloc + 1)
+                        : Math.max(USE_ALT_MIN, useAltOnNewAlloc - 1);
+            }
+            if (providerPred != altPred) {
+                final int u = useful[i];
+                useful[i] = (byte) (providerPred == taken ? Math.min(USEFUL_MAX, u + 1) : Math.max(0, u - 1));
+            }
+            final int c = ctrs[i];
+            ctrs[i] = (byte) (taken ? Math.min(CTR_MAX, c + 1) : Math.max(CTR_MIN, c - 1));
+        } else {
+            base.update((int) pc & baseMask, taken ? 1 : 0);
+        }
+
+        if (predicted != taken && provider < tables - 1) {
+            allocate(taken);
+        }
+
+        if (++branches == USEFUL_RESET_PERIOD) {
+            branches = 0;
+            for (int i = 0; i < useful.length; i++) {
+                useful[i] >>= 1;
+            }
+        }
+
+        updateHistory(taken ? 1 : 0);
+        lookupValid = false;
+    }
+
+    /**
+     * Allocate an entry for the current branch in the first table with a longer history than the
+     * provider's whose entry is not useful. If every such entry is useful, age them all instead.
+     */
+    private void allocate(boolean taken) {
+        for (int t = provider + 1; t < tables; t++) {
+            final int i = indices[t];
+            if (0 == useful[i]) {
+                tags[i] = (short) tagValues[t];
+                ctrs[i] = (byte) (taken ? 0 : -1);
+                return;
+            }
+        }
+        for (int t = provider + 1; t < tables; t++) {
+            useful[indices[t]]--;
+        }
+    }
+
+    private void updateHistory(int outcome) {
+        history.push(outcome);
+        for (int t = 0; t < tables; t++) {
+            final int evicted = history.get(historyLengths[t]);
+            indexFolds[t] = GlobalHistory.fold(indexFolds[t], outcome, evicted, indexOutPoints[t], indexBits);
+            tagFolds[t] = GlobalHistory.fold(tagFolds[t], outcome, evicted, tagOutPoints[t], tagBits);
+            tagFolds2[t] = GlobalHistory.fold(tagFolds2[t], outcome, evicted, tagOutPoints2[t], tagBits - 1);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "tage-" + Integer.numberOfTrailingZeros(base.size()) + "-" + tables + "x" + indexBits;
+    }
+
+}
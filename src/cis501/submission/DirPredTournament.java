@@ -1,22 +1,53 @@
 package cis501.submission;
 
+import cis501.BatchPrediction;
 import cis501.Direction;
 import cis501.IDirectionPredictor;
 
+/**
+ * Chooses between two sub-predictors with a table of 2-bit counters: a counter that predicts
+ * NotTaken selects predictorNT, and one that predicts Taken selects predictorT.
+ */
 public class DirPredTournament extends DirPredBimodal {
 
+    private final IDirectionPredictor predictorNT;
+    private final IDirectionPredictor predictorT;
+
     public DirPredTournament(int chooserIndexBits, IDirectionPredictor predictorNT, IDirectionPredictor predictorT) {
         super(chooserIndexBits); // re-use DirPredBimodal as the chooser table
+        this.predictorNT = predictorNT;
+        this.predictorT = predictorT;
     }
 
     @Override
     public Direction predict(long pc) {
-        return null;
+        return Direction.Taken == super.predict(pc) ? predictorT.predict(pc) : predictorNT.predict(pc);
     }
 
     @Override
     public void train(long pc, Direction actual) {
+        final Direction nt = predictorNT.predict(pc);
+        final Direction t = predictorT.predict(pc);
+        if (nt != t) {
+            // move the chooser towards whichever sub-predictor was right
+            super.train(pc, t == actual ? Direction.Taken : Direction.NotTaken);
+        }
+        predictorNT.train(pc, actual);
+        predictorT.train(pc, actual);
+    }
+
+    /** The sub-predictors have to be queried between branches, so this is no faster than predict() and train(). */
+    @Override
+    public void predictAndTrain(long[] pcs, long[] outcomes, long[] predictions, int n) {
+        for (int i = 0; i < n; i++) {
+            BatchPrediction.set(predictions, i, Direction.Taken == predict(pcs[i]));
+            train(pcs[i], BatchPrediction.get(outcomes, i) ? Direction.Taken : Direction.NotTaken);
+        }
+    }
 
+    @Override
+    public String toString() {
+        return "tournament-" + Integer.numberOfTrailingZeros(counters.size()) + "(" + predictorNT + ", " + predictorT + ")";
     }
 
 }
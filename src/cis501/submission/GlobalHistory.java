@@ -0,0 +1,50 @@
+package cis501.submission;
+
+/**
+ * The most recent branch outcomes, kept in a ring, for predictors that hash long global histories
+ * into their table indices. Rather than rehashing a whole history on every branch, such
+ * predictors keep each history folded down to the width of an index (see fold()), and update the
+ * folded value with just the newest outcome and the one that has aged out of the history.
+ */
+final class GlobalHistory {
+
+    private final byte[] ring;
+    private final int mask;
+    private int head = 0;
+
+    /** @param maxLength the longest history that will be read back, via get(maxLength) */
+    GlobalHistory(int maxLength) {
+        // the ring must hold the newest outcome plus a full history of the longest length
+        ring = new byte[Integer.highestOneBit(Math.max(1, maxLength)) << 1];
+        mask = ring.length - 1;
+    }
+
+    /** Record the outcome of the latest branch: 1 for Taken, 0 for NotTaken. */
+    void push(int outcome) {
+        head = (head + 1) & mask;
+        ring[head] = (byte) outcome;
+    }
+
+    /** @return the outcome of the given age, 0 being the most recently pushed */
+    int get(int age) {
+        return ring[(head - age) & mask];
+    }
+
+    /**
+     * Fold the newest outcome into a folded-history register: a history of some length, folded
+     * down to compLength bits by xor'ing together its compLength-bit chunks, so that the outcome
+     * of age k (0 being the most recent) sits at bit k % compLength.
+     *
+     * @param evicted  the outcome that just fell off the end of the history, i.e., that now has
+     *                 an age equal to the history's length
+     * @param outPoint the history's length % compLength
+     * @return the new value of the register
+     */
+    static int fold(int comp, int newest, int evicted, int outPoint, int compLength) {
+        comp = (comp << 1) | newest;
+        comp ^= evicted << outPoint;
+        comp ^= comp >>> compLength;
+        return comp & ((1 << compLength) - 1);
+    }
+
+}
@@ -66,6 +66,11 @@ public class InorderPipeline implements IInorderPipeline {
 
     }
 
+    @Override
+    public void run(InsnCursor cursor) {
+
+    }
+
     @Override
     public long getInsns() {
         return 0;
@@ -2,6 +2,7 @@ package cis501.submission;
 
 import cis501.ICache;
 import cis501.IOOOPipeline;
+import cis501.InsnCursor;
 import cis501.InsnIterator;
 
 public class OOOPipeline implements IOOOPipeline {
@@ -31,6 +32,11 @@ public class OOOPipeline implements IOOOPipeline {
 
     }
 
+    @Override
+    public void run(InsnCursor cursor) {
+
+    }
+
     @Override
     public long getInsns() {
         return 0;
@@ -0,0 +1,94 @@
+package cis501.submission;
+
+import java.util.Arrays;
+
+/**
+ * A table of 2-bit saturating counters, packed 32 to a long. Counter i lives in bits
+ * [2*(i%32), 2*(i%32)+2) of word i/32. At a quarter of the size of a byte per counter, a table
+ * with 2^20 counters takes 256KB, so big tables stay in cache much longer.
+ *
+ * <p>Counters start at 0 (strongly NotTaken). Counters at or above 2 predict Taken, so a counter's
+ * prediction is simply its high bit.
+ */
+public final class PackedCounterTable {
+
+    public static final int COUNTER_MAX = 3;
+
+    private static final int COUNTERS_PER_WORD = 32;
+
+    /**
+     * The next value of every counter, as 2-bit fields indexed by (counter << 1) | taken: 0 and 3
+     * saturate, and every other value moves one step towards the outcome. Shifting this constant
+     * replaces both the comparisons and a lookup table in memory.
+     */
+    private static final int NEXT_COUNTER = 0xED84;
+
+    private final long[] words;
+    private final int size;
+
+    /** Create a table of 2^indexBits counters, all 0 */
+    public PackedCounterTable(int indexBits) {
+        if (indexBits < 0 || indexBits > 30) {
+            throw new IllegalArgumentException("Invalid counter table size: 2^" + indexBits);
+        }
+        size = 1 << indexBits;
+        words = new long[Math.max(1, size / COUNTERS_PER_WORD)];
+    }
+
+    /** @return the number of counters in the table */
+    public int size() {
+        return size;
+    }
+
+    /** @return the value of counter i, from 0 to COUNTER_MAX */
+    public int get(int i) {
+        return (int) (words[i >>> 5] >>> ((i & 31) << 1)) & COUNTER_MAX;
+    }
+
+    /** @return true if counter i predicts Taken */
+    public boolean isTaken(int i) {
+        return 0 != (words[i >>> 5] & (2L << ((i & 31) << 1)));
+    }
+
+    /** Set counter i to the given value, which must be from 0 to COUNTER_MAX */
+    public void set(int i, int value) {
+        assert 0 <= value && value <= COUNTER_MAX;
+        final int shift = (i & 31) << 1;
+        final long w = words[i >>> 5];
+        words[i >>> 5] = w ^ ((((w >>> shift) ^ value) & COUNTER_MAX) << shift);
+    }
+
+    /**
+     * Move counter i one step towards the given outcome, saturating at 0 and COUNTER_MAX.
+     *
+     * @param taken 1 if the outcome was Taken, 0 if it was NotTaken
+     * @return the value of the counter before the update, so that its prediction (its high bit)
+     * can be read and trained in one step
+     */
+    public int update(int i, int taken) {
+        final int shift = (i & 31) << 1;
+        final long w = words[i >>> 5];
+        final int c = (int) (w >>> shift) & COUNTER_MAX;
+        final int next = (NEXT_COUNTER >>> (((c << 1) | taken) << 1)) & COUNTER_MAX;
+        words[i >>> 5] = w ^ ((long) (c ^ next) << shift);
+        return c;
+    }
+
+    /** Set every counter to the given value, which must be from 0 to COUNTER_MAX */
+    public void fill(int value) {
+        if (value < 0 || value > COUNTER_MAX) {
+            throw new IllegalArgumentException("Invalid counter value: " + value);
+        }
+        long w = value * 0x5555555555555555L; // value repeated in every 2-bit field
+        if (size < COUNTERS_PER_WORD) {
+            w &= (1L << (size << 1)) - 1;
+        }
+        Arrays.fill(words, w);
+    }
+
+    /** Set every counter back to 0 */
+    public void reset() {
+        Arrays.fill(words, 0);
+    }
+
+}
@@ -0,0 +1,115 @@
+package cis501.submission;
+
+import cis501.BranchTrace;
+import cis501.BranchType;
+import cis501.Direction;
+import cis501.IDirectionPredictor;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares the hashed perceptron against gshare (and TAGE), in both direction accuracy and
+ * throughput, over the conditional branches of a trace. The branches are read from the trace's
+ * cached branch projection (see TraceProjection). Passing -synthetic instead of a trace uses a
+ * generated stream in which one branch repeats the outcome of another from 60 branches earlier,
+ * a correlation that needs more history than gshare can use.
+ */
+public class PerceptronBenchmark {
+
+    private static final int RUNS = 5;
+    private static final int SYNTHETIC_BRANCHES = 1 << 22;
+    private static final int SYNTHETIC_DISTANCE = 60;
+
+    public static void main(String[] args) throws IOException {
+        final BranchTrace bt = args.length > 0 && "-synthetic".equals(args[0])
+                ? synthetic() : BranchPredBenchmark.branches(args, "Usage: path/to/trace-file|-synthetic [insn-limit]");
+        if (null == bt) return;
+        final long[] pcs = new long[bt.size()];
+        final boolean[] outcomes = new boolean[bt.size()];
+        int n = 0;
+        for (int i = 0; i < bt.size(); i++) {
+            if (BranchType.ConditionalDirect == bt.type(i) || BranchType.ConditionalIndirect == bt.type(i)) {
+                pcs[n] = bt.pc(i) >> 1;
+                outcomes[n] = Direction.Taken == bt.direction(i);
+                n++;
+            }
+        }
+        System.out.format("%,d conditional branches%n", n);
+
+        final BranchPredBenchmark.Factory[] factories = {
+                new BranchPredBenchmark.Factory() {
+                    @Override
+                    public IDirectionPredictor create() {
+                        return new DirPredGshare(16, 16);
+                    }
+                },
+                new BranchPredBenchmark.Factory() {
+                    @Override
+                    public IDirectionPredictor create() {
+                        return new DirPredGshare(20, 20);
+                    }
+                },
+                new BranchPredBenchmark.Factory() {
+                    @Override
+                    public IDirectionPredictor create() {
+                        return new DirPredPerceptron();
+                    }
+                },
+                new BranchPredBenchmark.Factory() {
+                    @Override
+                    public IDirectionPredictor create() {
+                        return new DirPredTAGE();
+                    }
+                },
+        };
+
+        for (BranchPredBenchmark.Factory f : factories) {
+            long mispredictions = 0;
+            long bestNanos = Long.MAX_VALUE;
+            String name = null;
+            for (int r = 0; r < RUNS; r++) {
+                final IDirectionPredictor dp = f.create();
+                name = dp.toString();
+                final long start = System.nanoTime();
+                mispredictions = mispredictions(dp, pcs, outcomes, n);
+                bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+            }
+            System.out.format("%-18s %8.4f accuracy %9.3f mispredictions/1K branches %8.1f ns/branch%n",
+                    name, 1.0 - (double) mispredictions / Math.max(1, n),
+                    1000.0 * mispredictions / Math.max(1, n), (double) bestNanos / Math.max(1, n));
+        }
+    }
+
+    private static long mispredictions(IDirectionPredictor dp, long[] pcs, boolean[] outcomes, int n) {
+        long mispredictions = 0;
+        for (int i = 0; i < n; i++) {
+            final Direction actual = outcomes[i] ? Direction.Taken : Direction.NotTaken;
+            if (dp.predict(pcs[i]) != actual) mispredictions++;
+            dp.train(pcs[i], actual);
+        }
+        BranchPredBenchmark.blackhole = mispredictions;
+        return mispredictions;
+    }
+
+    /** One random branch, a branch that repeats it SYNTHETIC_DISTANCE branches later, and fixed-pattern branches in between */
+    private static BranchTrace synthetic() {
+        BranchTrace bt = new BranchTrace(SYNTHETIC_BRANCHES);
+        Random r = new Random(25);
+        boolean random = false;
+        for (int j = 0; j < SYNTHETIC_BRANCHES; j++) {
+            final int k = j % SYNTHETIC_DISTANCE;
+            final boolean taken;
+            if (0 == k) {
+                taken = random = r.nextBoolean();
+            } else if (SYNTHETIC_DISTANCE - 1 == k) {
+                taken = random;
+            } else {
+                taken = j % 3 != 0;
+            }
+            bt.add(0x10000 + 4 * k, 4, BranchType.ConditionalDirect, taken ? Direction.Taken : Direction.NotTaken, 0x20000 + 4 * k);
+        }
+        return bt;
+    }
+
+}
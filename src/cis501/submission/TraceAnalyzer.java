@@ -1,10 +1,20 @@
 package cis501.submission;
 
+import cis501.Histogram;
 import cis501.ITraceAnalyzer;
 import cis501.Insn;
+import cis501.InsnCursor;
+import cis501.IteratorInsnCursor;
+import cis501.TraceSummary;
+import cis501.TraceSummaryTask;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
 
 public class TraceAnalyzer implements ITraceAnalyzer {
 
+    private final TraceSummary summary = new TraceSummary();
+
     @Override
     public String author() {
         return "<your name here>";
@@ -12,29 +22,59 @@ public class TraceAnalyzer implements ITraceAnalyzer {
 
     @Override
     public void run(Iterable<Insn> iiter) {
-        for (Insn insn : iiter) {
-            // TODO: your code here
-        }
+        run(new IteratorInsnCursor(iiter.iterator()));
+    }
+
+    @Override
+    public void run(InsnCursor cursor) {
+        summary.addAll(cursor);
+    }
+
+    /**
+     * Compute the same summary data as run(), but split the given trace file into ranges that are
+     * analyzed in parallel on the given pool. Only binary traces can be split; compressed text
+     * traces are analyzed sequentially.
+     *
+     * @param filename  The path to the trace file
+     * @param insnLimit Stop after processing this many insns. If -1, process the entire trace.
+     */
+    public void runParallel(String filename, int insnLimit, ForkJoinPool pool) throws IOException {
+        summary.merge(TraceSummaryTask.summarize(filename, insnLimit, pool));
     }
 
     @Override
     public double avgInsnSize() {
-        return 0.0;
+        return summary.avgInsnSize();
     }
 
     @Override
     public double insnBandwidthIncreaseWithoutThumb() {
-        return 1.0;
+        return summary.insnBandwidthIncreaseWithoutThumb();
     }
 
     @Override
     public String mostCommonInsnCategory() {
-        return null;
+        return summary.mostCommonInsnCategory();
     }
 
     @Override
     public double fractionOfDirectBranchOffsetsLteNBits(int bits) {
-        return 0;
+        return summary.fractionOfDirectBranchOffsetsLteNBits(bits);
+    }
+
+    /** @see TraceSummary#directBranchOffsetBits() */
+    public Histogram directBranchOffsetBits() {
+        return summary.directBranchOffsetBits();
+    }
+
+    /** @see TraceSummary#memStrideBits() */
+    public Histogram memStrideBits() {
+        return summary.memStrideBits();
+    }
+
+    /** @see TraceSummary#insnSizes() */
+    public Histogram insnSizes() {
+        return summary.insnSizes();
     }
 
 }
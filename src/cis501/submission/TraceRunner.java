@@ -1,13 +1,18 @@
 package cis501.submission;
 
 import cis501.ITraceAnalyzer;
-import cis501.InsnIterator;
+import cis501.TraceBatch;
+import cis501.TraceStats;
 
 import java.io.IOException;
 
 public class TraceRunner {
 
     public static void main(String[] args) throws IOException {
+        if (args.length > 0 && "-batch".equals(args[0])) {
+            runBatch(args);
+            return;
+        }
         final int insnLimit;
 
         switch (args.length) {
@@ -19,19 +24,50 @@ public class TraceRunner {
                 break;
             default:
                 System.err.println("Usage: path/to/trace-file [insn-limit]");
+                System.err.println("   or: -batch path/to/trace-dir-or-manifest [insn-limit] [-threads N] [-json]");
                 return;
         }
 
-        ITraceAnalyzer ta = new TraceAnalyzer();
-        InsnIterator uiter = new InsnIterator(args[0], insnLimit);
-        ta.run(uiter);
-        System.out.println("Avg insn size is: " + ta.avgInsnSize());
-        System.out.println("Insn bw increase sans thumb: " + ta.insnBandwidthIncreaseWithoutThumb());
-        System.out.println("Most common insn category: " + ta.mostCommonInsnCategory());
+        // results are cached alongside the trace, so repeated runs on the same trace are instant
+        TraceStats stats = TraceStats.cached(args[0], insnLimit, new TraceAnalyzer());
+        System.out.println("Avg insn size is: " + stats.avgInsnSize);
+        System.out.println("Insn bw increase sans thumb: " + stats.insnBandwidthIncreaseWithoutThumb);
+        System.out.println("Most common insn category: " + stats.mostCommonInsnCategory);
         for (int b = 1; b <= 32; b++) {
             System.out.format("Direct branch offsets encodable in %d bits: %.2f%n",
-                    b, ta.fractionOfDirectBranchOffsetsLteNBits(b));
+                    b, stats.fractionOfDirectBranchOffsetsLteNBits(b));
+        }
+    }
+
+    /** Analyze every trace in a directory or manifest, printing one row per trace. */
+    private static void runBatch(String[] args) throws IOException {
+        String path = null;
+        int insnLimit = -1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        TraceBatch.Format format = TraceBatch.Format.CSV;
+        for (int j = 1; j < args.length; j++) {
+            if ("-threads".equals(args[j]) && j + 1 < args.length) {
+                threads = Integer.parseInt(args[++j]);
+            } else if ("-json".equals(args[j])) {
+                format = TraceBatch.Format.JSON;
+            } else if (null == path) {
+                path = args[j];
+            } else {
+                insnLimit = Integer.parseInt(args[j]);
+            }
+        }
+        if (null == path) {
+            System.err.println("Usage: -batch path/to/trace-dir-or-manifest [insn-limit] [-threads N] [-json]");
+            return;
         }
+
+        TraceBatch batch = new TraceBatch(threads, insnLimit, new TraceBatch.AnalyzerFactory() {
+            @Override
+            public ITraceAnalyzer create() {
+                return new TraceAnalyzer();
+            }
+        });
+        batch.run(TraceBatch.listTraces(path), format, System.out);
     }
 
 }
@@ -0,0 +1,136 @@
+package cis501;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryTraceTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private final List<Insn> insns = new ArrayList<>();
+
+    /** Build a small trace exercising every field value the binary format encodes */
+    @Before
+    public void setUp() {
+        BranchType[] bts = {null, BranchType.ConditionalDirect, BranchType.ConditionalIndirect,
+                BranchType.UnconditionalDirect, BranchType.UnconditionalIndirect};
+        Direction[] dirs = {null, Direction.NotTaken, Direction.Taken};
+        MemoryOp[] mops = {null, MemoryOp.Load, MemoryOp.Store};
+        CondCodes[] ccs = {null, CondCodes.ReadCC, CondCodes.WriteCC, CondCodes.ReadWriteCC};
+        long pc = 0x8000;
+        for (int j = 0; j < 50; j++) {
+            int isize = (j % 3 == 0) ? 2 : 4;
+            insns.add(new Insn(pc, isize,
+                    bts[j % bts.length], dirs[j % dirs.length], (j % 7 == 0) ? 0xFFFFFFF0L : pc + 0x40,
+                    mops[j % mops.length], 0xbeef0000L + (j * 4), j % 9,
+                    ccs[j % ccs.length],
+                    (j % 17) - 1, (j % 16) - 1, 15 - (j % 17),
+                    "add r" + (j % 5) + ", r1, #4"));
+            // jump backwards and forwards across the address space
+            pc = (j % 11 == 0) ? 0xFFFF0000L - pc : pc + isize;
+        }
+    }
+
+    private String writeText() throws IOException {
+        File f = tmp.newFile("trace.gz");
+        try (Writer w = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(f)), "US-ASCII")) {
+            for (Insn i : insns) {
+                w.write(i.toTraceLine());
+            }
+        }
+        return f.getPath();
+    }
+
+    private String writeBinary(int blockInsns) throws IOException {
+        File f = tmp.newFile("trace.bin");
+        try (BinaryTraceWriter w = new BinaryTraceWriter(f.getPath(), blockInsns)) {
+            for (Insn i : new InsnIterator(writeText(), -1)) {
+                w.write(i);
+            }
+        }
+        return f.getPath();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        InsnIterator ii = new InsnIterator(writeBinary(BinaryTrace.DEFAULT_BLOCK_INSNS), -1);
+        for (Insn expected : insns) {
+            assertEquals(expected.toTraceLine(), ii.next().toTraceLine());
+        }
+        assertFalse(ii.hasNext());
+    }
+
+    @Test
+    public void testRoundTripManyBlocks() throws IOException {
+        InsnIterator ii = new InsnIterator(writeBinary(3), -1);
+        for (Insn expected : insns) {
+            assertEquals(expected.toTraceLine(), ii.next().toTraceLine());
+        }
+        assertFalse(ii.hasNext());
+    }
+
+    @Test
+    public void testLimit() throws IOException {
+        InsnIterator ii = new InsnIterator(writeBinary(4), 10);
+        int n = 0;
+        for (Insn i : ii) {
+            n++;
+        }
+        assertEquals(10, n);
+    }
+
+    @Test
+    public void testCursor() throws IOException {
+        InsnCursor c = TraceSource.openCursor(writeBinary(4), -1);
+        for (Insn expected : insns) {
+            assertTrue(c.advance());
+            assertEquals(expected.pc, c.pc());
+            assertEquals(expected.dstReg, c.dstReg());
+            assertEquals(expected.branchDirection, c.branchDirection());
+            assertEquals(expected.memAddress, c.memAddress());
+            assertEquals(expected.toTraceLine(), c.toInsn().toTraceLine());
+        }
+        assertFalse(c.advance());
+    }
+
+    @Test
+    public void testCursorLimit() throws IOException {
+        InsnCursor c = TraceSource.openCursor(writeBinary(4), 7);
+        int n = 0;
+        while (c.advance()) {
+            n++;
+        }
+        assertEquals(7, n);
+    }
+
+    @Test
+    public void testSkip() throws IOException {
+        BinaryTraceSource src = new BinaryTraceSource(writeBinary(4));
+        assertEquals(insns.size(), src.getInsnCount());
+        src.skip(6); // into the middle of the second block
+        assertEquals(insns.get(6).toTraceLine(), src.read().toTraceLine());
+        src.skip(13);
+        assertEquals(insns.get(20).toTraceLine(), src.read().toTraceLine());
+        src.skip(1000);
+        assertNull(src.read());
+        src.close();
+    }
+
+}
@@ -0,0 +1,120 @@
+package cis501;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkedTraceTest {
+
+    private static final int INSNS = 1000;
+    private static final int CHUNK_INSNS = 64;
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private final List<Insn> insns = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        long pc = 0x10000;
+        for (int j = 0; j < INSNS; j++) {
+            boolean load = j % 3 == 0;
+            insns.add(new Insn(pc, 4,
+                    null, null, 0,
+                    load ? MemoryOp.Load : null, load ? 0x20000L + (j * 8) : 0, load ? 4 : 0,
+                    null,
+                    j % 8, (j + 1) % 8, -1,
+                    "insn " + (j % 10)));
+            pc += (j % 50 == 49) ? -196 : 4; // a loop of 50 insns
+        }
+    }
+
+    private String writeChunked() throws IOException {
+        File f = tmp.newFile("trace.c5ct");
+        try (BinaryTraceWriter w = new BinaryTraceWriter(f.getPath(), CHUNK_INSNS, true)) {
+            for (Insn i : insns) {
+                w.write(i);
+            }
+        }
+        return f.getPath();
+    }
+
+    @Test
+    public void testOpenDetectsChunkedFormat() throws IOException {
+        try (TraceSource src = TraceSource.open(writeChunked())) {
+            assertTrue(src instanceof ChunkedTraceSource);
+            assertEquals(INSNS, ((ChunkedTraceSource) src).getInsnCount());
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        InsnIterator ii = new InsnIterator(writeChunked(), -1);
+        for (Insn expected : insns) {
+            assertEquals(expected.toTraceLine(), ii.next().toTraceLine());
+        }
+        assertFalse(ii.hasNext());
+    }
+
+    @Test
+    public void testCompresses() throws IOException {
+        File plain = tmp.newFile("trace.bin");
+        try (BinaryTraceWriter w = new BinaryTraceWriter(plain.getPath(), CHUNK_INSNS, false)) {
+            for (Insn i : insns) {
+                w.write(i);
+            }
+        }
+        assertTrue(new File(writeChunked()).length() < plain.length());
+    }
+
+    @Test
+    public void testSlices() throws IOException {
+        final String path = writeChunked();
+        // slices starting at, inside and just before block boundaries, and running off the end
+        final long[] starts = {0, 1, CHUNK_INSNS - 1, CHUNK_INSNS, 3 * CHUNK_INSNS + 17, INSNS - 5};
+        for (long start : starts) {
+            final int length = 100;
+            InsnIterator ii = new InsnIterator(path, start, length);
+            final int expectedLen = (int) Math.min(length, INSNS - start);
+            for (int j = 0; j < expectedLen; j++) {
+                assertEquals("start " + start, insns.get((int) start + j).toTraceLine(), ii.next().toTraceLine());
+            }
+            assertFalse(ii.hasNext());
+        }
+    }
+
+    @Test
+    public void testCursorSlice() throws IOException {
+        InsnCursor c = TraceSource.openCursor(writeChunked(), 500, 10);
+        for (int j = 500; j < 510; j++) {
+            assertTrue(c.advance());
+            assertEquals(insns.get(j).pc, c.pc());
+            assertEquals(insns.get(j).memAddress, c.memAddress());
+            assertEquals(insns.get(j).asm, c.asm());
+        }
+        assertFalse(c.advance());
+    }
+
+    @Test
+    public void testRandomAccessOrder() throws IOException {
+        // reading blocks out of order must not depend on previously inflated state
+        final String path = writeChunked();
+        final long[] starts = {900, 10, 640, 639, 0};
+        for (long start : starts) {
+            InsnCursor c = TraceSource.openCursor(path, start, 1);
+            assertTrue(c.advance());
+            assertEquals(insns.get((int) start).toTraceLine(), c.toInsn().toTraceLine());
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package cis501;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HistogramTest {
+
+    @Test
+    public void testSignedBits() {
+        assertEquals(1, Histogram.signedBits(0));
+        assertEquals(1, Histogram.signedBits(-1));
+        assertEquals(2, Histogram.signedBits(1));
+        assertEquals(2, Histogram.signedBits(-2));
+        assertEquals(3, Histogram.signedBits(2));
+        assertEquals(8, Histogram.signedBits(127));
+        assertEquals(8, Histogram.signedBits(-128));
+        assertEquals(9, Histogram.signedBits(128));
+        assertEquals(32, Histogram.signedBits(Integer.MIN_VALUE));
+        assertEquals(33, Histogram.signedBits(0xFFFFFFFFL));
+        assertEquals(64, Histogram.signedBits(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void testPrefixSums() {
+        Histogram h = new Histogram(5);
+        assertEquals(0.0, h.fractionLte(4), 0);
+        h.add(1);
+        h.add(3, 2);
+        h.add(9); // clamped into the last bucket
+        assertEquals(4, h.total());
+        assertEquals(0, h.countLte(0));
+        assertEquals(1, h.countLte(2));
+        assertEquals(0.75, h.fractionLte(3), 0);
+        assertEquals(1, h.count(4));
+        // adding after a query invalidates the prefix sums
+        h.add(0);
+        assertEquals(2, h.countLte(1));
+        assertEquals((1 + 6 + 4) / 5.0, h.mean(), 1e-12);
+    }
+
+    @Test
+    public void testMerge() {
+        Histogram a = new Histogram(3);
+        Histogram b = new Histogram(3);
+        a.add(0);
+        b.add(2, 3);
+        a.merge(b);
+        assertEquals(4, a.total());
+        assertEquals(0.25, a.fractionLte(1), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMergeMismatched() {
+        new Histogram(3).merge(new Histogram(4));
+    }
+
+}
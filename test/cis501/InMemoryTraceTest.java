@@ -0,0 +1,70 @@
+package cis501;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+public class InMemoryTraceTest {
+
+    @Rule
+    public final Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Used to take time quadratic in the list size, as every next() removed the list's head. */
+    @Test
+    public void testLargeArrayList() {
+        final int n = 500000;
+        List<Insn> l = TestUtils.makeInsns(n);
+        int count = 0;
+        for (Insn i : new InsnIterator(l)) {
+            assertSame(l.get(count), i);
+            count++;
+        }
+        assertEquals(n, count);
+        assertEquals(n, l.size()); // caller's list is untouched
+    }
+
+    @Test
+    public void testReplay() {
+        InMemoryTrace t = new InMemoryTrace(TestUtils.makeInsns(100));
+        for (int pass = 0; pass < 3; pass++) {
+            int count = 0;
+            for (Insn i : t) {
+                assertSame(t.get(count), i);
+                count++;
+            }
+            assertEquals(100, count);
+        }
+    }
+
+    @Test
+    public void testRange() {
+        InMemoryTrace t = new InMemoryTrace(TestUtils.makeInsns(100));
+        InsnIterator ii = t.iterator(90, 20);
+        for (int j = 90; j < 100; j++) {
+            assertSame(t.get(j), ii.next());
+        }
+        assertFalse(ii.hasNext());
+    }
+
+    @Test
+    public void testCursorRewind() {
+        InMemoryTrace t = new InMemoryTrace(TestUtils.makeInsns(10));
+        ArrayTraceSource c = t.cursor();
+        long sum = 0;
+        while (c.advance()) {
+            sum += c.pc();
+        }
+        c.rewind();
+        while (c.advance()) {
+            sum -= c.pc();
+        }
+        assertEquals(0, sum);
+    }
+
+}
@@ -0,0 +1,121 @@
+package cis501;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class InsnIteratorTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testPutBackLifo() {
+        List<Insn> l = TestUtils.makeInsns(3);
+        InsnIterator ii = new InsnIterator(l);
+        Insn a = ii.next();
+        Insn b = ii.next();
+        ii.putBack(b);
+        ii.putBack(a);
+        assertSame(a, ii.next());
+        assertSame(b, ii.next());
+        assertSame(l.get(2), ii.next());
+        assertFalse(ii.hasNext());
+    }
+
+    @Test
+    public void testPutBackAtEnd() {
+        InsnIterator ii = new InsnIterator(TestUtils.makeInsns(1));
+        Insn a = ii.next();
+        assertFalse(ii.hasNext());
+        ii.putBack(a);
+        assertTrue(ii.hasNext());
+        assertSame(a, ii.next());
+        assertFalse(ii.hasNext());
+    }
+
+    @Test
+    public void testPeek() {
+        List<Insn> l = TestUtils.makeInsns(5);
+        InsnIterator ii = new InsnIterator(l);
+        assertSame(l.get(3), ii.peek(3));
+        assertSame(l.get(0), ii.peek(0));
+        assertNull(ii.peek(5));
+        assertSame(l.get(0), ii.next());
+        assertSame(l.get(4), ii.peek(3));
+        ii.putBack(l.get(0));
+        assertSame(l.get(0), ii.peek(0));
+        assertSame(l.get(1), ii.peek(1));
+        int n = 0;
+        while (ii.hasNext()) {
+            assertSame(l.get(n++), ii.next());
+        }
+        assertEquals(5, n);
+    }
+
+    @Test
+    public void testPeekRespectsLimit() {
+        InMemoryTrace t = new InMemoryTrace(TestUtils.makeInsns(10));
+        InsnIterator ii = new InsnIterator(t.cursor(), 4);
+        assertSame(t.get(3), ii.peek(3));
+        assertNull(ii.peek(4));
+        for (int j = 0; j < 4; j++) {
+            assertSame(t.get(j), ii.next());
+        }
+        assertFalse(ii.hasNext());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOverflow() {
+        InsnIterator ii = new InsnIterator(TestUtils.makeInsns(1));
+        Insn a = ii.next();
+        for (int j = 0; j <= InsnIterator.LOOKAHEAD_CAPACITY; j++) {
+            ii.putBack(a);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testInterrupted() {
+        InsnIterator ii = new InsnIterator(TestUtils.makeInsns(1));
+        Insn a = ii.next();
+        Thread.currentThread().interrupt();
+        // interruption is noticed within a bounded number of calls
+        for (int j = 0; j < 10000; j++) {
+            ii.putBack(a);
+            ii.next();
+        }
+    }
+
+    /** A trace that can't be read up to the start insn must not silently start somewhere else */
+    @Test(expected = IllegalArgumentException.class)
+    public void testStartPastTruncatedTrace() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer w = new OutputStreamWriter(new GZIPOutputStream(bytes), "US-ASCII")) {
+            for (Insn i : TestUtils.randomInsns(10000, 7)) {
+                w.write(i.toTraceLine());
+            }
+        }
+        File f = tmp.newFile("truncated.gz");
+        try (FileOutputStream out = new FileOutputStream(f)) {
+            out.write(Arrays.copyOf(bytes.toByteArray(), bytes.size() / 2));
+        }
+        new InsnIterator(f.getPath(), 9000, 10);
+    }
+
+}
@@ -0,0 +1,134 @@
+package cis501;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PackedTraceTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private static void assertSameInsn(Insn expected, Insn actual) {
+        assertEquals(expected.toTraceLine(), actual.toTraceLine());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        List<Insn> insns = TestUtils.randomInsns(5000, 17);
+        PackedTrace t = new PackedTrace(3); // forces the columns to grow
+        for (Insn i : insns) {
+            t.add(i);
+        }
+        assertEquals(insns.size(), t.size());
+        for (int j = 0; j < insns.size(); j++) {
+            assertSameInsn(insns.get(j), t.get(j));
+        }
+
+        int j = 0;
+        for (Insn i : t) {
+            assertSameInsn(insns.get(j++), i);
+        }
+        assertEquals(insns.size(), j);
+    }
+
+    /** Unlike the binary trace format, a PackedTrace holds addresses wider than 32 bits */
+    @Test
+    public void testWideAddress() {
+        Insn wide = new Insn(3, 1, -1, 0x10000, 4, null, 0, null, MemoryOp.Load, 0x123456789aL, 8, "ldr r3, [r1]");
+        PackedTrace t = new PackedTrace();
+        t.add(wide);
+        assertSameInsn(wide, t.get(0));
+    }
+
+    @Test
+    public void testCursor() {
+        List<Insn> insns = TestUtils.randomInsns(1000, 17);
+        PackedTrace t = new PackedTrace();
+        for (Insn i : insns) {
+            t.add(i);
+        }
+        PackedTrace.Cursor c = t.cursor(100, 50);
+        for (int pass = 0; pass < 2; pass++) {
+            for (int j = 100; j < 150; j++) {
+                assertTrue(c.advance());
+                Insn i = insns.get(j);
+                assertEquals(j, c.index());
+                assertEquals(i.pc, c.pc());
+                assertEquals(i.insnSizeBytes, c.insnSizeBytes());
+                assertEquals(i.dstReg, c.dstReg());
+                assertEquals(i.srcReg1, c.srcReg1());
+                assertEquals(i.srcReg2, c.srcReg2());
+                assertEquals(i.branchType, c.branchType());
+                assertEquals(i.branchDirection, c.branchDirection());
+                assertEquals(i.branchTarget, c.branchTarget());
+                assertEquals(i.condCode, c.condCode());
+                assertEquals(i.mem, c.mem());
+                assertEquals(i.memAddress, c.memAddress());
+                assertEquals(i.memAccessBytes, c.memAccessBytes());
+                assertEquals(i.asm, c.asm());
+            }
+            assertFalse(c.advance());
+            assertNull(c.read());
+            c.rewind();
+        }
+    }
+
+    @Test
+    public void testLoad() throws IOException {
+        List<Insn> insns = TestUtils.randomInsns(3000, 17);
+        String path = tmp.newFile("trace.bin").getPath();
+        try (BinaryTraceWriter w = new BinaryTraceWriter(path)) {
+            for (Insn i : insns) {
+                w.write(new Insn(i.pc, i.insnSizeBytes, i.branchType, i.branchDirection, i.branchTarget,
+                        i.mem, i.memAddress & BinaryTrace.ADDRESS_MASK, i.memAccessBytes,
+                        i.condCode, i.dstReg, i.srcReg1, i.srcReg2, i.asm));
+            }
+        }
+        PackedTrace t = PackedTrace.load(path, 2000);
+        assertEquals(2000, t.size());
+        InsnIterator ii = new InsnIterator(path, 2000);
+        for (int j = 0; j < t.size(); j++) {
+            assertSameInsn(ii.next(), t.get(j));
+        }
+    }
+
+    /** A limit far beyond the end of the trace must not allocate space for the limit up front */
+    @Test
+    public void testLoadLimitLargerThanTrace() throws IOException {
+        List<Insn> insns = TestUtils.randomInsns(3000, 17);
+        String bin = tmp.newFile("trace.bin").getPath();
+        try (BinaryTraceWriter w = new BinaryTraceWriter(bin)) {
+            for (Insn i : insns) {
+                w.write(i);
+            }
+        }
+        File text = tmp.newFile("trace.gz");
+        try (Writer w = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(text)), "US-ASCII")) {
+            for (Insn i : insns) {
+                w.write(i.toTraceLine());
+            }
+        }
+        assertEquals(insns.size(), PackedTrace.load(bin, Integer.MAX_VALUE).size());
+        assertEquals(insns.size(), PackedTrace.load(text.getPath(), Integer.MAX_VALUE).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMemAccessTooLarge() {
+        PackedTrace.packInfo(-1, -1, -1, 4, null, null, MemoryOp.Load, null, 1 << 16);
+    }
+
+}
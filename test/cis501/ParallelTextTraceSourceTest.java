@@ -0,0 +1,107 @@
+package cis501;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.Timeout;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class ParallelTextTraceSourceTest {
+
+    private static final int INSNS = 1000;
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Rule
+    public final Timeout timeout = Timeout.seconds(10);
+
+    private final List<Insn> insns = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        long pc = 0x4000;
+        for (int j = 0; j < INSNS; j++) {
+            boolean branch = j % 5 == 4;
+            insns.add(new Insn(pc, 4,
+                    branch ? BranchType.ConditionalDirect : null,
+                    branch ? ((j % 2 == 0) ? Direction.Taken : Direction.NotTaken) : null,
+                    branch ? 0x4000 : 0,
+                    null, 0, 0,
+                    branch ? CondCodes.ReadCC : null,
+                    -1, j % 13, -1,
+                    "insn " + j));
+            pc += 4;
+        }
+    }
+
+    private String writeMembers(int memberInsns) throws IOException {
+        File f = tmp.newFile();
+        try (MultiMemberTraceWriter w = new MultiMemberTraceWriter(f.getPath(), memberInsns)) {
+            for (Insn i : insns) {
+                w.write(i);
+            }
+        }
+        return f.getPath();
+    }
+
+    private void assertReadsAll(TraceSource src) throws IOException {
+        for (Insn expected : insns) {
+            assertEquals(expected.toTraceLine(), src.read().toTraceLine());
+        }
+        assertNull(src.read());
+        src.close();
+    }
+
+    @Test
+    public void testInOrder() throws IOException {
+        // many more members than threads or window slots, with a short final member
+        ParallelTextTraceSource src = new ParallelTextTraceSource(writeMembers(7), new ForkJoinPool(4), 3);
+        assertEquals((INSNS + 6) / 7, src.getMembers());
+        assertReadsAll(src);
+    }
+
+    @Test
+    public void testDefaultPool() throws IOException {
+        assertReadsAll(new ParallelTextTraceSource(writeMembers(100)));
+    }
+
+    @Test
+    public void testReadableAsSingleStream() throws IOException {
+        // a multi-member trace is still a valid gzip file for the ordinary reader
+        assertReadsAll(TraceSource.open(writeMembers(64)));
+    }
+
+    @Test
+    public void testLimit() throws IOException {
+        InsnIterator ii = new InsnIterator(new ParallelTextTraceSource(writeMembers(50)), 120);
+        for (int j = 0; j < 120; j++) {
+            assertEquals(insns.get(j).toTraceLine(), ii.next().toTraceLine());
+        }
+        assertFalse(ii.hasNext());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsPlainGzip() throws IOException {
+        File f = tmp.newFile();
+        try (Writer w = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(f)), "US-ASCII")) {
+            w.write(insns.get(0).toTraceLine());
+        }
+        new ParallelTextTraceSource(f.getPath());
+    }
+
+}
@@ -0,0 +1,99 @@
+package cis501;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PipelinedTraceSourceTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private static final int INSNS = 10000;
+
+    private static Insn makeInsn(int j) {
+        return new Insn(j % 16, (j + 1) % 16, -1, 0x1000 + (4 * j), 4, null, 0, null, null, 0, 0, "insn " + j);
+    }
+
+    private String writeTrace() throws IOException {
+        File f = tmp.newFile("trace.gz");
+        try (Writer w = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(f)), "US-ASCII")) {
+            for (int j = 0; j < INSNS; j++) {
+                w.write(makeInsn(j).toTraceLine());
+            }
+        }
+        return f.getPath();
+    }
+
+    @Test
+    public void testInOrder() throws IOException {
+        // small batches and ring, so both sides stall on each other
+        PipelinedTraceSource src = new PipelinedTraceSource(new TextTraceSource(writeTrace()), 64, 2);
+        for (int j = 0; j < INSNS; j++) {
+            Insn i = src.read();
+            assertEquals(makeInsn(j).toTraceLine(), i.toTraceLine());
+        }
+        assertNull(src.read());
+        assertNull(src.read());
+        src.close();
+    }
+
+    @Test
+    public void testPartialLastBatch() throws IOException {
+        PipelinedTraceSource src = new PipelinedTraceSource(new TextTraceSource(writeTrace()), 3000, 4);
+        int n = 0;
+        while (null != src.read()) {
+            n++;
+        }
+        assertEquals(INSNS, n);
+        assertTrue(src.getConsumerStallNanos() >= 0);
+    }
+
+    @Test
+    public void testLimit() throws IOException {
+        InsnIterator ii = new InsnIterator(new PipelinedTraceSource(TraceSource.open(writeTrace()), 16, 2), 100);
+        for (int j = 0; j < 100; j++) {
+            assertEquals(0x1000 + (4 * j), ii.next().pc);
+        }
+        assertFalse(ii.hasNext());
+    }
+
+    /** A RuntimeException on the producer thread must reach the consumer, not look like the end of the trace */
+    @Test
+    public void testProducerRuntimeException() throws IOException {
+        TraceSource failing = new TraceSource() {
+            private int j = 0;
+
+            @Override
+            public Insn read() {
+                if (100 == j) throw new IllegalArgumentException("malformed insn " + j);
+                return makeInsn(j++);
+            }
+        };
+        PipelinedTraceSource src = new PipelinedTraceSource(failing, 16, 2);
+        for (int j = 0; j < 100; j++) {
+            assertEquals(0x1000 + (4 * j), src.read().pc);
+        }
+        try {
+            src.read();
+            fail("expected the producer's exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("malformed insn 100", e.getMessage());
+        }
+        src.close();
+    }
+
+}
@@ -0,0 +1,108 @@
+package cis501;
+
+import cis501.submission.BranchTargetBuffer;
+import cis501.submission.DirPredBimodal;
+import cis501.submission.DirPredGshare;
+import cis501.submission.DirPredTournament;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/** Checks that a sweep gives every predictor the same result as running it alone, one branch at a time. */
+public class PredictorSweepTest {
+
+    /** Enough insns for the branches to span several chunks */
+    private static final int N = 300000;
+
+    private static Insn[] randomInsns() {
+        Random r = new Random(22);
+        Insn[] insns = new Insn[N];
+        boolean prev = false;
+        for (int j = 0; j < N; j++) {
+            final int b = r.nextInt(100);
+            final boolean br = b < 40;
+            final boolean taken = b % 3 == 0 ? prev : r.nextInt(10) < b % 10;
+            insns[j] = new Insn(0x1000 + 2 * b, 2 + 2 * (b & 1),
+                    br ? (b % 7 == 0 ? BranchType.UnconditionalDirect : BranchType.ConditionalDirect) : null,
+                    br ? (taken ? Direction.Taken : Direction.NotTaken) : null,
+                    br ? 0x8000 + 4 * b : 0,
+                    null, 0, 0, null, -1, -1, -1, "op");
+            if (br) prev = taken;
+        }
+        return insns;
+    }
+
+    private static long mispredictions(BranchPredictor bp, Insn[] insns) {
+        long mispredictions = 0;
+        for (Insn i : insns) {
+            if (null == i.branchType) continue;
+            final long next = Direction.Taken == i.branchDirection ? i.branchTarget : i.fallthroughPC();
+            if (bp.predict(i.pc, i.fallthroughPC()) != next) mispredictions++;
+            bp.train(i.pc, next, i.branchDirection);
+        }
+        return mispredictions;
+    }
+
+    private static BranchPredictor create(int config) {
+        switch (config % 3) {
+            case 0:
+                return new BranchPredictor(new DirPredBimodal(4 + config), new BranchTargetBuffer(6));
+            case 1:
+                return new BranchPredictor(new DirPredGshare(4 + config, config), new BranchTargetBuffer(6));
+            default:
+                return new BranchPredictor(new DirPredTournament(4 + config,
+                        new DirPredBimodal(4 + config), new DirPredGshare(4 + config, config)), new BranchTargetBuffer(6));
+        }
+    }
+
+    private static void testSweep(int threads, int configs) {
+        final Insn[] insns = randomInsns();
+        long branches = 0;
+        for (Insn i : insns) {
+            if (null != i.branchType) branches++;
+        }
+
+        PredictorSweep sweep = new PredictorSweep(threads);
+        for (int c = 0; c < configs; c++) {
+            sweep.add("config-" + c, create(c));
+        }
+        List<PredictorSweep.Result> results = sweep.run(new ArrayTraceSource(insns));
+
+        assertEquals(configs, results.size());
+        for (int c = 0; c < configs; c++) {
+            final PredictorSweep.Result r = results.get(c);
+            assertEquals("config-" + c, r.name);
+            assertEquals(N, r.insns);
+            assertEquals(branches, r.branches);
+            assertEquals(r.name, mispredictions(create(c), insns), r.mispredictions);
+            assertEquals(1000.0 * r.mispredictions / N, r.mpki(), 1e-9);
+        }
+    }
+
+    @Test
+    public void testSingleThread() {
+        testSweep(1, 6);
+    }
+
+    @Test
+    public void testMoreConfigsThanThreads() {
+        testSweep(4, 9);
+    }
+
+    @Test
+    public void testMoreThreadsThanConfigs() {
+        testSweep(8, 3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSharedPredictor() {
+        PredictorSweep sweep = new PredictorSweep(2);
+        BranchPredictor bp = create(0);
+        sweep.add("a", bp);
+        sweep.add("b", new BranchPredictor(bp.dp, new BranchTargetBuffer(6)));
+    }
+
+}
@@ -0,0 +1,110 @@
+package cis501;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SimPointTest {
+
+    private static final int INTERVAL = 100;
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    /** Append iterations of a loop of n insns starting at the given PC */
+    private static void loop(List<Insn> insns, long pc, int n, int iterations) {
+        for (int it = 0; it < iterations; it++) {
+            for (int j = 0; j < n - 1; j++) {
+                insns.add(new Insn(1, 2, 3, pc + 4 * j, 4, null, 0, null, null, 0, 0, "add"));
+            }
+            insns.add(new Insn(-1, -1, -1, pc + 4 * (n - 1), 4, Direction.Taken, pc, null, null, 0, 0, "b"));
+        }
+    }
+
+    /** Three phases, executing different loops, of 2000, 1000 and 1000 insns */
+    private static Insn[] phasedTrace() {
+        List<Insn> insns = new ArrayList<>();
+        loop(insns, 0x1000, 10, 100);
+        loop(insns, 0x8000, 25, 40);
+        loop(insns, 0x1000, 10, 100);
+        loop(insns, 0x20000, 50, 20);
+        return insns.toArray(new Insn[insns.size()]);
+    }
+
+    /** The phase an insn belongs to, as a stand-in for its CPI */
+    private static double phaseCPI(long pc) {
+        if (pc >= 0x20000) return 3.0;
+        if (pc >= 0x8000) return 2.0;
+        return 1.0;
+    }
+
+    @Test
+    public void testFindsPhases() {
+        SimPoint sp = new SimPoint();
+        List<SimPoint.Point> points = sp.choose(new ArrayTraceSource(phasedTrace()), INTERVAL);
+        assertEquals(3, sp.getChosenK());
+        assertEquals(3, points.size());
+
+        double total = 0;
+        double[] phaseWeight = new double[4];
+        for (SimPoint.Point p : points) {
+            assertEquals(INTERVAL, p.insns);
+            assertEquals(p.interval * INTERVAL, p.startInsn);
+            phaseWeight[(int) phaseCPI(phasedTrace()[(int) p.startInsn].pc)] += p.weight;
+            total += p.weight;
+        }
+        assertEquals(1.0, total, 1e-12);
+        assertEquals(0.5, phaseWeight[1], 1e-12);
+        assertEquals(0.25, phaseWeight[2], 1e-12);
+        assertEquals(0.25, phaseWeight[3], 1e-12);
+    }
+
+    @Test
+    public void testSinglePhase() {
+        List<Insn> insns = new ArrayList<>();
+        loop(insns, 0x1000, 10, 100);
+        SimPoint sp = new SimPoint();
+        List<SimPoint.Point> points = sp.choose(new ArrayTraceSource(insns.toArray(new Insn[insns.size()])), INTERVAL);
+        assertEquals(1, points.size());
+        assertEquals(1.0, points.get(0).weight, 1e-12);
+    }
+
+    @Test
+    public void testEstimateCPI() throws IOException {
+        final Insn[] trace = phasedTrace();
+        String path = tmp.newFile("trace.bin").getPath();
+        try (BinaryTraceWriter w = new BinaryTraceWriter(path)) {
+            for (Insn i : trace) {
+                w.write(i);
+            }
+        }
+        List<SimPoint.Point> points = new SimPoint().choose(path, INTERVAL, -1);
+        assertTrue(points.size() < trace.length / INTERVAL);
+        double cpi = SimPoint.estimateCPI(path, points, new SimPoint.IntervalSimulator() {
+            @Override
+            public double cpi(InsnCursor interval) {
+                double cycles = 0;
+                int n = 0;
+                while (interval.advance()) {
+                    cycles += phaseCPI(interval.pc());
+                    n++;
+                }
+                assertEquals(INTERVAL, n);
+                return cycles / n;
+            }
+        });
+        double actual = 0;
+        for (Insn i : trace) {
+            actual += phaseCPI(i.pc);
+        }
+        assertEquals(actual / trace.length, cpi, 1e-9);
+    }
+
+}
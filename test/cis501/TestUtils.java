@@ -1,8 +1,8 @@
 package cis501;
 
-import cis501.Insn;
-
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 /** Grab-bag class of utility functions used in various tests. */
 public class TestUtils {
@@ -17,4 +17,44 @@ public class TestUtils {
         return s;
     }
 
+    /** @return n simple ALU insns, with consecutive PCs 4 bytes apart starting from 0 */
+    public static List<Insn> makeInsns(int n) {
+        List<Insn> l = new ArrayList<>();
+        for (int j = 0; j < n; j++) {
+            l.add(new Insn(1, 2, 3, 4L * j, 4, null, 0, null, null, 0, 0, "<op>"));
+        }
+        return l;
+    }
+
+    /**
+     * @return n insns with consecutive PCs and random values in every other field, generated from
+     * the given seed. Addresses fit in 32 bits, as the binary trace format requires.
+     */
+    public static List<Insn> randomInsns(int n, long seed) {
+        Random r = new Random(seed);
+        BranchType[] bts = BranchType.values();
+        Direction[] dirs = Direction.values();
+        MemoryOp[] mops = MemoryOp.values();
+        CondCodes[] ccs = CondCodes.values();
+        List<Insn> insns = new ArrayList<>();
+        long pc = 0x10000;
+        for (int j = 0; j < n; j++) {
+            boolean br = r.nextInt(4) == 0;
+            boolean mem = !br && r.nextInt(3) == 0;
+            int isize = r.nextBoolean() ? 2 : 4;
+            insns.add(new Insn(pc, isize,
+                    br ? bts[r.nextInt(bts.length)] : null,
+                    br ? dirs[r.nextInt(dirs.length)] : null,
+                    br ? r.nextInt() & 0xFFFFFFFFL : 0,
+                    mem ? mops[r.nextInt(mops.length)] : null,
+                    mem ? r.nextInt() & 0xFFFFFFFFL : 0,
+                    mem ? r.nextInt(65) : 0,
+                    r.nextBoolean() ? ccs[r.nextInt(ccs.length)] : null,
+                    r.nextInt(17) - 1, r.nextInt(17) - 1, r.nextInt(17) - 1,
+                    "op" + r.nextInt(1000) + " r1, [r2, #" + r.nextInt(64) + "]"));
+            pc += isize;
+        }
+        return insns;
+    }
+
 }
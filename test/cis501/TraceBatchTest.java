@@ -0,0 +1,106 @@
+package cis501;
+
+import cis501.submission.TraceAnalyzer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TraceBatchTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private static final TraceBatch.AnalyzerFactory FACTORY = new TraceBatch.AnalyzerFactory() {
+        @Override
+        public ITraceAnalyzer create() {
+            return new TraceAnalyzer();
+        }
+    };
+
+    /** Write a trace of n insns of the given size */
+    private File writeTrace(File dir, String name, int n, int isize) throws IOException {
+        File f = new File(dir, name);
+        try (Writer w = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(f)), "US-ASCII")) {
+            for (int j = 0; j < n; j++) {
+                w.write(new Insn(1, 2, -1, 0x1000 + isize * j, isize, null, 0, null, MemoryOp.Load, 0x2000, 4, "ldr").toTraceLine());
+            }
+        }
+        return f;
+    }
+
+    private String[] runBatch(List<String> traces, TraceBatch.Format format) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new TraceBatch(2, -1, FACTORY).run(traces, format, new PrintStream(bytes, true));
+        return bytes.toString().split("\n");
+    }
+
+    @Test
+    public void testListDirectory() throws IOException {
+        File dir = tmp.newFolder("traces");
+        writeTrace(dir, "b.gz", 3, 4);
+        writeTrace(dir, "a.gz", 3, 2);
+        assertTrue(new File(dir, "a.gz" + TraceStats.SIDECAR_SUFFIX).createNewFile());
+        assertTrue(new File(dir, "a.gz" + TraceStats.SIDECAR_SUFFIX + ".tmp").createNewFile());
+        assertTrue(new File(dir, "a.gz" + TraceProjection.SIDECAR_SUFFIX).createNewFile());
+        assertTrue(new File(dir, "b.gz" + TraceProjection.SIDECAR_SUFFIX + ".1000").createNewFile());
+        assertTrue(new File(dir, "b.gz" + TraceProjection.SIDECAR_SUFFIX + ".1000.tmp").createNewFile());
+        List<String> traces = TraceBatch.listTraces(dir.getPath());
+        assertEquals(Arrays.asList(new File(dir, "a.gz").getPath(), new File(dir, "b.gz").getPath()), traces);
+    }
+
+    @Test
+    public void testListManifest() throws IOException {
+        File dir = tmp.newFolder("traces");
+        File manifest = new File(dir, "suite.txt");
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(manifest), "UTF-8")) {
+            w.write("# a comment\n\nrel.gz\n  /abs/trace.gz  \n");
+        }
+        List<String> traces = TraceBatch.listTraces(manifest.getPath());
+        assertEquals(Arrays.asList(new File(dir.getAbsoluteFile(), "rel.gz").getPath(), "/abs/trace.gz"), traces);
+    }
+
+    @Test
+    public void testCsvRowsInOrder() throws IOException {
+        File dir = tmp.newFolder("traces");
+        List<String> traces = Arrays.asList(
+                writeTrace(dir, "t1.gz", 10, 4).getPath(),
+                new File(dir, "missing.gz").getPath(),
+                writeTrace(dir, "t2,odd.gz", 5, 2).getPath());
+        String[] rows = runBatch(traces, TraceBatch.Format.CSV);
+        assertEquals(4, rows.length);
+        assertEquals(TraceBatch.csvHeader(), rows[0]);
+        final int columns = rows[0].split(",").length;
+        assertTrue(rows[1].startsWith(traces.get(0) + ",4.0,1.0,load,"));
+        assertEquals(columns, rows[1].split(",", -1).length);
+        assertTrue(rows[2].startsWith(traces.get(1) + ",,,"));
+        assertTrue(rows[2].contains("FileNotFoundException"));
+        assertTrue(rows[3].startsWith("\"" + traces.get(2) + "\",2.0,2.0,load,"));
+    }
+
+    @Test
+    public void testJsonRows() throws IOException {
+        File dir = tmp.newFolder("traces");
+        List<String> traces = Arrays.asList(writeTrace(dir, "t\"1.gz", 4, 2).getPath());
+        String[] rows = runBatch(traces, TraceBatch.Format.JSON);
+        assertEquals(1, rows.length);
+        assertTrue(rows[0], rows[0].startsWith("{\"trace\":\"" + traces.get(0).replace("\"", "\\\"") + "\","));
+        assertTrue(rows[0], rows[0].contains("\"avgInsnSize\":2.0,"));
+        assertTrue(rows[0], rows[0].contains("\"mostCommonInsnCategory\":\"load\""));
+        assertTrue(rows[0], rows[0].endsWith("]}"));
+    }
+
+}
@@ -0,0 +1,247 @@
+package cis501;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Checks that TraceLineParser and TextTraceSource agree with the Insn(String) ctor. */
+public class TraceLineParserTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private static final String[] SAMPLE_LINES = {
+            "00010514\t4\t _\t_\t00000000\t_\t00000000\t0\t_\t r3\t r1\t r2\tadd r3, r1, r2\n",
+            "0001051c\t2\tCD\tT\t00010530\t_\t00000000\t0\tR\t  _\t  _\t  _\tbne.n 10530 <main+0x30>\n",
+            "00010520\t4\t _\t_\t00000000\tL\tbeefcafe\t4\t_\tr12\t sp\t  _\tldr.w ip, [sp, #4]\n",
+            "00010524\t4\tUI\tT\t000104f0\t_\t00000000\t0\t_\t pc\t lr\t  _\tbx lr\n",
+            "00010528\t4\t _\t_\t00000000\tS\t7efff8c0\t8\tB\t  _\tr10\tr11\tstrd sl, fp, [sp]\r\n",
+            "0001052c\t4\tCI\tN\t00000000\t_\t00000000\t0\tW\t r9\t r0\t  _\tsubs r9, r0, #1",
+    };
+
+    private static void assertSameInsn(Insn expected, Insn actual) {
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(expected.asm, actual.asm);
+    }
+
+    @Test
+    public void testSampleLines() {
+        TraceLineParser p = new TraceLineParser();
+        for (String ln : SAMPLE_LINES) {
+            String stripped = ln.replace("\r", "").replace("\n", "");
+            p.parse(ln.replace("\n", ""));
+            assertSameInsn(new Insn(stripped), p.toInsn());
+        }
+    }
+
+    @Test
+    public void testRandomLines() {
+        TraceLineParser p = new TraceLineParser();
+        for (Insn i : TestUtils.randomInsns(5000, 501)) {
+            String ln = i.toTraceLine().replace(String.format("%n"), "");
+            p.parse(ln);
+            assertSameInsn(new Insn(ln), p.toInsn());
+            assertSameInsn(i, p.toInsn());
+        }
+    }
+
+    /** The text format has no limit on the width of an address */
+    @Test
+    public void testWideAddress() {
+        TraceLineParser p = new TraceLineParser();
+        p.parse("00010514\t4\t _\t_\t00000000\tL\t123456789a\t4\t_\t r3\t r1\t  _\tldr r3, [r1]");
+        assertEquals(0x123456789aL, p.memAddress);
+        assertEquals(4, p.memAccessBytes);
+    }
+
+    @Test
+    public void testSharedStaticInsn() {
+        TraceLineParser p = new TraceLineParser();
+        p.parse("0001051c\t2\tCD\tT\t00010530\t_\t00000000\t0\tR\t  _\t  _\t  _\tbne.n 10530");
+        Insn taken = p.toInsn();
+        p.parse("0001051c\t2\tCD\tN\t00010530\t_\t00000000\t0\tR\t  _\t  _\t  _\tbne.n 10530");
+        Insn notTaken = p.toInsn();
+        assertSame(taken.asm, notTaken.asm);
+        assertEquals(Direction.Taken, taken.branchDirection);
+        assertEquals(Direction.NotTaken, notTaken.branchDirection);
+    }
+
+    @Test
+    public void testConflictingStaticInsn() {
+        TraceLineParser p = new TraceLineParser();
+        p.parse(SAMPLE_LINES[0].replace("\n", ""));
+        StaticInsn first = p.staticInsn();
+        // same PC, different code
+        p.parse("00010514\t4\t _\t_\t00000000\t_\t00000000\t0\t_\t r3\t r1\t r2\tsub r3, r1, r2");
+        StaticInsn second = p.staticInsn();
+        assertNotSame(first, second);
+        assertEquals("sub r3, r1, r2", p.toInsn().asm);
+        p.parse("00010514\t4\t _\t_\t00000000\t_\t00000000\t0\t_\t r4\t r1\t r2\tsub r3, r1, r2");
+        assertEquals(4, p.toInsn().dstReg);
+        assertNotSame(second, p.staticInsn());
+    }
+
+    @Test
+    public void testDecodeCache() {
+        // re-execute a few static insns many times, with new dynamic fields each time
+        List<Insn> statics = TestUtils.randomInsns(200, 501);
+        Random r = new Random(502);
+        TraceLineParser cached = new TraceLineParser(true);
+        TraceLineParser uncached = new TraceLineParser(false);
+        for (int j = 0; j < 20000; j++) {
+            Insn s = statics.get(r.nextInt(statics.size()));
+            Insn i = new Insn(s.pc, s.insnSizeBytes, s.branchType,
+                    null == s.branchType ? null : (r.nextBoolean() ? Direction.Taken : Direction.NotTaken),
+                    null == s.branchType ? 0 : r.nextInt() & 0xFFFFFFFFL,
+                    s.mem, null == s.mem ? 0 : r.nextInt() & 0xFFFFFFFFL, s.memAccessBytes,
+                    s.condCode, s.dstReg, s.srcReg1,
+                    r.nextInt(100) == 0 ? (s.srcReg2 + 1) % 16 : s.srcReg2, // occasionally, different code
+                    s.asm);
+            String ln = i.toTraceLine().replace(String.format("%n"), "");
+            cached.parse(ln);
+            uncached.parse(ln);
+            assertSameInsn(i, cached.toInsn());
+            assertSameInsn(uncached.toInsn(), cached.toInsn());
+            assertEquals(i.branchTarget, cached.branchTarget);
+            assertEquals(i.memAddress, cached.memAddress);
+        }
+    }
+
+    /** Lines at a cached PC whose fixed fields differ from the cached line's must be decoded in full */
+    @Test
+    public void testDecodeCacheChecksFixedFields() {
+        TraceLineParser p = new TraceLineParser(true);
+        p.parse("00010514\t4\tCD\tT\t00010600\tL\t00002000\t4\t_\t r3\t r1\t r2\tldr r3, [r1]");
+        final StaticInsn first = p.staticInsn();
+
+        p.parse("00010514\t2\tCD\tN\t00010600\tL\t00002004\t4\t_\t r3\t r1\t r2\tldr r3, [r1]");
+        assertEquals(2, p.insnSizeBytes);
+        assertEquals(0x2004, p.memAddress);
+        p.parse("00010514\t4\tUD\tT\t00010600\tL\t00002000\t4\t_\t r3\t r1\t r2\tldr r3, [r1]");
+        assertEquals(BranchType.UnconditionalDirect, p.branchType);
+        p.parse("00010514\t4\tCD\tT\t00010600\tS\t00002000\t4\t_\t r3\t r1\t r2\tldr r3, [r1]");
+        assertEquals(MemoryOp.Store, p.mem);
+        p.parse("00010514\t4\tCD\tT\t00010600\tS\t00002000\t16\t_\t r3\t r1\t r2\tldr r3, [r1]");
+        assertEquals(16, p.memAccessBytes);
+        assertEquals(MemoryOp.Store, p.mem);
+
+        // the same fields as the first line again, after the cache was updated
+        p.parse("00010514\t4\tCD\tN\t00010600\tL\t00002008\t4\t_\t r3\t r1\t r2\tldr r3, [r1]");
+        assertEquals(4, p.insnSizeBytes);
+        assertEquals(BranchType.ConditionalDirect, p.branchType);
+        assertEquals(Direction.NotTaken, p.branchDirection);
+        assertEquals(MemoryOp.Load, p.mem);
+        assertEquals(4, p.memAccessBytes);
+        assertNotSame(first, p.staticInsn());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeCacheMalformedFixedField() {
+        TraceLineParser p = new TraceLineParser(true);
+        p.parse("00010514\t4\t _\t_\t00000000\t_\t00000000\t0\t_\t r3\t r1\t r2\tadd r3, r1, r2");
+        p.parse("00010514\t4\t _\t_\t00000000\t_\t00000000\tx\t_\t r3\t r1\t r2\tadd r3, r1, r2");
+    }
+
+    @Test
+    public void testUncachedParserRecordsNoTraceBytes() {
+        TraceLineParser p = new TraceLineParser(false);
+        p.parse("00010514\t4\t _\t_\t00000000\t_\t00000000\t0\t_\t r3\t r1\t r2\tadd r3, r1, r2");
+        assertNull(p.staticInsn().traceTail);
+        assertNull(p.staticInsn().traceFixed);
+    }
+
+    @Test
+    public void testStaticInsnTable() {
+        StaticInsnTable t = new StaticInsnTable();
+        for (long pc = 0; pc < 100000; pc += 2) {
+            t.put(new StaticInsn(pc, 2, null, null, 0, null, -1, -1, -1, "nop"));
+        }
+        assertEquals(50000, t.size());
+        for (long pc = 0; pc < 100000; pc++) {
+            StaticInsn s = t.get(pc);
+            if (pc % 2 == 0) assertEquals(pc, s.pc);
+            else assertNull(s);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidReg() {
+        new TraceLineParser().parse("00010514\t4\t _\t_\t00000000\t_\t00000000\t0\t_\t r3\tr13\t r2\tadd r3, r1, r2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncatedLine() {
+        new TraceLineParser().parse("00010514\t4\t _\t_\t00000000\t_\t00000000");
+    }
+
+    @Test
+    public void testTextTraceSource() throws IOException {
+        List<Insn> insns = TestUtils.randomInsns(3000, 501);
+        File f = tmp.newFile("trace.gz");
+        try (Writer w = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(f)), "US-ASCII")) {
+            for (Insn i : insns) {
+                w.write(i.toTraceLine());
+            }
+        }
+
+        // a tiny buffer forces lines to straddle refills and the buffer to grow
+        TextTraceSource src = new TextTraceSource(f.getPath(), 16);
+        for (Insn i : insns) {
+            assertSameInsn(i, src.read());
+        }
+        assertNull(src.read());
+        src.close();
+
+        InsnCursor c = TraceSource.openCursor(f.getPath(), 100);
+        for (int j = 0; j < 100; j++) {
+            c.advance();
+            assertEquals(insns.get(j).pc, c.pc());
+            assertEquals(insns.get(j).asm, c.asm());
+        }
+        assertFalse(c.advance());
+    }
+
+    @Test
+    public void testTextTraceSourceSkip() throws IOException {
+        List<Insn> insns = TestUtils.randomInsns(3000, 501);
+        File f = tmp.newFile("trace.gz");
+        try (Writer w = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(f)), "US-ASCII")) {
+            for (Insn i : insns) {
+                w.write(i.toTraceLine());
+            }
+        }
+
+        TextTraceSource src = new TextTraceSource(f.getPath(), 16);
+        src.skip(0);
+        assertSameInsn(insns.get(0), src.read());
+        src.skip(1000);
+        assertSameInsn(insns.get(1001), src.read());
+        src.skip(5000);
+        assertNull(src.read());
+        src.close();
+
+        InsnCursor c = TraceSource.openCursor(f.getPath(), 2990, 20);
+        for (int j = 2990; j < 3000; j++) {
+            assertTrue(c.advance());
+            assertEquals(insns.get(j).pc, c.pc());
+        }
+        assertFalse(c.advance());
+    }
+
+}
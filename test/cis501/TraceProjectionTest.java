@@ -0,0 +1,117 @@
+package cis501;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TraceProjectionTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private static String writeTrace(File f, List<Insn> insns) throws IOException {
+        try (TraceWriter w = TraceWriter.create(f.getPath(), TraceWriter.Format.BINARY)) {
+            for (Insn i : insns) {
+                w.write(i);
+            }
+        }
+        return f.getPath();
+    }
+
+    private static void assertProjection(List<Insn> insns, TraceProjection p) {
+        BranchTrace.Cursor b = p.branches.cursor();
+        MemoryTrace.Cursor m = p.memory.cursor();
+        for (Insn i : insns) {
+            if (null != i.branchType) {
+                assertTrue(b.advance());
+                assertEquals(i.pc, b.pc());
+                assertEquals(i.fallthroughPC(), b.fallthroughPC());
+                assertEquals(i.branchTarget, b.target());
+                assertEquals(i.branchType, b.type());
+                assertEquals(i.branchDirection, b.direction());
+                assertEquals(Direction.Taken == i.branchDirection ? i.branchTarget : i.fallthroughPC(), b.nextPC());
+            }
+            if (null != i.mem) {
+                assertTrue(m.advance());
+                assertEquals(i.pc, m.pc());
+                assertEquals(i.mem, m.mem());
+                assertEquals(MemoryOp.Load == i.mem, m.isLoad());
+                assertEquals(i.memAddress, m.address());
+                assertEquals(i.memAccessBytes, m.memAccessBytes());
+            }
+        }
+        assertFalse(b.advance());
+        assertFalse(m.advance());
+    }
+
+    @Test
+    public void testExtract() throws IOException {
+        List<Insn> insns = TestUtils.randomInsns(20000, 19);
+        String path = writeTrace(tmp.newFile("trace.bin"), insns);
+        TraceProjection p = TraceProjection.extract(path, -1);
+        assertTrue(p.branches.size() > 0);
+        assertTrue(p.memory.size() > 0);
+        assertProjection(insns, p);
+
+        TraceProjection half = TraceProjection.extract(path, 10000);
+        assertProjection(insns.subList(0, 10000), half);
+    }
+
+    @Test
+    public void testCursorRewind() {
+        BranchTrace bt = new BranchTrace(1);
+        for (int j = 0; j < 10; j++) {
+            bt.add(4 * j, 4, BranchType.ConditionalDirect, Direction.Taken, 0x100);
+        }
+        BranchTrace.Cursor c = bt.cursor();
+        long sum = 0;
+        while (c.advance()) {
+            sum += c.pc();
+        }
+        c.rewind();
+        while (c.advance()) {
+            sum -= c.pc();
+        }
+        assertEquals(0, sum);
+        assertEquals(10, c.index());
+    }
+
+    @Test
+    public void testCached() throws IOException {
+        File f = tmp.newFile("trace.bin");
+        List<Insn> insns = TestUtils.randomInsns(5000, 20);
+        String path = writeTrace(f, insns);
+        File sidecar = TraceProjection.sidecar(path, -1);
+        assertFalse(sidecar.exists());
+
+        assertProjection(insns, TraceProjection.cached(path, -1));
+        assertTrue(sidecar.isFile());
+        final long written = sidecar.lastModified();
+        assertProjection(insns, TraceProjection.cached(path, -1)); // read from the sidecar
+        assertEquals(written, sidecar.lastModified());
+
+        // a different limit gets its own sidecar
+        assertProjection(insns.subList(0, 100), TraceProjection.cached(path, 100));
+        assertTrue(TraceProjection.sidecar(path, 100).isFile());
+
+        // a changed trace invalidates the sidecar
+        List<Insn> other = TestUtils.randomInsns(7000, 21);
+        writeTrace(f, other);
+        assertTrue(f.setLastModified(f.lastModified() + 2000));
+        assertProjection(other, TraceProjection.cached(path, -1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotABranch() {
+        new BranchTrace().add(0x1000, 4, null, null, 0);
+    }
+
+}
@@ -0,0 +1,160 @@
+package cis501;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TraceStatsTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    /** Counts how many times it has been run, and reports the number of insns it saw */
+    private static class CountingAnalyzer implements ITraceAnalyzer {
+        static int runs = 0;
+        private int insns = 0;
+
+        @Override
+        public String author() {
+            return "test";
+        }
+
+        @Override
+        public void run(Iterable<Insn> ui) {
+            run(new IteratorInsnCursor(ui.iterator()));
+        }
+
+        @Override
+        public void run(InsnCursor cursor) {
+            runs++;
+            while (cursor.advance()) {
+                insns++;
+            }
+        }
+
+        @Override
+        public double avgInsnSize() {
+            return insns;
+        }
+
+        @Override
+        public double insnBandwidthIncreaseWithoutThumb() {
+            return 1.0 / 3.0;
+        }
+
+        @Override
+        public double fractionOfDirectBranchOffsetsLteNBits(int bits) {
+            return bits / 32.0;
+        }
+
+        @Override
+        public String mostCommonInsnCategory() {
+            return insns > 5 ? "other" : null;
+        }
+    }
+
+    private File writeTrace(File f, int insns) throws IOException {
+        try (Writer w = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(f)), "US-ASCII")) {
+            for (int j = 0; j < insns; j++) {
+                w.write(new Insn(0x1000 + 4 * j, 4, null, null, 0, null, 0, 0, null, 1, 2, -1, "add").toTraceLine());
+            }
+        }
+        return f;
+    }
+
+    @Test
+    public void testCachedUntilTraceChanges() throws IOException {
+        File trace = writeTrace(tmp.newFile("t.gz"), 10);
+        CountingAnalyzer.runs = 0;
+
+        TraceStats first = TraceStats.cached(trace.getPath(), -1, new CountingAnalyzer());
+        assertEquals(1, CountingAnalyzer.runs);
+        assertTrue(new File(trace.getPath() + TraceStats.SIDECAR_SUFFIX).isFile());
+
+        TraceStats second = TraceStats.cached(trace.getPath(), -1, new CountingAnalyzer());
+        assertEquals(1, CountingAnalyzer.runs);
+        assertEquals(first.avgInsnSize, second.avgInsnSize, 0);
+        assertEquals(1.0 / 3.0, second.insnBandwidthIncreaseWithoutThumb, 0);
+        assertEquals("other", second.mostCommonInsnCategory);
+        for (int b = 1; b <= 32; b++) {
+            assertEquals(b / 32.0, second.fractionOfDirectBranchOffsetsLteNBits(b), 0);
+        }
+
+        writeTrace(trace, 12);
+        TraceStats third = TraceStats.cached(trace.getPath(), -1, new CountingAnalyzer());
+        assertEquals(2, CountingAnalyzer.runs);
+        assertEquals(12, third.avgInsnSize, 0);
+    }
+
+    @Test
+    public void testKeyedByLimit() throws IOException {
+        File trace = writeTrace(tmp.newFile("t.gz"), 10);
+        CountingAnalyzer.runs = 0;
+
+        assertEquals(10, TraceStats.cached(trace.getPath(), -1, new CountingAnalyzer()).avgInsnSize, 0);
+        TraceStats limited = TraceStats.cached(trace.getPath(), 4, new CountingAnalyzer());
+        assertEquals(4, limited.avgInsnSize, 0);
+        assertNull(limited.mostCommonInsnCategory);
+        assertEquals(2, CountingAnalyzer.runs);
+
+        // both limits remain cached
+        assertEquals(10, TraceStats.cached(trace.getPath(), -1, new CountingAnalyzer()).avgInsnSize, 0);
+        assertEquals(4, TraceStats.cached(trace.getPath(), 4, new CountingAnalyzer()).avgInsnSize, 0);
+        assertEquals(2, CountingAnalyzer.runs);
+    }
+
+    @Test
+    public void testTouchedButUnchangedTrace() throws IOException {
+        File trace = writeTrace(tmp.newFile("t.gz"), 10);
+        CountingAnalyzer.runs = 0;
+        TraceStats.cached(trace.getPath(), -1, new CountingAnalyzer());
+        assertTrue(trace.setLastModified(trace.lastModified() - 60000));
+        TraceStats.cached(trace.getPath(), -1, new CountingAnalyzer());
+        assertEquals(1, CountingAnalyzer.runs);
+    }
+
+    @Test
+    public void testAnalyzerKeyChange() throws IOException {
+        File trace = writeTrace(tmp.newFile("t.gz"), 10);
+        CountingAnalyzer.runs = 0;
+        TraceStats.cached(trace.getPath(), -1, new CountingAnalyzer(), "a@1");
+        TraceStats.cached(trace.getPath(), -1, new CountingAnalyzer(), "a@1");
+        assertEquals(1, CountingAnalyzer.runs);
+        // e.g., TraceSummary or Histogram was edited
+        TraceStats.cached(trace.getPath(), -1, new CountingAnalyzer(), "a@2");
+        assertEquals(2, CountingAnalyzer.runs);
+        TraceStats.cached(trace.getPath(), -1, new CountingAnalyzer(), "a@2");
+        assertEquals(2, CountingAnalyzer.runs);
+    }
+
+    @Test
+    public void testAnalyzerKeyCoversSharedClasses() throws IOException {
+        final String key = TraceStats.analyzerKey(CountingAnalyzer.class);
+        assertTrue(key, key.startsWith(CountingAnalyzer.class.getName() + "@"));
+        // the analyzer's own hash, plus those of TraceSummary and Histogram
+        assertEquals(key, 3, key.split("[@,]").length - 1);
+    }
+
+    @Test
+    public void testUnreadableAnalyzerIsNotCached() throws IOException {
+        File trace = writeTrace(tmp.newFile("t.gz"), 10);
+        CountingAnalyzer.runs = 0;
+        TraceStats.cached(trace.getPath(), -1, new CountingAnalyzer(), null);
+        TraceStats.cached(trace.getPath(), -1, new CountingAnalyzer(), null);
+        assertEquals(2, CountingAnalyzer.runs);
+        assertFalse(new File(trace.getPath() + TraceStats.SIDECAR_SUFFIX).exists());
+    }
+
+}
@@ -0,0 +1,125 @@
+package cis501;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class TraceSummaryTaskTest {
+
+    private static final int INSNS = 2000;
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private final List<Insn> insns = new ArrayList<>();
+    private TraceSummary expected;
+
+    @Before
+    public void setUp() {
+        Random r = new Random(501);
+        BranchType[] bts = BranchType.values();
+        long pc = 0x100000;
+        for (int j = 0; j < INSNS; j++) {
+            final int isize = r.nextBoolean() ? 2 : 4;
+            final int kind = r.nextInt(4);
+            BranchType bt = 0 == kind ? bts[r.nextInt(bts.length)] : null;
+            MemoryOp mop = 1 == kind ? MemoryOp.Load : (2 == kind ? MemoryOp.Store : null);
+            insns.add(new Insn(pc, isize,
+                    bt, null == bt ? null : Direction.Taken, null == bt ? 0 : pc + r.nextInt(1 << 20) - (1 << 19),
+                    mop, null == mop ? 0 : 0x40000000L + r.nextInt(1 << 24), null == mop ? 0 : 4,
+                    null, -1, -1, -1, "insn"));
+            pc += isize;
+        }
+        expected = new TraceSummary();
+        expected.addAll(new ArrayTraceSource(insns.toArray(new Insn[INSNS])));
+    }
+
+    private static void assertSameSummary(TraceSummary expected, TraceSummary actual) {
+        assertEquals(expected.insns(), actual.insns());
+        assertEquals(expected.avgInsnSize(), actual.avgInsnSize(), 1e-12);
+        assertEquals(expected.insnBandwidthIncreaseWithoutThumb(), actual.insnBandwidthIncreaseWithoutThumb(), 1e-12);
+        assertEquals(expected.mostCommonInsnCategory(), actual.mostCommonInsnCategory());
+        assertEquals(expected.directBranchOffsetBits().toString(), actual.directBranchOffsetBits().toString());
+        assertEquals(expected.memStrideBits().toString(), actual.memStrideBits().toString());
+        assertEquals(expected.insnSizes().toString(), actual.insnSizes().toString());
+    }
+
+    private String writeBinary(boolean chunked) throws IOException {
+        File f = tmp.newFile();
+        try (BinaryTraceWriter w = new BinaryTraceWriter(f.getPath(), 128, chunked)) {
+            for (Insn i : insns) {
+                w.write(i);
+            }
+        }
+        return f.getPath();
+    }
+
+    @Test
+    public void testMergeOfSplitsMatchesSequential() {
+        Insn[] a = insns.toArray(new Insn[INSNS]);
+        for (int split : new int[]{0, 1, 777, INSNS}) {
+            TraceSummary left = new TraceSummary();
+            left.addAll(new ArrayTraceSource(a, 0, split));
+            TraceSummary right = new TraceSummary();
+            right.addAll(new ArrayTraceSource(a, split, INSNS));
+            left.merge(right);
+            assertSameSummary(expected, left);
+        }
+    }
+
+    @Test
+    public void testParallelBinary() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        for (boolean chunked : new boolean[]{false, true}) {
+            // a small grain, so the range is split many times and leaves straddle blocks
+            TraceSummary s = pool.invoke(new TraceSummaryTask(writeBinary(chunked), 0, INSNS, 37));
+            assertSameSummary(expected, s);
+        }
+        pool.shutdown();
+    }
+
+    /** A range longer than Integer.MAX_VALUE insns is read to its end, not cut short by an int cast */
+    @Test
+    public void testRangeLongerThanIntMax() throws IOException {
+        TraceSummary s = new TraceSummaryTask(writeBinary(false), 0, 1L << 32, Long.MAX_VALUE).invoke();
+        assertSameSummary(expected, s);
+    }
+
+    @Test
+    public void testSummarizeLimit() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        TraceSummary s = TraceSummaryTask.summarize(writeBinary(true), 500, pool);
+        TraceSummary e = new TraceSummary();
+        e.addAll(new ArrayTraceSource(insns.toArray(new Insn[INSNS]), 0, 500));
+        assertSameSummary(e, s);
+        pool.shutdown();
+    }
+
+    @Test
+    public void testSummarizeText() throws IOException {
+        File f = tmp.newFile("trace.gz");
+        try (Writer w = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(f)), "US-ASCII")) {
+            for (Insn i : insns) {
+                w.write(i.toTraceLine());
+            }
+        }
+        ForkJoinPool pool = new ForkJoinPool(2);
+        assertSameSummary(expected, TraceSummaryTask.summarize(f.getPath(), -1, pool));
+        pool.shutdown();
+    }
+
+}
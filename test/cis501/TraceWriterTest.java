@@ -0,0 +1,100 @@
+package cis501;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TraceWriterTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    /** Random insns with 32-bit addresses, so that they fit in every trace format */
+
+    /** The original String.format implementation of Insn.toTraceLine() */
+    private static String formatLine(Insn i) {
+        final String[] regs = {"  _", " r0", " r1", " r2", " r3", " r4", " r5", " r6", " r7", " r8", " r9",
+                "r10", "r11", "r12", " sp", " lr", " pc"};
+        final String[] bts = {"CD", "CI", "UD", "UI"};
+        return String.format("%08x\t%d\t%s\t%c\t%08x\t%c\t%08x\t%d\t%c\t%s\t%s\t%s\t%s%n",
+                i.pc, i.insnSizeBytes,
+                null == i.branchType ? " _" : bts[i.branchType.ordinal()],
+                null == i.branchDirection ? '_' : (Direction.Taken == i.branchDirection ? 'T' : 'N'),
+                i.branchTarget,
+                null == i.mem ? '_' : (MemoryOp.Load == i.mem ? 'L' : 'S'),
+                i.memAddress, i.memAccessBytes,
+                null == i.condCode ? '_' : "RWB".charAt(i.condCode.ordinal()),
+                regs[i.dstReg + 1], regs[i.srcReg1 + 1], regs[i.srcReg2 + 1],
+                i.asm);
+    }
+
+    private static void writeAll(TraceWriter w, List<Insn> insns) throws IOException {
+        try {
+            for (Insn i : insns) {
+                w.write(i);
+            }
+        } finally {
+            w.close();
+        }
+    }
+
+    @Test
+    public void testFormatter() {
+        for (Insn i : TestUtils.randomInsns(5000, 18)) {
+            assertEquals(formatLine(i), i.toTraceLine());
+        }
+        Insn wide = new Insn(0x123456789aL, 4, null, null, 0, MemoryOp.Load, -1L, 4, null, 1, 2, -1, "ldr");
+        assertEquals(formatLine(wide), wide.toTraceLine());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        List<Insn> insns = TestUtils.randomInsns(10000, 18);
+        for (TraceWriter.Format f : TraceWriter.Format.values()) {
+            String path = tmp.newFile("trace." + f).getPath();
+            writeAll(TraceWriter.create(path, f), insns);
+            int j = 0;
+            for (Insn i : new InsnIterator(path, -1)) {
+                assertEquals(f.toString(), insns.get(j++).toTraceLine(), i.toTraceLine());
+            }
+            assertEquals(f.toString(), insns.size(), j);
+        }
+    }
+
+    @Test
+    public void testFilters() throws IOException {
+        List<Insn> insns = TestUtils.randomInsns(5000, 18);
+        String path = tmp.newFile("branches.gz").getPath();
+        TraceWriter w = TraceWriter.create(path, TraceWriter.Format.TEXT);
+        w.setFilter(InsnFilters.branches());
+        writeAll(w, insns);
+
+        int branches = 0;
+        for (Insn i : insns) {
+            if (null != i.branchType) branches++;
+        }
+        assertTrue(branches > 0);
+        assertEquals(branches, w.getInsns());
+        assertEquals(insns.size() - branches, w.getFiltered());
+        for (Insn i : new InsnIterator(path, -1)) {
+            assertTrue(null != i.branchType);
+        }
+
+        InsnFilter memInRange = InsnFilters.all(InsnFilters.memory(), InsnFilters.pcRange(0x10100, 0x10200));
+        InsnFilter either = InsnFilters.any(InsnFilters.memory(), InsnFilters.branches());
+        for (Insn i : insns) {
+            assertEquals(null != i.mem && i.pc >= 0x10100 && i.pc < 0x10200, memInRange.accept(i));
+            assertEquals(null != i.mem || null != i.branchType, either.accept(i));
+        }
+        assertFalse(InsnFilters.pcRange(0, 0).accept(insns.get(0)));
+    }
+
+}
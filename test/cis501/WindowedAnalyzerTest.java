@@ -0,0 +1,78 @@
+package cis501;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WindowedAnalyzerTest {
+
+    /** A loop of n insns starting at the given PC, ending in a taken branch back to the start */
+    private static void loop(List<Insn> insns, long pc, int n, int iterations) {
+        for (int it = 0; it < iterations; it++) {
+            for (int j = 0; j < n - 1; j++) {
+                insns.add(new Insn(1, 2, 3, pc + 4 * j, 4, null, 0, null, null, 0, 0, "add"));
+            }
+            insns.add(new Insn(-1, -1, -1, pc + 4 * (n - 1), 4, Direction.Taken, pc, null, null, 0, 0, "b"));
+        }
+    }
+
+    private static List<WindowedAnalyzer.Window> analyze(List<Insn> insns, long windowInsns) {
+        final List<WindowedAnalyzer.Window> windows = new ArrayList<>();
+        WindowedAnalyzer wa = new WindowedAnalyzer(windowInsns, 64, new WindowedAnalyzer.WindowListener() {
+            @Override
+            public void window(WindowedAnalyzer.Window w) {
+                windows.add(w);
+            }
+        });
+        wa.run(new ArrayTraceSource(insns.toArray(new Insn[insns.size()])));
+        return windows;
+    }
+
+    @Test
+    public void testWindowBoundaries() {
+        List<Insn> insns = new ArrayList<>();
+        loop(insns, 0x1000, 10, 25); // 250 insns
+        List<WindowedAnalyzer.Window> windows = analyze(insns, 100);
+        assertEquals(3, windows.size());
+        long start = 0;
+        for (int w = 0; w < windows.size(); w++) {
+            assertEquals(w, windows.get(w).index);
+            assertEquals(start, windows.get(w).startInsn);
+            // BBVs count every insn, even those of blocks split across windows
+            assertEquals(windows.get(w).insns(), windows.get(w).bbv.total());
+            start += windows.get(w).insns();
+        }
+        assertEquals(50, windows.get(2).insns());
+        assertEquals(0.1, windows.get(0).summary.categoryFraction("conditionalbranch"), 1e-12);
+    }
+
+    @Test
+    public void testBlockSplitAcrossWindows() {
+        List<Insn> insns = new ArrayList<>();
+        loop(insns, 0x1000, 8, 2); // 16 insns, a single block
+        List<WindowedAnalyzer.Window> windows = analyze(insns, 5);
+        assertEquals(4, windows.size());
+        final int dim = windows.get(0).bbv.dimensionOf(0x1000);
+        assertEquals(5, windows.get(0).bbv.count(dim));
+        assertEquals(5, windows.get(1).bbv.count(dim));
+        assertEquals(5, windows.get(2).bbv.count(dim));
+        assertEquals(1, windows.get(3).bbv.count(dim));
+    }
+
+    @Test
+    public void testPhaseChange() {
+        List<Insn> insns = new ArrayList<>();
+        loop(insns, 0x1000, 10, 20);
+        loop(insns, 0x8000, 20, 10);
+        List<WindowedAnalyzer.Window> windows = analyze(insns, 100);
+        assertEquals(4, windows.size());
+        assertEquals(0.0, windows.get(0).bbv.distance(windows.get(1).bbv), 1e-12);
+        assertEquals(0.0, windows.get(2).bbv.distance(windows.get(3).bbv), 1e-12);
+        assertTrue(windows.get(1).bbv.distance(windows.get(2).bbv) > 1.0);
+    }
+
+}
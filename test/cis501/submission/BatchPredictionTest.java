@@ -0,0 +1,115 @@
+package cis501.submission;
+
+import cis501.BatchPrediction;
+import cis501.BranchPredictor;
+import cis501.BranchTrace;
+import cis501.BranchType;
+import cis501.Direction;
+import cis501.IBranchTargetBuffer;
+import cis501.IDirectionPredictor;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/** Checks that the batch entry points behave exactly like predict() and train() on each branch. */
+public class BatchPredictionTest {
+
+    private static final int N = 10000;
+
+    private final long[] pcs = new long[N];
+    private final long[] targets = new long[N];
+    private final long[] outcomes = new long[BatchPrediction.words(N)];
+
+    public BatchPredictionTest() {
+        // a few branches with biased, correlated outcomes
+        Random r = new Random(21);
+        for (int i = 0; i < N; i++) {
+            final int b = r.nextInt(50);
+            pcs[i] = 0x1000 + 2 * b;
+            targets[i] = 0x8000 + 4 * b;
+            final boolean prev = i > 0 && BatchPrediction.get(outcomes, i - 1);
+            BatchPrediction.set(outcomes, i, b % 3 == 0 ? prev : r.nextInt(10) < b % 10);
+        }
+    }
+
+    private void assertSameDirections(IDirectionPredictor batch, IDirectionPredictor single) {
+        final long[] predictions = new long[outcomes.length];
+        // odd batch sizes exercise partial words
+        for (int start = 0; start < N; start += 999) {
+            final int n = Math.min(999, N - start);
+            long[] p = new long[n];
+            long[] o = new long[BatchPrediction.words(n)];
+            for (int i = 0; i < n; i++) {
+                p[i] = pcs[start + i];
+                BatchPrediction.set(o, i, BatchPrediction.get(outcomes, start + i));
+            }
+            long[] pred = new long[o.length];
+            BatchPrediction.predictAndTrain(batch, p, o, pred, n);
+            for (int i = 0; i < n; i++) {
+                BatchPrediction.set(predictions, start + i, BatchPrediction.get(pred, i));
+            }
+        }
+        for (int i = 0; i < N; i++) {
+            final Direction expected = single.predict(pcs[i]);
+            assertEquals("branch " + i, Direction.Taken == expected, BatchPrediction.get(predictions, i));
+            single.train(pcs[i], BatchPrediction.get(outcomes, i) ? Direction.Taken : Direction.NotTaken);
+        }
+    }
+
+    @Test
+    public void testBimodal() {
+        assertSameDirections(new DirPredBimodal(4), new DirPredBimodal(4));
+    }
+
+    @Test
+    public void testGshare() {
+        assertSameDirections(new DirPredGshare(6, 4), new DirPredGshare(6, 4));
+    }
+
+    @Test
+    public void testTournament() {
+        assertSameDirections(new DirPredTournament(3, new DirPredBimodal(5), new DirPredGshare(5, 5)),
+                new DirPredTournament(3, new DirPredBimodal(5), new DirPredGshare(5, 5)));
+    }
+
+    @Test
+    public void testFallbackLoop() {
+        assertSameDirections(new DirPredAlwaysTaken(), new DirPredAlwaysTaken());
+    }
+
+    @Test
+    public void testBtb() {
+        IBranchTargetBuffer batch = new BranchTargetBuffer(4);
+        IBranchTargetBuffer single = new BranchTargetBuffer(4);
+        final long[] predictions = new long[N];
+        BatchPrediction.predictAndTrain(batch, pcs, targets, outcomes, predictions, N);
+        for (int i = 0; i < N; i++) {
+            assertEquals("branch " + i, single.predict(pcs[i]), predictions[i]);
+            if (BatchPrediction.get(outcomes, i)) {
+                single.train(pcs[i], targets[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testBranchPredictorMispredictions() {
+        BranchTrace bt = new BranchTrace();
+        for (int i = 0; i < N; i++) {
+            bt.add(pcs[i], 4, BranchType.ConditionalDirect,
+                    BatchPrediction.get(outcomes, i) ? Direction.Taken : Direction.NotTaken, targets[i]);
+        }
+        BranchPredictor batch = new BranchPredictor(new DirPredGshare(8, 6), new BranchTargetBuffer(6));
+        BranchPredictor single = new BranchPredictor(new DirPredGshare(8, 6), new BranchTargetBuffer(6));
+        long expected = 0;
+        for (int i = 0; i < N; i++) {
+            if (single.predict(bt.pc(i), bt.fallthroughPC(i)) != bt.nextPC(i)) {
+                expected++;
+            }
+            single.train(bt.pc(i), bt.nextPC(i), bt.direction(i));
+        }
+        assertEquals(expected, batch.mispredictions(bt));
+    }
+
+}
@@ -0,0 +1,45 @@
+package cis501.submission;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+public class DirPredPerceptronTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoTables() {
+        new DirPredPerceptron(10, new int[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeHistory() {
+        new DirPredPerceptron(10, new int[]{0, -1});
+    }
+
+    @Test
+    public void testLongHistoryCorrelation() {
+        DirPredTestUtils.assertLearnsLongHistory(new DirPredPerceptron(), 25);
+    }
+
+    @Test
+    public void testBiasedBranches() {
+        DirPredTestUtils.assertBimodalOnBiasedBranches(new DirPredPerceptron(), 25);
+    }
+
+    /** Random outcomes can't be learned, so the threshold keeps rising */
+    @Test
+    public void testThresholdAdapts() {
+        DirPredPerceptron p = new DirPredPerceptron(8, new int[]{0, 4, 8});
+        final int initial = p.threshold();
+        Random r = new Random(25);
+        for (int j = 0; j < 10000; j++) {
+            final long pc = 0x1000 + 4 * r.nextInt(16);
+            p.predict(pc);
+            p.train(pc, DirPredTestUtils.dir(r.nextBoolean()));
+        }
+        assertTrue(p.threshold() + " vs " + initial, p.threshold() > initial);
+    }
+
+}
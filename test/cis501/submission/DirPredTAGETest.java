@@ -0,0 +1,34 @@
+package cis501.submission;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DirPredTAGETest {
+
+    @Test
+    public void testGeometricHistoryLengths() {
+        assertArrayEquals(new int[]{4, 8, 16, 32, 64}, new DirPredTAGE(10, 5, 8, 8, 4, 64).historyLengths());
+        int[] lengths = new DirPredTAGE().historyLengths();
+        for (int t = 1; t < lengths.length; t++) {
+            assertTrue(lengths[t] > lengths[t - 1]);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidConfig() {
+        new DirPredTAGE(10, 4, 8, 16, 4, 64);
+    }
+
+    @Test
+    public void testLongHistoryCorrelation() {
+        DirPredTestUtils.assertLearnsLongHistory(new DirPredTAGE(10, 6, 10, 10, 4, 128), 24);
+    }
+
+    @Test
+    public void testBiasedBranches() {
+        DirPredTestUtils.assertBimodalOnBiasedBranches(new DirPredTAGE(), 24);
+    }
+
+}
@@ -0,0 +1,105 @@
+package cis501.submission;
+
+import cis501.Direction;
+import cis501.IDirectionPredictor;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/** Branch streams, and checks against them, shared by the tests of the direction predictors. */
+class DirPredTestUtils {
+
+    /** The PC of the branch, in correlated(), that repeats an earlier branch's outcome */
+    private static final long CORRELATED_PC = 0x200;
+    private static final int CORRELATION_DISTANCE = 60;
+
+    /** A stream of branches: the PC and outcome of each */
+    static final class Stream {
+        final long[] pcs;
+        final boolean[] outcomes;
+
+        Stream(int n) {
+            pcs = new long[n];
+            outcomes = new boolean[n];
+        }
+    }
+
+    static Direction dir(boolean taken) {
+        return taken ? Direction.Taken : Direction.NotTaken;
+    }
+
+    /**
+     * A branch that repeats the random outcome of another branch from 60 branches earlier, with
+     * fixed-pattern branches in between. Predicting it needs a longer history than gshare's.
+     */
+    static Stream correlated(int n, long seed) {
+        Stream s = new Stream(n);
+        Random r = new Random(seed);
+        for (int j = 0; j < n; j++) {
+            final int k = j % CORRELATION_DISTANCE;
+            if (0 == k) {
+                s.pcs[j] = 0x100;
+                s.outcomes[j] = r.nextBoolean();
+            } else if (CORRELATION_DISTANCE - 1 == k) {
+                s.pcs[j] = CORRELATED_PC;
+                s.outcomes[j] = s.outcomes[j - CORRELATION_DISTANCE + 1];
+            } else {
+                s.pcs[j] = 0x300 + k;
+                s.outcomes[j] = j % 3 != 0;
+            }
+        }
+        return s;
+    }
+
+    /** 32 branches, half taken 95% of the time and half taken 5% of the time, in random order */
+    static Stream biased(int n, long seed) {
+        Stream s = new Stream(n);
+        Random r = new Random(seed);
+        for (int j = 0; j < n; j++) {
+            final int b = r.nextInt(32);
+            s.pcs[j] = 0x1000 + 4 * b;
+            s.outcomes[j] = r.nextInt(100) < (b < 16 ? 95 : 5);
+        }
+        return s;
+    }
+
+    /**
+     * Run p over the whole stream.
+     *
+     * @param onlyPC if not -1, only score the branches at this PC
+     * @return the fraction of the scored branches in the last half of the stream that p predicted
+     * correctly
+     */
+    static double accuracy(IDirectionPredictor p, Stream s, long onlyPC) {
+        final int n = s.pcs.length;
+        int correct = 0, scored = 0;
+        for (int j = 0; j < n; j++) {
+            final Direction actual = dir(s.outcomes[j]);
+            if (j >= n / 2 && (-1 == onlyPC || onlyPC == s.pcs[j])) {
+                scored++;
+                if (p.predict(s.pcs[j]) == actual) correct++;
+            }
+            p.train(s.pcs[j], actual);
+        }
+        return (double) correct / Math.max(1, scored);
+    }
+
+    /** Check that p predicts the correlated branch of correlated(), which gshare cannot. */
+    static void assertLearnsLongHistory(IDirectionPredictor p, long seed) {
+        final Stream s = correlated(200000, seed);
+        final double accuracy = accuracy(p, s, CORRELATED_PC);
+        final double gshare = accuracy(new DirPredGshare(16, 16), s, CORRELATED_PC);
+        assertTrue(p + " " + accuracy, accuracy > 0.95);
+        assertTrue("gshare " + gshare, gshare < 0.75);
+    }
+
+    /** Check that p is about as good as a bimodal predictor on strongly-biased branches. */
+    static void assertBimodalOnBiasedBranches(IDirectionPredictor p, long seed) {
+        final Stream s = biased(100000, seed);
+        final double accuracy = accuracy(p, s, -1);
+        final double bimodal = accuracy(new DirPredBimodal(10), s, -1);
+        assertTrue(p + " " + accuracy + " vs bimodal " + bimodal, accuracy > bimodal - 0.01);
+    }
+
+}
@@ -0,0 +1,52 @@
+package cis501.submission;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class GlobalHistoryTest {
+
+    /** Fold a history (outcome of age k at index k) the slow way, by xor'ing every outcome into place */
+    private static int fold(int[] ages, int origLength, int compLength) {
+        int comp = 0;
+        for (int k = 0; k < origLength; k++) {
+            comp ^= ages[k] << (k % compLength);
+        }
+        return comp;
+    }
+
+    @Test
+    public void testRing() {
+        GlobalHistory h = new GlobalHistory(10);
+        for (int j = 0; j < 100; j++) {
+            h.push(j % 3 == 0 ? 1 : 0);
+            for (int age = 0; age <= Math.min(j, 10); age++) {
+                assertEquals((j - age) % 3 == 0 ? 1 : 0, h.get(age));
+            }
+        }
+    }
+
+    @Test
+    public void testFold() {
+        final int[][] shapes = {{5, 10}, {10, 10}, {20, 10}, {200, 9}, {64, 8}, {7, 3}};
+        for (int[] shape : shapes) {
+            final int len = shape[0];
+            final int comp = shape[1];
+            GlobalHistory h = new GlobalHistory(len);
+            int folded = 0;
+            int[] ages = new int[len + 1];
+            Random r = new Random(24);
+            for (int j = 0; j < 1000; j++) {
+                System.arraycopy(ages, 0, ages, 1, len);
+                ages[0] = r.nextInt(2);
+                h.push(ages[0]);
+                assertEquals(ages[len], h.get(len));
+                folded = GlobalHistory.fold(folded, ages[0], h.get(len), len % comp, comp);
+                assertEquals(len + "/" + comp, fold(ages, len, comp), folded);
+            }
+        }
+    }
+
+}
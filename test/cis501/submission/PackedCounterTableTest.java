@@ -0,0 +1,80 @@
+package cis501.submission;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PackedCounterTableTest {
+
+    @Test
+    public void testSaturation() {
+        PackedCounterTable t = new PackedCounterTable(6);
+        assertEquals(64, t.size());
+        assertEquals(0, t.update(5, 0));
+        assertEquals(0, t.get(5));
+        assertFalse(t.isTaken(5));
+        assertEquals(0, t.update(5, 1));
+        assertEquals(1, t.update(5, 1));
+        assertTrue(t.isTaken(5));
+        assertEquals(2, t.update(5, 1));
+        assertEquals(3, t.update(5, 1));
+        assertEquals(3, t.get(5));
+        assertEquals(3, t.update(5, 0));
+        assertEquals(2, t.get(5));
+        // neighbours, including those in the same word, are untouched
+        assertEquals(0, t.get(4));
+        assertEquals(0, t.get(6));
+        assertEquals(0, t.get(37));
+    }
+
+    /** Compare against a plain array of counters, one per byte */
+    @Test
+    public void testRandomUpdates() {
+        final int bits = 10;
+        PackedCounterTable t = new PackedCounterTable(bits);
+        byte[] expected = new byte[1 << bits];
+        Random r = new Random(23);
+        for (int j = 0; j < 100000; j++) {
+            final int i = r.nextInt(expected.length);
+            if (r.nextInt(10) == 0) {
+                final int v = r.nextInt(PackedCounterTable.COUNTER_MAX + 1);
+                t.set(i, v);
+                expected[i] = (byte) v;
+                continue;
+            }
+            final int taken = r.nextInt(2);
+            assertEquals(expected[i], t.update(i, taken));
+            expected[i] = (byte) Math.max(0, Math.min(PackedCounterTable.COUNTER_MAX, expected[i] + 2 * taken - 1));
+        }
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], t.get(i));
+            assertEquals(expected[i] >= 2, t.isTaken(i));
+        }
+    }
+
+    @Test
+    public void testFillAndReset() {
+        for (int bits : new int[]{0, 3, 5, 12}) {
+            PackedCounterTable t = new PackedCounterTable(bits);
+            t.fill(2);
+            for (int i = 0; i < t.size(); i++) {
+                assertEquals(2, t.get(i));
+            }
+            t.update(t.size() - 1, 1);
+            t.reset();
+            for (int i = 0; i < t.size(); i++) {
+                assertEquals(0, t.get(i));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFillInvalid() {
+        new PackedCounterTable(4).fill(4);
+    }
+
+}
@@ -0,0 +1,89 @@
+package cis501.submission;
+
+import cis501.BranchType;
+import cis501.Insn;
+import cis501.InsnIterator;
+import cis501.MemoryOp;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TraceAnalyzerTest {
+
+    /** Build an insn via its trace line, since the public test constructor only makes conditional branches */
+    private static Insn insn(long pc, int isize, BranchType bt, long target, MemoryOp mop, long addr) {
+        String btype = " _";
+        if (null != bt) {
+            switch (bt) {
+                case ConditionalDirect:
+                    btype = "CD";
+                    break;
+                case UnconditionalDirect:
+                    btype = "UD";
+                    break;
+                case UnconditionalIndirect:
+                    btype = "UI";
+                    break;
+                default:
+                    btype = "CI";
+            }
+        }
+        final char m = null == mop ? '_' : (MemoryOp.Load == mop ? 'L' : 'S');
+        return new Insn(String.format("%08x\t%d\t%s\t%c\t%08x\t%c\t%08x\t%d\t_\t  _\t  _\t  _\tinsn",
+                pc, isize, btype, null == bt ? '_' : 'T', target, m, addr, null == mop ? 0 : 4));
+    }
+
+    private static TraceAnalyzer analyze(List<Insn> insns) {
+        TraceAnalyzer ta = new TraceAnalyzer();
+        ta.run(new InsnIterator(insns));
+        return ta;
+    }
+
+    @Test
+    public void testEmptyTrace() {
+        TraceAnalyzer ta = analyze(new ArrayList<Insn>());
+        assertEquals(0.0, ta.avgInsnSize(), 0);
+        assertEquals(1.0, ta.insnBandwidthIncreaseWithoutThumb(), 0);
+        assertNull(ta.mostCommonInsnCategory());
+        assertEquals(0.0, ta.fractionOfDirectBranchOffsetsLteNBits(32), 0);
+    }
+
+    @Test
+    public void testSizesAndCategories() {
+        List<Insn> insns = new ArrayList<>();
+        insns.add(insn(0x100, 2, null, 0, MemoryOp.Load, 0x1000));
+        insns.add(insn(0x102, 2, null, 0, MemoryOp.Load, 0x1004));
+        insns.add(insn(0x104, 4, null, 0, MemoryOp.Store, 0x0ff0));
+        insns.add(insn(0x108, 4, null, 0, null, 0));
+        TraceAnalyzer ta = analyze(insns);
+        assertEquals(3.0, ta.avgInsnSize(), 1e-12);
+        assertEquals(16.0 / 12.0, ta.insnBandwidthIncreaseWithoutThumb(), 1e-12);
+        assertEquals("load", ta.mostCommonInsnCategory());
+        assertEquals(2, ta.insnSizes().count(2));
+        // strides of +4 (4 bits) and -20 (6 bits)
+        assertEquals(2, ta.memStrideBits().total());
+        assertEquals(0.5, ta.memStrideBits().fractionLte(4), 0);
+        assertEquals(1.0, ta.memStrideBits().fractionLte(6), 0);
+    }
+
+    @Test
+    public void testDirectBranchOffsets() {
+        List<Insn> insns = new ArrayList<>();
+        insns.add(insn(0x1000, 4, BranchType.ConditionalDirect, 0x1004, null, 0)); // +4: 4 bits
+        insns.add(insn(0x1000, 4, BranchType.UnconditionalDirect, 0x0ff8, null, 0)); // -8: 4 bits
+        insns.add(insn(0x1000, 4, BranchType.ConditionalDirect, 0x1100, null, 0)); // +256: 10 bits
+        insns.add(insn(0x1000, 4, BranchType.ConditionalIndirect, 0x9000, null, 0)); // not direct
+        TraceAnalyzer ta = analyze(insns);
+        assertEquals("conditionalbranch", ta.mostCommonInsnCategory());
+        assertEquals(0.0, ta.fractionOfDirectBranchOffsetsLteNBits(3), 0);
+        assertEquals(2.0 / 3.0, ta.fractionOfDirectBranchOffsetsLteNBits(4), 1e-12);
+        assertEquals(2.0 / 3.0, ta.fractionOfDirectBranchOffsetsLteNBits(9), 1e-12);
+        assertEquals(1.0, ta.fractionOfDirectBranchOffsetsLteNBits(10), 0);
+        assertEquals(1.0, ta.fractionOfDirectBranchOffsetsLteNBits(32), 0);
+    }
+
+}